@@ -0,0 +1,107 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares finding the blobs and their hulls in a threshold image with
+ * {@code Imgproc.findContours()} and with {@link RunLengthLabeler}. The
+ * threshold images have different numbers of U shaped blobs the size of a
+ * goal target.
+ *
+ * @author Ben Wolsieffer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BlobBenchmark {
+
+    static {
+        // The fields below are Mats, so OpenCV has to be loaded before the
+        // benchmark is constructed
+        OpenCVLoader.loadOpenCV();
+    }
+
+    @Param({ "0", "1", "4", "16", "64" })
+    public int blobs;
+
+    private final Mat thresholdImage = new Mat();
+    private final Mat contoursImage = new Mat();
+    private final Mat hierarchy = new Mat();
+    private final List<MatOfPoint> contours = new ArrayList<>();
+    private final ContourBuffer contourBuffer = new ContourBuffer();
+    private final RunLengthLabeler labeler = new RunLengthLabeler();
+
+    @Setup
+    public void setup() {
+        thresholdImage.create(HighGoalProcessor.IMAGE_SIZE, CvType.CV_8UC1);
+        thresholdImage.setTo(Scalar.all(0));
+
+        Random random = new Random(2084);
+        Scalar white = Scalar.all(255);
+        for (int i = 0; i < blobs; i++) {
+            int x = random.nextInt(thresholdImage.cols() - 40);
+            int y = random.nextInt(thresholdImage.rows() - 30);
+            // Outline of a U, like the goal tape
+            Imgproc.rectangle(thresholdImage, new Point(x, y), new Point(x + 4, y + 24), white, -1);
+            Imgproc.rectangle(thresholdImage, new Point(x + 36, y), new Point(x + 40, y + 24), white, -1);
+            Imgproc.rectangle(thresholdImage, new Point(x, y + 20), new Point(x + 40, y + 24), white, -1);
+        }
+    }
+
+    @Benchmark
+    public List<MatOfPoint> openCV() {
+        for (MatOfPoint contour : contours) {
+            contour.release();
+        }
+        contours.clear();
+        thresholdImage.copyTo(contoursImage);
+        Imgproc.findContours(contoursImage, contours, hierarchy, Imgproc.RETR_EXTERNAL,
+                Imgproc.CHAIN_APPROX_SIMPLE);
+        for (MatOfPoint contour : contours) {
+            contourBuffer.load(contour);
+            contourBuffer.convexHull();
+            contourBuffer.storeHull(contour);
+        }
+        return contours;
+    }
+
+    @Benchmark
+    public int runLength() {
+        int points = 0;
+        int blobCount = labeler.label(thresholdImage);
+        for (int blob = 0; blob < blobCount; blob++) {
+            points += labeler.findHull(blob);
+        }
+        return points;
+    }
+}
@@ -0,0 +1,90 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.CvType;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares finding the hull of a contour with {@code Imgproc.convexHull()}
+ * and copying one point at a time, the way it used to be done, with
+ * {@link ContourBuffer}. The contours are rough ellipses, with sizes ranging
+ * from a clean target to a noisy blob.
+ *
+ * @author Ben Wolsieffer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ContourBenchmark {
+
+    static {
+        // The fields below are Mats, so OpenCV has to be loaded before the
+        // benchmark is constructed
+        OpenCVLoader.loadOpenCV();
+    }
+
+    @Param({ "16", "64", "256", "1024" })
+    public int points;
+
+    private MatOfPoint contour;
+    private final MatOfPoint hull = new MatOfPoint();
+    private final ContourBuffer buffer = new ContourBuffer();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(2084);
+        Point[] contourPoints = new Point[points];
+        for (int i = 0; i < points; i++) {
+            double angle = 2 * Math.PI * i / points;
+            double radius = 1 + 0.1 * random.nextDouble();
+            contourPoints[i] = new Point(Math.round(320 + 200 * radius * Math.cos(angle)),
+                    Math.round(240 + 120 * radius * Math.sin(angle)));
+        }
+        contour = new MatOfPoint(contourPoints);
+    }
+
+    @Benchmark
+    public MatOfPoint perElement() {
+        MatOfInt hullMatrix = new MatOfInt();
+        Imgproc.convexHull(contour, hullMatrix);
+        hull.create(hullMatrix.rows(), 1, CvType.CV_32SC2);
+
+        for (int r = 0; r < hullMatrix.rows(); r++) {
+            hull.put(r, 0, contour.get((int) hullMatrix.get(r, 0)[0], 0));
+        }
+        hullMatrix.release();
+        return hull;
+    }
+
+    @Benchmark
+    public MatOfPoint bulk() {
+        buffer.load(contour);
+        buffer.convexHull();
+        return buffer.storeHull(hull);
+    }
+}
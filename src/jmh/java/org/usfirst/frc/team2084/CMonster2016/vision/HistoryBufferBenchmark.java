@@ -0,0 +1,126 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.kauailabs.navx.desktop.Timer;
+
+/**
+ * Compares looking up the heading while the gyro thread is writing to the
+ * buffer, using a {@link HistoryBuffer} behind a lock the way it used to be
+ * done and using a {@link ConcurrentHistoryBuffer}. Each group has one writer
+ * and two readers, like the gyro, processing and streaming threads. The writer
+ * spins for a while between samples, so the amount of contention can be
+ * changed; the real gyro writes much less often than even the slowest setting.
+ *
+ * @author Ben Wolsieffer
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HistoryBufferBenchmark {
+
+    private static final int LENGTH = HighGoalProcessor.GYRO_UPDATE_RATE / 2;
+    private static final double PERIOD = 1.0 / HighGoalProcessor.GYRO_UPDATE_RATE;
+
+    /**
+     * Amount of work the writer does between samples, in
+     * {@link Blackhole#consumeCPU(long)} tokens.
+     */
+    @Param({ "0", "100", "10000" })
+    public long writeDelay;
+
+    private final HistoryBuffer lockedBuffer = new HistoryBuffer(LENGTH, HighGoalProcessor.GYRO_UPDATE_RATE);
+    private final ConcurrentHistoryBuffer concurrentBuffer = new ConcurrentHistoryBuffer(LENGTH);
+
+    /**
+     * The time of the newest sample. Samples are at least as far apart as the
+     * real gyro's, and are never older than the current time.
+     */
+    private volatile double newestTime;
+
+    @Setup
+    public void setup() {
+        double start = Timer.getFPGATimestamp() - LENGTH * PERIOD;
+        for (int i = 0; i < LENGTH; i++) {
+            double time = start + i * PERIOD;
+            lockedBuffer.newValue(time, Math.sin(time));
+            concurrentBuffer.newValue(time, Math.sin(time));
+            newestTime = time;
+        }
+    }
+
+    /**
+     * Gets a time a little while before the newest sample, like the time a
+     * frame was taken.
+     */
+    private double getLookupTime() {
+        return newestTime - 0.13;
+    }
+
+    private double nextTime() {
+        double time = Math.max(newestTime + PERIOD, Timer.getFPGATimestamp());
+        newestTime = time;
+        return time;
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public void lockedWrite() {
+        Blackhole.consumeCPU(writeDelay);
+        double time = nextTime();
+        synchronized (lockedBuffer) {
+            lockedBuffer.newValue(time, Math.sin(time));
+        }
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(2)
+    public double lockedRead() {
+        double time = getLookupTime();
+        synchronized (lockedBuffer) {
+            return lockedBuffer.getValue(time);
+        }
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(1)
+    public void concurrentWrite() {
+        Blackhole.consumeCPU(writeDelay);
+        double time = nextTime();
+        concurrentBuffer.newValue(time, Math.sin(time));
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(2)
+    public double concurrentRead() {
+        return concurrentBuffer.getValue(getLookupTime());
+    }
+}
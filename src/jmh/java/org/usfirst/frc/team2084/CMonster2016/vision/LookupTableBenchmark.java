@@ -0,0 +1,93 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link LookupTableThreshold} with the single threaded native
+ * threshold on the images from the real field, without a blur, because that is
+ * the only time the table is used. Both produce the threshold and grayscale
+ * images. The table is built before the measurement starts.
+ *
+ * @author Ben Wolsieffer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LookupTableBenchmark {
+
+    private static final double[] MIN_THRESHOLD = { 0, 0, 99 };
+    private static final double[] MAX_THRESHOLD = { 99, 255, 255 };
+
+    static {
+        // The fields below are Mats, so OpenCV has to be loaded before the
+        // benchmark is constructed
+        OpenCVLoader.loadOpenCV();
+    }
+
+    private final List<Mat> images = new ArrayList<>();
+    private final Mat thresholdImage = new Mat();
+    private final Mat grayImage = new Mat();
+    private final LookupTableThreshold lookupTableThreshold = new LookupTableThreshold();
+    private int imageIndex = 0;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        File[] files = ThresholdBenchmark.IMAGE_DIRECTORY.listFiles((dir, name) -> name.endsWith(".jpg"));
+        Arrays.sort(files);
+        for (File file : files) {
+            Mat image = Imgcodecs.imread(file.getAbsolutePath());
+            Imgproc.resize(image, image, HighGoalProcessor.IMAGE_SIZE);
+            images.add(image);
+        }
+
+        while (LookupTableThreshold.getTable((int) MIN_THRESHOLD[0], (int) MIN_THRESHOLD[1], (int) MIN_THRESHOLD[2],
+                (int) MAX_THRESHOLD[0], (int) MAX_THRESHOLD[1], (int) MAX_THRESHOLD[2]) == null) {
+            Thread.sleep(10);
+        }
+    }
+
+    private Mat nextImage() {
+        Mat image = images.get(imageIndex);
+        imageIndex = (imageIndex + 1) % images.size();
+        return image;
+    }
+
+    @Benchmark
+    public Mat nativeThreshold() {
+        StripedThreshold.threshold(nextImage(), thresholdImage, grayImage, 0, MIN_THRESHOLD, MAX_THRESHOLD, 1);
+        return thresholdImage;
+    }
+
+    @Benchmark
+    public Mat lookupTable() {
+        lookupTableThreshold.threshold(nextImage(), thresholdImage, grayImage, 0, MIN_THRESHOLD, MAX_THRESHOLD);
+        return thresholdImage;
+    }
+}
@@ -0,0 +1,111 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares OpenCV's {@code solvePnP()} with the {@link PlanarPoseSolver}, the
+ * same way {@link TargetEvaluator} uses them, including copying the results
+ * out of the Mats. The corners are made by projecting the target at a few
+ * different poses.
+ *
+ * @author Ben Wolsieffer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PoseBenchmark {
+
+    private static final double[][] POSES = {
+            { 0, 0, 0, 0, 0, 10 },
+            { 0.3, -0.2, 0.05, 1.5, -0.8, 8 },
+            { -0.4, 0.5, -0.1, -0.5, 0.3, 3 },
+            { 0.1, 0.6, 0, 2, 1, 15 } };
+
+    static {
+        // The fields below are Mats, so OpenCV has to be loaded before the
+        // benchmark is constructed
+        OpenCVLoader.loadOpenCV();
+    }
+
+    private double[][] corners;
+    private float[][] floatCorners;
+    private int poseIndex = 0;
+
+    private PlanarPoseSolver solver;
+    private final MatOfPoint2f cornersMat = new MatOfPoint2f();
+    private final Mat rvec = new Mat();
+    private final Mat tvec = new Mat();
+    private final double[] rotation = new double[3];
+    private final double[] translation = new double[3];
+
+    @Setup
+    public void setup() {
+        solver = new PlanarPoseSolver(Target.CAMERA_MATRIX, Target.DISTORTION_MATRIX, Target.TARGET_WIDTH,
+                Target.TARGET_HEIGHT);
+        cornersMat.alloc(4);
+
+        corners = new double[POSES.length][8];
+        floatCorners = new float[POSES.length][8];
+        MatOfPoint2f projected = new MatOfPoint2f();
+        for (int i = 0; i < POSES.length; i++) {
+            double[] pose = POSES[i];
+            Calib3d.projectPoints(Target.OBJECT_POINTS, new MatOfDouble(pose[0], pose[1], pose[2]),
+                    new MatOfDouble(pose[3], pose[4], pose[5]), Target.CAMERA_MAT, Target.DISTORTION_MAT,
+                    projected);
+            Point[] points = projected.toArray();
+            for (int j = 0; j < 4; j++) {
+                corners[i][j * 2] = points[j].x;
+                corners[i][j * 2 + 1] = points[j].y;
+                floatCorners[i][j * 2] = (float) points[j].x;
+                floatCorners[i][j * 2 + 1] = (float) points[j].y;
+            }
+        }
+    }
+
+    private int nextPose() {
+        int pose = poseIndex;
+        poseIndex = (poseIndex + 1) % POSES.length;
+        return pose;
+    }
+
+    @Benchmark
+    public double[] openCV() {
+        cornersMat.put(0, 0, floatCorners[nextPose()]);
+        Calib3d.solvePnP(Target.OBJECT_POINTS, cornersMat, Target.CAMERA_MAT, Target.DISTORTION_MAT, rvec, tvec,
+                false, Calib3d.CV_P3P);
+        rvec.get(0, 0, rotation);
+        tvec.get(0, 0, translation);
+        return translation;
+    }
+
+    @Benchmark
+    public double[] planar() {
+        solver.solve(corners[nextPose()], rotation, translation);
+        return translation;
+    }
+}
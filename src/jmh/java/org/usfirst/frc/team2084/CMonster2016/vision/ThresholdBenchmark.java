@@ -0,0 +1,84 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the single threaded CPU threshold with the striped one on the
+ * images from the real field. One stripe is the original single threaded
+ * path.
+ *
+ * @author Ben Wolsieffer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ThresholdBenchmark {
+
+    public static final File IMAGE_DIRECTORY = new File("images/real_field");
+
+    private static final double[] MIN_THRESHOLD = { 0, 0, 99 };
+    private static final double[] MAX_THRESHOLD = { 99, 255, 255 };
+
+    static {
+        // The fields below are Mats, so OpenCV has to be loaded before the
+        // benchmark is constructed
+        OpenCVLoader.loadOpenCV();
+    }
+
+    @Param({ "1", "2", "4" })
+    public int stripes;
+
+    private final List<Mat> images = new ArrayList<>();
+    private final Mat thresholdImage = new Mat();
+    private final Mat grayImage = new Mat();
+    private int imageIndex = 0;
+
+    @Setup
+    public void setup() {
+        File[] files = IMAGE_DIRECTORY.listFiles((dir, name) -> name.endsWith(".jpg"));
+        Arrays.sort(files);
+        for (File file : files) {
+            Mat image = Imgcodecs.imread(file.getAbsolutePath());
+            Imgproc.resize(image, image, HighGoalProcessor.IMAGE_SIZE);
+            images.add(image);
+        }
+    }
+
+    @Benchmark
+    public Mat threshold() {
+        Mat image = images.get(imageIndex);
+        imageIndex = (imageIndex + 1) % images.size();
+
+        StripedThreshold.threshold(image, thresholdImage, grayImage, VisionParameters.DEFAULT_GOAL_BLUR_SIZE,
+                MIN_THRESHOLD, MAX_THRESHOLD, stripes);
+        return thresholdImage;
+    }
+}
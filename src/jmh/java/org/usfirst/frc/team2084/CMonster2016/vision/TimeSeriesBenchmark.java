@@ -0,0 +1,112 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kauailabs.navx.desktop.Timer;
+
+/**
+ * Compares looking up all four gyro channels in four {@link HistoryBuffer}s
+ * with looking them up in one {@link TimeSeriesBuffer}. Each buffer holds half
+ * a second of samples taken at the specified rate, with the time between them
+ * varying by up to half a period. The lookups are spread over the newest 0.3
+ * seconds, like frame times with different amounts of latency.
+ * <p>
+ * {@link HistoryBuffer} guesses where to start searching from the current
+ * time, so the samples are written again at the start of each iteration to end
+ * at the current time. The guess still gets worse during each iteration, like
+ * it does whenever the gyro falls behind.
+ *
+ * @author Ben Wolsieffer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 20, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class TimeSeriesBenchmark {
+
+    private static final int CHANNELS = HighGoalProcessor.GYRO_CHANNELS;
+    private static final int LOOKUPS = 64;
+
+    @Param({ "100", "200" })
+    public int rate;
+
+    private HistoryBuffer[] historyBuffers;
+    private TimeSeriesBuffer timeSeriesBuffer;
+
+    private final double[] lookupTimes = new double[LOOKUPS];
+    private int lookupIndex = 0;
+    private final double[] sample = new double[CHANNELS];
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        int length = rate / 2;
+        historyBuffers = new HistoryBuffer[CHANNELS];
+        for (int i = 0; i < CHANNELS; i++) {
+            historyBuffers[i] = new HistoryBuffer(length, rate);
+        }
+        timeSeriesBuffer = new TimeSeriesBuffer(length, CHANNELS);
+
+        Random random = new Random(2084);
+        double period = 1.0 / rate;
+        double[] times = new double[length];
+        double time = Timer.getFPGATimestamp();
+        for (int i = length - 1; i >= 0; i--) {
+            times[i] = time;
+            time -= period * (0.5 + random.nextDouble());
+        }
+        for (int i = 0; i < length; i++) {
+            for (int j = 0; j < CHANNELS; j++) {
+                sample[j] = Math.sin(times[i] * (j + 1));
+                historyBuffers[j].newValue(times[i], sample[j]);
+            }
+            timeSeriesBuffer.newSample(times[i], sample);
+        }
+
+        double newest = times[length - 1];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookupTimes[i] = newest - 0.3 * random.nextDouble();
+        }
+    }
+
+    private double nextLookupTime() {
+        lookupIndex = (lookupIndex + 1) % LOOKUPS;
+        return lookupTimes[lookupIndex];
+    }
+
+    @Benchmark
+    public double[] historyBuffer() {
+        double time = nextLookupTime();
+        for (int i = 0; i < CHANNELS; i++) {
+            sample[i] = historyBuffers[i].getValue(time);
+        }
+        return sample;
+    }
+
+    @Benchmark
+    public double[] timeSeriesBuffer() {
+        timeSeriesBuffer.getSample(nextLookupTime(), sample);
+        return sample;
+    }
+}
@@ -345,8 +345,9 @@ public class AHRS {
     /**
      * Returns the sensor timestamp corresponding to the last sample retrieved
      * from the sensor. Note that this sensor timestamp is only provided when
-     * the Register-based IO methods (SPI, I2C) are used; sensor timestamps are
-     * not provided when Serial-based IO methods (TTL UART, USB) are used.
+     * the Register-based IO methods (SPI, I2C) are used; when Serial-based IO
+     * methods (TTL UART, USB) are used, this is the time the sample was
+     * received in nanoseconds, from the vision code's clock.
      * 
      * @return The sensor timestamp corresponding to the current AHRS sensor
      *         data.
@@ -9,6 +9,8 @@
 /*----------------------------------------------------------------------------*/
 package com.kauailabs.navx.desktop;
 
+import org.usfirst.frc.team2084.CMonster2016.vision.Clock;
+
 class SerialIO implements IIOProvider {
 
     String serial_port_id;
@@ -30,6 +32,11 @@ class SerialIO implements IIOProvider {
     IIOCompleteNotification.BoardState board_state;
     IBoardCapabilities board_capabilities;
     double last_valid_packet_time;
+    /*
+     * Clock time the data currently being decoded was read from the port, in
+     * nanoseconds.
+     */
+    long last_receive_time;
 
     final boolean debug =
             false; /* Set to true to enable debug output (to smart dashboard) */
@@ -112,8 +119,11 @@ class SerialIO implements IIOProvider {
     protected int decodePacketHandler(byte[] received_data, int offset, int bytes_remaining) {
 
         int packet_length;
-        int sensor_timestamp =
-                0; /* Note: Serial Protocols don't provide sensor timestamps */
+        /*
+         * Note: Serial Protocols don't provide sensor timestamps, so the time
+         * the packet was received is used instead.
+         */
+        long sensor_timestamp = last_receive_time;
 
         if ((packet_length =
                 IMUProtocol.decodeYPRUpdate(received_data, offset, bytes_remaining, ypr_update_data)) > 0) {
@@ -238,7 +248,8 @@ class SerialIO implements IIOProvider {
                 }
 
                 if (bytes_read > 0) {
-                    last_data_received_timestamp = Timer.getFPGATimestamp();
+                    last_receive_time = Clock.nanoTime();
+                    last_data_received_timestamp = Clock.toSeconds(last_receive_time);
                     int i = 0;
                     // Scan the buffer looking for valid packets
                     while (i < bytes_read) {
@@ -6,6 +6,10 @@
  */
 package com.kauailabs.navx.desktop;
 
+import java.util.concurrent.TimeUnit;
+
+import org.usfirst.frc.team2084.CMonster2016.vision.Clock;
+
 /**
  * @author ben
  */
@@ -40,7 +44,7 @@ public class SerialPort {
         byte[] returnBuffer = null;
         byte[] newBuffer = new byte[count - filledLength];
         int read = port.readBytes(newBuffer, newBuffer.length);
-        long currTime = System.currentTimeMillis();
+        long currTime = TimeUnit.NANOSECONDS.toMillis(Clock.nanoTime());
         if (read > 0) {
             lastReadTime = currTime;
 
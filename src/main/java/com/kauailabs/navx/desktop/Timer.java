@@ -8,13 +8,21 @@ package com.kauailabs.navx.desktop;
 
 import java.util.concurrent.locks.LockSupport;
 
+import org.usfirst.frc.team2084.CMonster2016.vision.Clock;
+
 /**
  * @author ben
  */
 public class Timer {
 
+    /**
+     * Gets the time from the vision code's {@link Clock}, so gyro timestamps
+     * can be compared with camera timestamps.
+     *
+     * @return the number of seconds since the program started
+     */
     public static final double getFPGATimestamp() {
-        return System.currentTimeMillis() / 1000.0;
+        return Clock.seconds();
     }
 
     public static final void delay(double time) {
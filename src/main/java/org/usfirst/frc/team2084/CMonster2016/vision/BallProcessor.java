@@ -11,7 +11,6 @@ import java.util.List;
 
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfInt;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.Point;
 import org.opencv.core.Scalar;
@@ -40,6 +39,7 @@ public class BallProcessor extends VisionProcessor {
     private final Mat contourImage = new Mat();
     private final List<MatOfPoint> contours = new ArrayList<>();
     private final List<MatOfPoint> hulls = new ArrayList<>();
+    private final ContourBuffer contourBuffer = new ContourBuffer();
     private final Mat hierarchy = new Mat();
 
     /**
@@ -70,19 +70,9 @@ public class BallProcessor extends VisionProcessor {
 
         for (int i = 0; i < contours.size(); i++) {
             MatOfPoint contour = contours.get(i);
-            MatOfInt hullIndices = new MatOfInt();
-            MatOfPoint hull;
-            hulls.add(hull = new MatOfPoint());
-            Imgproc.convexHull(contour, hullIndices);
-
-            for (int c = 0; c < hullIndices.rows(); c++) {
-                int v = (int) hullIndices.get(c, 0)[0];
-                hull.put(c, 0, contour.get(v, 0));
-                // System.out.println(v);
-            }
-
-            // System.out.println(hull.size());
-
+            contourBuffer.load(contour);
+            contourBuffer.convexHull();
+            hulls.add(contourBuffer.storeHull(new MatOfPoint()));
         }
 
         Imgproc.drawContours(cameraImage, hulls, -1, CONTOUR_COLOR);
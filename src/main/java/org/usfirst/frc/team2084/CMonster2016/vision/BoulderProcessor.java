@@ -10,9 +10,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.opencv.core.Core;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfInt;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.Point;
 import org.opencv.core.Scalar;
@@ -39,6 +37,7 @@ public class BoulderProcessor extends ThreadedVisionProcessor {
     private final Mat contourImage = new Mat();
     private final List<MatOfPoint> contours = new ArrayList<>();
     private final List<MatOfPoint> hulls = new ArrayList<>();
+    private final ContourBuffer contourBuffer = new ContourBuffer();
     private final Mat hierarchy = new Mat();
     private final CameraCapture camera;
 
@@ -67,7 +66,8 @@ public class BoulderProcessor extends ThreadedVisionProcessor {
             double vMin, double hMax, double sMax, double vMax);
 
     @Override
-    public void backgroundProcess(Mat cameraImage) {
+    public void backgroundProcess(Frame cameraFrame) {
+        Mat cameraImage = cameraFrame.getImage();
         Imgproc.cvtColor(cameraImage, hsvImage, Imgproc.COLOR_BGR2HSV);
 
         // Threshold image to find blue/green
@@ -87,7 +87,9 @@ public class BoulderProcessor extends ThreadedVisionProcessor {
 
         for (int i = 0; i < contours.size(); i++) {
             MatOfPoint contour = contours.get(i);
-            hulls.add(convexHull(contour));
+            contourBuffer.load(contour);
+            contourBuffer.convexHull();
+            hulls.add(contourBuffer.storeHull(new MatOfPoint()));
         }
 
         Imgproc.drawContours(cameraImage, hulls, -1, CONTOUR_COLOR);
@@ -96,32 +98,18 @@ public class BoulderProcessor extends ThreadedVisionProcessor {
     }
 
     /**
-     * @param image
+     * @param frame
      */
     @Override
-    public void preProcess(Mat image) {
+    public void preProcess(Frame frame) {
 
     }
 
     /**
-     * @param image
+     * @param frame
      */
     @Override
-    public void postProcess(Mat image) {
+    public void postProcess(Frame frame) {
 
     }
-
-    private static MatOfPoint convexHull(MatOfPoint contour) {
-        MatOfInt hullMatrix = new MatOfInt();
-        Imgproc.convexHull(contour, hullMatrix); // perform convex hull, gap
-                                                 // filler
-        MatOfPoint hull = new MatOfPoint();
-        hull.create(hullMatrix.rows(), 1, CvType.CV_32SC2);
-
-        for (int r = 0; r < hullMatrix.rows(); r++) {
-            hull.put(r, 0, contour.get((int) hullMatrix.get(r, 0)[0], 0));
-        }
-
-        return hull;
-    }
 }
@@ -0,0 +1,78 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The clock that every timestamp in the vision code comes from: camera frames,
+ * gyro samples and results. It counts nanoseconds since the program started
+ * using {@link System#nanoTime()}, so it never jumps when NTP changes the
+ * system time, unlike {@link System#currentTimeMillis()}. Timestamps should
+ * only be converted to wall time for logging.
+ *
+ * @author Ben Wolsieffer
+ */
+public final class Clock {
+
+    private static final long NANO_ORIGIN = System.nanoTime();
+    private static final long WALL_ORIGIN = System.currentTimeMillis();
+
+    /**
+     * Gets the current time.
+     *
+     * @return the number of nanoseconds since the program started
+     */
+    public static long nanoTime() {
+        return System.nanoTime() - NANO_ORIGIN;
+    }
+
+    /**
+     * Gets the current time in seconds, for code that stores times as
+     * doubles.
+     *
+     * @return the number of seconds since the program started
+     */
+    public static double seconds() {
+        return toSeconds(nanoTime());
+    }
+
+    /**
+     * Converts a timestamp to seconds.
+     *
+     * @param nanos the timestamp in nanoseconds
+     * @return the timestamp in seconds
+     */
+    public static double toSeconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    /**
+     * Converts a time in seconds to a timestamp.
+     *
+     * @param seconds the time in seconds
+     * @return the timestamp in nanoseconds
+     */
+    public static long fromSeconds(double seconds) {
+        return (long) (seconds * 1e9);
+    }
+
+    /**
+     * Converts a timestamp to the wall time it was taken at. This is only an
+     * estimate, because the wall clock might have been changed since the
+     * program started, so it should only be used for logging.
+     *
+     * @param nanos the timestamp in nanoseconds
+     * @return the wall time in milliseconds since the epoch
+     */
+    public static long toWallTime(long nanos) {
+        return WALL_ORIGIN + TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private Clock() {
+    }
+}
@@ -0,0 +1,140 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link HistoryBuffer} that can be written by one thread and read by any
+ * number of threads without locking. It uses a sequence lock: the writer bumps
+ * the sequence number to an odd value before changing a sample and back to an
+ * even value afterwards. A reader remembers the sequence number before it
+ * starts and tries again if it was odd or has changed by the time it is done,
+ * so it never sees a time from one sample paired with the value from another.
+ * The writer never waits for the readers.
+ * <p>
+ * Lookups use a binary search instead of guessing the position from the
+ * current time, so they don't depend on the clock.
+ *
+ * @author Ben Wolsieffer
+ */
+public class ConcurrentHistoryBuffer {
+
+    private final int length;
+
+    /**
+     * The samples, with the bits of the time at even indices and the bits of
+     * the value at odd indices. The elements are volatile, so they can't be
+     * reordered around the sequence number.
+     */
+    private final AtomicLongArray samples;
+
+    /**
+     * Twice the number of values that have been written, plus one while a
+     * value is being written.
+     */
+    private volatile long sequence = 0;
+
+    /**
+     * Creates a buffer that holds the specified number of values.
+     *
+     * @param length the number of values to keep
+     */
+    public ConcurrentHistoryBuffer(int length) {
+        this.length = length;
+        samples = new AtomicLongArray(length * 2);
+    }
+
+    /**
+     * Adds a new value to the buffer at the specified time, replacing the
+     * oldest one if the buffer is full. This must only be called by one thread.
+     *
+     * @param time the time the value was sampled
+     * @param value the value to add
+     */
+    public void newValue(double time, double value) {
+        long seq = sequence;
+        int index = (int) ((seq >>> 1) % length) * 2;
+
+        sequence = seq + 1;
+        samples.set(index, Double.doubleToRawLongBits(time));
+        samples.set(index + 1, Double.doubleToRawLongBits(value));
+        sequence = seq + 2;
+    }
+
+    /**
+     * Get a value from the buffer the specified time. If the time is not within
+     * the known values of the buffer, the oldest or newest value is returned.
+     *
+     * @param time the time to retrieve a value.
+     * @return the value at that time
+     */
+    public double getValue(double time) {
+        while (true) {
+            long seq = sequence;
+            if ((seq & 1) == 0) {
+                double value = lookup(seq >>> 1, time);
+                if (sequence == seq) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up a value once the number of values written is known. If a value
+     * is written in the middle of this, the result is garbage, but the loops
+     * still end.
+     */
+    private double lookup(long count, double time) {
+        int filled = (int) Math.min(count, length);
+        if (filled == 0) {
+            return 0;
+        }
+        int first = (int) ((count - filled) % length);
+
+        if (time <= timeAt(first, 0)) {
+            return valueAt(first, 0);
+        }
+        if (time >= timeAt(first, filled - 1)) {
+            return valueAt(first, filled - 1);
+        }
+
+        // Find the first value at or after the time
+        int low = 1;
+        int high = filled - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timeAt(first, middle) < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        double oldTime = timeAt(first, low - 1);
+        double oldValue = valueAt(first, low - 1);
+        double slope = (valueAt(first, low) - oldValue) / (timeAt(first, low) - oldTime);
+        return slope * (time - oldTime) + oldValue;
+    }
+
+    private int getIndex(int first, int position) {
+        int index = first + position;
+        if (index >= length) {
+            index -= length;
+        }
+        return index * 2;
+    }
+
+    private double timeAt(int first, int position) {
+        return Double.longBitsToDouble(samples.get(getIndex(first, position)));
+    }
+
+    private double valueAt(int first, int position) {
+        return Double.longBitsToDouble(samples.get(getIndex(first, position) + 1));
+    }
+}
@@ -0,0 +1,201 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.Arrays;
+
+import org.opencv.core.CvType;
+import org.opencv.core.MatOfPoint;
+
+/**
+ * Reusable buffers for working on contours in Java. Reading or writing one
+ * element of a Mat at a time is a native call that allocates an array, so
+ * instead a whole contour is copied into an {@code int[]} at once, the hull is
+ * found in Java, and the result is copied back at once.
+ * <p>
+ * Points are stored as x, y pairs. Each buffer should only be used by one
+ * thread.
+ *
+ * @author Ben Wolsieffer
+ */
+public class ContourBuffer {
+
+    private int[] points = new int[256];
+    private int pointCount;
+    private int[] hull = new int[512];
+    private int hullCount;
+    private long[] sortKeys = new long[128];
+
+    /**
+     * Copies a contour into this buffer.
+     *
+     * @param contour the contour to copy
+     * @return the number of points in the contour
+     */
+    public int load(MatOfPoint contour) {
+        pointCount = (int) contour.total();
+        if (points.length < pointCount * 2) {
+            points = new int[pointCount * 4];
+        }
+        if (pointCount > 0) {
+            contour.get(0, 0, points);
+        }
+        return pointCount;
+    }
+
+    /**
+     * @return the points of the last contour that was loaded
+     */
+    public int[] getPoints() {
+        return points;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Finds the convex hull of the last contour that was loaded.
+     *
+     * @return the number of points in the hull
+     */
+    public int convexHull() {
+        if (sortKeys.length < pointCount) {
+            sortKeys = new long[pointCount * 2];
+        }
+        if (hull.length < pointCount * 4) {
+            hull = new int[pointCount * 8];
+        }
+        hullCount = convexHull(points, pointCount, sortKeys, hull);
+        return hullCount;
+    }
+
+    /**
+     * @return the points of the last hull that was found
+     */
+    public int[] getHull() {
+        return hull;
+    }
+
+    public int getHullCount() {
+        return hullCount;
+    }
+
+    /**
+     * Maps the hull points from a smaller image back to the full size image,
+     * putting each one in the middle of the block of pixels it came from.
+     *
+     * @param scale the number of full size pixels per small pixel
+     */
+    public void scaleHull(int scale) {
+        for (int i = 0; i < hullCount * 2; i++) {
+            hull[i] = hull[i] * scale + scale / 2;
+        }
+    }
+
+    /**
+     * Copies the last hull that was found into a contour, replacing whatever
+     * it contained. This can be the contour that the hull came from.
+     *
+     * @param contour the contour to write to
+     * @return the contour
+     */
+    public MatOfPoint storeHull(MatOfPoint contour) {
+        contour.create(hullCount, 1, CvType.CV_32SC2);
+        if (hullCount > 0) {
+            // put() stops at the end of the Mat, so the unused part of the
+            // buffer is ignored
+            contour.put(0, 0, hull);
+        }
+        return contour;
+    }
+
+    /**
+     * Finds the convex hull of a set of points using Andrew's monotone chain
+     * algorithm. Like OpenCV, the hull is counterclockwise when the y axis
+     * points up and collinear points are left out.
+     *
+     * @param points the points, as x, y pairs
+     * @param count the number of points
+     * @param sortKeys scratch space for at least {@code count} elements
+     * @param hull the array to write the hull to, which must have room for
+     *        {@code 2 * count} points
+     * @return the number of points in the hull
+     */
+    public static int convexHull(int[] points, int count, long[] sortKeys, int[] hull) {
+        // Sort by x and then y. Flipping the sign bit of y makes the unsigned
+        // low half sort the same as a signed int.
+        for (int i = 0; i < count; i++) {
+            sortKeys[i] = ((long) points[i * 2] << 32) | ((points[i * 2 + 1] ^ 0x80000000) & 0xFFFFFFFFL);
+        }
+        Arrays.sort(sortKeys, 0, count);
+
+        if (count < 3) {
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (i == 0 || sortKeys[i] != sortKeys[i - 1]) {
+                    setPoint(hull, unique++, sortKeys[i]);
+                }
+            }
+            return unique;
+        }
+
+        int k = 0;
+        // Lower hull
+        for (int i = 0; i < count; i++) {
+            while (k >= 2 && cross(hull, k - 2, k - 1, sortKeys[i]) <= 0) {
+                k--;
+            }
+            setPoint(hull, k++, sortKeys[i]);
+        }
+        // Upper hull
+        for (int i = count - 2, lower = k + 1; i >= 0; i--) {
+            while (k >= lower && cross(hull, k - 2, k - 1, sortKeys[i]) <= 0) {
+                k--;
+            }
+            setPoint(hull, k++, sortKeys[i]);
+        }
+        // The last point is the same as the first
+        return Math.max(1, k - 1);
+    }
+
+    private static void setPoint(int[] hull, int index, long key) {
+        hull[index * 2] = (int) (key >> 32);
+        hull[index * 2 + 1] = ((int) key) ^ 0x80000000;
+    }
+
+    private static long cross(int[] hull, int a, int b, long key) {
+        long ax = hull[a * 2], ay = hull[a * 2 + 1];
+        long bx = hull[b * 2], by = hull[b * 2 + 1];
+        long cx = (int) (key >> 32), cy = ((int) key) ^ 0x80000000;
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    /**
+     * Finds the point closest to a location.
+     *
+     * @param points the points, as x, y pairs
+     * @param count the number of points
+     * @param x the x coordinate of the location
+     * @param y the y coordinate of the location
+     * @return the index of the closest point
+     */
+    public static int nearest(int[] points, int count, double x, double y) {
+        double minDistance = Double.MAX_VALUE;
+        int nearest = 0;
+        for (int i = 0; i < count; i++) {
+            double dx = points[i * 2] - x;
+            double dy = points[i * 2 + 1] - y;
+            double dist = dx * dx + dy * dy;
+            if (dist < minDistance) {
+                minDistance = dist;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+}
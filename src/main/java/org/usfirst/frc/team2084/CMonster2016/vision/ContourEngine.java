@@ -0,0 +1,31 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+/**
+ * The ways the blobs in the high goal threshold image can be found and turned
+ * into convex hulls.
+ *
+ * @author Ben Wolsieffer
+ */
+public enum ContourEngine {
+    /**
+     * {@code Imgproc.findContours()}, with the hulls found by
+     * {@link ContourBuffer}.
+     */
+    OPENCV,
+    /**
+     * Native code that finds the contours, hulls and areas and returns them in
+     * a {@link HullBuffer}.
+     */
+    NATIVE,
+    /**
+     * The pure Java {@link RunLengthLabeler}, which doesn't need to copy the
+     * threshold image or trace the edges of the blobs.
+     */
+    RUN_LENGTH
+}
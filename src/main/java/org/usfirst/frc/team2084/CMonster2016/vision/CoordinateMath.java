@@ -11,7 +11,9 @@ import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 
 /**
- * Coordinate transform math library.
+ * Coordinate transform math library. The versions that take Mats allocate
+ * native memory on every call, so the {@code double[]} versions or a
+ * {@link RigidTransform} should be used anywhere that runs for every frame.
  * 
  * @author Ben Wolsieffer
  */
@@ -48,6 +50,22 @@ public class CoordinateMath {
         rotateX(point, point, angle);
     }
 
+    /**
+     * Rotate a point around the x axis, without using any Mats.
+     * 
+     * @param point the point to rotate, as an {x, y, z} array
+     * @param angle the angle to rotate (in radians)
+     */
+    public static void rotateX(double[] point, double angle) {
+        double c = Math.cos(angle);
+        double s = Math.sin(angle);
+
+        double y = point[1];
+        double z = point[2];
+        point[1] = c * y - s * z;
+        point[2] = s * y + c * z;
+    }
+
     /**
      * Rotate a point around the y axis and store the result in another point.
      * 
@@ -79,6 +97,21 @@ public class CoordinateMath {
         rotateY(point, point, angle);
     }
 
+    /**
+     * Rotate a point around the y axis, without using any Mats.
+     * 
+     * @param point the point to rotate, as an {x, y, z} array
+     * @param angle the angle to rotate (in radians)
+     */
+    public static void rotateY(double[] point, double angle) {
+        double c = Math.cos(angle);
+        double s = Math.sin(angle);
+        double x = point[0];
+        double z = point[2];
+        point[0] = c * x + s * z;
+        point[2] = -s * x + c * z;
+    }
+
     /**
      * Rotate a point around the z axis and store the result in another point.
      * 
@@ -110,6 +143,21 @@ public class CoordinateMath {
         rotateZ(point, point, angle);
     }
 
+    /**
+     * Rotate a point around the z axis, without using any Mats.
+     * 
+     * @param point the point to rotate, as an {x, y, z} array
+     * @param angle the angle to rotate (in radians)
+     */
+    public static void rotateZ(double[] point, double angle) {
+        double c = Math.cos(angle);
+        double s = Math.sin(angle);
+        double x = point[0];
+        double y = point[1];
+        point[0] = c * x - s * y;
+        point[1] = s * x + c * y;
+    }
+
     /**
      * Translate a point in space.
      * 
@@ -140,6 +188,20 @@ public class CoordinateMath {
         translate(vec, vec, x, y, z);
     }
 
+    /**
+     * Translate a point in space, without using any Mats.
+     * 
+     * @param point the point, as an {x, y, z} array
+     * @param x the x translation
+     * @param y the y translation
+     * @param z the z translation
+     */
+    public static void translate(double[] point, double x, double y, double z) {
+        point[0] += x;
+        point[1] += y;
+        point[2] += z;
+    }
+
     /**
      * Multiply two matrices.
      * 
@@ -0,0 +1,33 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+/**
+ * The ways the high goal algorithm can be run on consecutive frames. The mode
+ * is chosen when the {@link HighGoalProcessor} is created.
+ *
+ * @author Ben Wolsieffer
+ */
+public enum ExecutionMode {
+    /**
+     * Every step of the algorithm runs on the processing thread, and a frame
+     * is finished before the next one is started.
+     */
+    SERIAL,
+    /**
+     * Thresholding runs on the processing thread and the rest of the steps
+     * each run on their own thread in a {@link Pipeline}, so a new frame can
+     * be thresholded while the previous one is still being analyzed.
+     */
+    PIPELINE,
+    /**
+     * Each frame is processed from start to finish by one of a number of
+     * workers, so several consecutive frames can be processed at the same
+     * time. This needs a background processing thread.
+     */
+    PARALLEL
+}
@@ -0,0 +1,200 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opencv.core.Mat;
+
+/**
+ * A reference counted image that belongs to a {@link FramePool}. This allows
+ * one image to be shared between the processor, the image handlers and the
+ * video servers without copying it. Everybody that keeps a frame after
+ * returning from the method it was passed to has to {@link #retain()} it and
+ * {@link #release()} it when they are done. When the last reference is
+ * released, the frame goes back to its pool to be reused.
+ * <p>
+ * The frame also carries information about how the image was captured, such
+ * as when it was grabbed and the exposure settings, and the
+ * {@link ProcessingMode} of the results drawn on it, so nothing has to be
+ * stored in the image itself.
+ *
+ * @author Ben Wolsieffer
+ */
+public class Frame {
+
+    private final Mat image;
+    private final FramePool pool;
+    private final AtomicInteger references = new AtomicInteger();
+    private long timestamp;
+    private long sequence;
+    private double exposure = -1;
+    private boolean autoExposure = true;
+    private ProcessingMode mode = ProcessingMode.DEFAULT;
+
+    Frame(FramePool pool, Mat image) {
+        this.pool = pool;
+        this.image = image;
+    }
+
+    /**
+     * Gets the image stored in this frame. It must not be used after the frame
+     * is released.
+     *
+     * @return the image
+     */
+    public Mat getImage() {
+        return image;
+    }
+
+    /**
+     * Gets the time the image was grabbed from the camera.
+     *
+     * @return the {@link Clock} time in nanoseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Sets the time the image was grabbed from the camera. This should only be
+     * called by whoever is filling the frame, before anybody else can see it.
+     *
+     * @param timestamp the {@link Clock} time in nanoseconds
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Gets the number of the frame, counting every frame grabbed from the
+     * camera.
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Sets the number of the frame. This should only be called by whoever is
+     * filling the frame.
+     *
+     * @param sequence the sequence number
+     */
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Gets the exposure the camera was set to when the image was grabbed. The
+     * camera might not have applied it yet.
+     *
+     * @return the exposure, or -1 if it was never set
+     */
+    public double getExposure() {
+        return exposure;
+    }
+
+    /**
+     * Gets whether auto exposure was enabled when the image was grabbed.
+     *
+     * @return true if auto exposure was enabled
+     */
+    public boolean isAutoExposure() {
+        return autoExposure;
+    }
+
+    /**
+     * Sets the exposure settings the image was grabbed with. This should only
+     * be called by whoever is filling the frame.
+     *
+     * @param exposure the exposure, or -1 if it was never set
+     * @param autoExposure whether auto exposure was enabled
+     */
+    public void setExposure(double exposure, boolean autoExposure) {
+        this.exposure = exposure;
+        this.autoExposure = autoExposure;
+    }
+
+    /**
+     * Gets how the results that are drawn on the image were found. Processors
+     * that don't have any modes leave this as {@link ProcessingMode#DEFAULT}.
+     *
+     * @return the processing mode
+     */
+    public ProcessingMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets how the results that are drawn on the image were found. This
+     * should only be called by the processor, before the frame is passed to
+     * the image handlers.
+     *
+     * @param mode the processing mode
+     */
+    public void setMode(ProcessingMode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Copies the capture information (but not the image) from another frame.
+     *
+     * @param other the frame to copy from
+     */
+    public void copyInfo(Frame other) {
+        timestamp = other.timestamp;
+        sequence = other.sequence;
+        exposure = other.exposure;
+        autoExposure = other.autoExposure;
+        mode = other.mode;
+    }
+
+    /**
+     * Adds a reference to this frame, which prevents it from being reused
+     * until {@link #release()} is called.
+     *
+     * @return this frame
+     */
+    public Frame retain() {
+        if (references.getAndIncrement() <= 0) {
+            throw new IllegalStateException("Frame was retained after it was released.");
+        }
+        return this;
+    }
+
+    /**
+     * Removes a reference from this frame. When the last reference is removed,
+     * the frame is returned to its pool.
+     */
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (remaining == 0) {
+            pool.recycle(this);
+        } else if (remaining < 0) {
+            throw new IllegalStateException("Frame was released too many times.");
+        }
+    }
+
+    /**
+     * Gets the number of references held to this frame.
+     *
+     * @return the reference count
+     */
+    public int getReferenceCount() {
+        return references.get();
+    }
+
+    /**
+     * Called by the pool when the frame is handed out.
+     */
+    void reset() {
+        references.set(1);
+        mode = ProcessingMode.DEFAULT;
+    }
+}
@@ -0,0 +1,131 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+
+/**
+ * Pool of reference counted {@link Frame}s. Frames keep their native memory
+ * when they are returned, so once the pool has grown to the number of frames
+ * that are in flight at the same time, no more images are allocated. The
+ * counters can be used to check that this is actually happening.
+ *
+ * @author Ben Wolsieffer
+ */
+public class FramePool {
+
+    private final ConcurrentLinkedQueue<Frame> freeFrames = new ConcurrentLinkedQueue<>();
+
+    private final Size frameSize;
+    private final int frameType;
+
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger freeCount = new AtomicInteger();
+    private final AtomicLong allocationMisses = new AtomicLong();
+
+    /**
+     * Creates a pool of frames with the specified size and type.
+     *
+     * @param initialFrames the number of frames to allocate up front
+     * @param frameSize the size of the frames
+     * @param frameType the OpenCV type of the frames
+     */
+    public FramePool(int initialFrames, Size frameSize, int frameType) {
+        this.frameSize = frameSize;
+        this.frameType = frameType;
+
+        for (int i = 0; i < initialFrames; i++) {
+            freeFrames.add(allocate());
+            freeCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Creates a pool of empty frames. Each frame is sized the first time an
+     * image is written to it, and it keeps that memory after it is recycled.
+     *
+     * @param initialFrames the number of frames to allocate up front
+     */
+    public FramePool(int initialFrames) {
+        this(initialFrames, null, 0);
+    }
+
+    private Frame allocate() {
+        size.incrementAndGet();
+        return new Frame(this, frameSize == null ? new Mat() : new Mat(frameSize, frameType));
+    }
+
+    /**
+     * Gets a frame from the pool, allocating a new one if the pool is empty.
+     * The caller owns the only reference to the returned frame.
+     *
+     * @return a frame
+     */
+    public Frame acquire() {
+        Frame frame = freeFrames.poll();
+        if (frame == null) {
+            allocationMisses.incrementAndGet();
+            frame = allocate();
+        } else {
+            freeCount.decrementAndGet();
+        }
+        frame.reset();
+        return frame;
+    }
+
+    /**
+     * Called by {@link Frame#release()} when the last reference is released.
+     *
+     * @param frame the frame to return to the pool
+     */
+    void recycle(Frame frame) {
+        freeFrames.offer(frame);
+        freeCount.incrementAndGet();
+    }
+
+    /**
+     * Gets the total number of frames that belong to this pool.
+     *
+     * @return the number of frames
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Gets the number of frames that are waiting in the pool to be used.
+     *
+     * @return the number of free frames
+     */
+    public int getFreeCount() {
+        return freeCount.get();
+    }
+
+    /**
+     * Gets the number of frames that are currently being used.
+     *
+     * @return the number of frames in use
+     */
+    public int getInUseCount() {
+        return getSize() - getFreeCount();
+    }
+
+    /**
+     * Gets the number of times a frame had to be allocated because the pool
+     * was empty. This should stop increasing once the pipeline is running.
+     *
+     * @return the number of allocation misses
+     */
+    public long getAllocationMisses() {
+        return allocationMisses.get();
+    }
+}
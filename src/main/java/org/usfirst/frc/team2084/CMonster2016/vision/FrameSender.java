@@ -0,0 +1,72 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.opencv.core.Mat;
+
+/**
+ * Sends {@link Frame}s from a background thread, so that encoding and sending
+ * the stream does not slow down the processing thread. Only the latest frame
+ * is sent, if a new one arrives while the previous one is still waiting, the
+ * old one is released without being sent.
+ *
+ * @author Ben Wolsieffer
+ */
+class FrameSender {
+
+    @FunctionalInterface
+    interface ImageSender {
+
+        void sendImage(Mat image) throws IOException;
+    }
+
+    private final AtomicReference<Frame> pendingFrame = new AtomicReference<>();
+    private final ImageSender sender;
+    private final Thread thread;
+
+    FrameSender(String name, ImageSender sender) {
+        this.sender = sender;
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a frame to be sent. The frame is retained until it has been sent.
+     *
+     * @param frame the frame to send
+     */
+    void send(Frame frame) {
+        frame.retain();
+        Frame oldFrame = pendingFrame.getAndSet(frame);
+        if (oldFrame != null) {
+            oldFrame.release();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        while (true) {
+            Frame frame = pendingFrame.getAndSet(null);
+            if (frame != null) {
+                try {
+                    sender.sendImage(frame.getImage());
+                } catch (IOException | IllegalStateException ex) {
+                    System.err.println("Could not send frame: " + ex);
+                } finally {
+                    frame.release();
+                }
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,572 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * The images and results for one frame of the high goal algorithm. The
+ * algorithm is split into steps that each work on a {@link GoalFrame}, so that
+ * the steps for different frames can run on different threads at the same
+ * time. Frames are reused so that the images don't have to be reallocated.
+ *
+ * @author Ben Wolsieffer
+ */
+public class GoalFrame {
+
+    private static final Scalar BLACK = new Scalar(0);
+
+    /**
+     * The smallest image is 1/2^MAX_PYRAMID_LEVEL of the original size.
+     * Smaller images lose the edges of the goal, so far away goals that are
+     * close to the minimum blob area are missed more often. See
+     * GoalPyramidTest for how much.
+     */
+    public static final int MAX_PYRAMID_LEVEL = 2;
+
+    private static final ForkJoinPool EVALUATION_POOL =
+            new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final Mat thresholdImage = new Mat();
+    private final Mat grayImage = new Mat();
+    private final Mat contoursImage = new Mat();
+    private final Mat hierarchy = new Mat();
+    private final Mat smallImage = new Mat();
+    private final Mat smallGrayImage = new Mat();
+
+    private final List<MatOfPoint> contours = new ArrayList<>();
+    private final ContourBuffer contourBuffer = new ContourBuffer();
+    private List<Target> targets = Collections.emptyList();
+
+    private LookupTableThreshold lookupTableThreshold;
+    private HullBuffer hullBuffer;
+    private RunLengthLabeler labeler;
+
+    /**
+     * The part of the image that was searched, or null if it was the whole
+     * image.
+     */
+    private Rect searchRegion;
+    private Rect scaledSearchRegion;
+
+    /**
+     * How many times smaller the threshold image is than the camera image.
+     */
+    private int scale = 1;
+    private int pyramidLevel = 0;
+
+    /**
+     * {@link Clock} time the image was grabbed in nanoseconds.
+     */
+    private long timestamp;
+
+    /**
+     * {@link Clock} time when processing of this frame started, used
+     * for the time budget.
+     */
+    private long startTime;
+
+    /**
+     * The engine that thresholded the image, which is
+     * {@link ThresholdEngine#NATIVE} if the lookup table was selected but
+     * couldn't be used.
+     */
+    private ThresholdEngine thresholdEngine = ThresholdEngine.NATIVE;
+
+    /**
+     * Whether some candidates were skipped because the frame ran out of time.
+     */
+    private boolean truncated;
+
+    /**
+     * Number of blobs that {@link #findContours()} threw away for being too
+     * small, which are counted by the evaluator in {@link #findTargets()}.
+     */
+    private int smallBlobCount;
+
+    private long[] candidateOrder = new long[64];
+
+    /**
+     * Color converts, blurs and thresholds the image. The image is not needed
+     * after this.
+     *
+     * @param image the camera image
+     */
+    public void threshold(Mat image) {
+        threshold(image, null);
+    }
+
+    /**
+     * Color converts, blurs and thresholds part of the image. The rest of the
+     * threshold image is cleared. The image is not needed after this.
+     * <p>
+     * If a pyramid level is set, the threshold is done on a smaller copy of
+     * the image and the threshold image is that size. The grayscale image is
+     * always full size so the corners can be refined at full resolution.
+     *
+     * @param image the camera image
+     * @param region the region to search, or null to search the whole image
+     */
+    public void threshold(Mat image, Rect region) {
+        startTime = Clock.nanoTime();
+        searchRegion = region;
+        thresholdEngine = ThresholdEngine.NATIVE;
+
+        pyramidLevel = Math.max(0, Math.min(MAX_PYRAMID_LEVEL, VisionParameters.getGoalPyramidLevel()));
+        scale = 1 << pyramidLevel;
+        int blurSize = VisionParameters.getGoalBlurSize() / scale;
+
+        Mat searchImage;
+        Mat searchGrayImage;
+        if (scale == 1) {
+            searchImage = image;
+            searchGrayImage = grayImage;
+            scaledSearchRegion = region;
+        } else {
+            Imgproc.resize(image, smallImage, new Size(image.cols() / scale, image.rows() / scale), 0, 0,
+                    Imgproc.INTER_AREA);
+            searchImage = smallImage;
+            searchGrayImage = smallGrayImage;
+            scaledSearchRegion = region == null ? null : scaleDown(region, smallImage.cols(), smallImage.rows());
+        }
+
+        if (scaledSearchRegion == null) {
+            threshold(searchImage, thresholdImage, searchGrayImage, blurSize);
+        } else {
+            thresholdImage.create(searchImage.size(), CvType.CV_8UC1);
+            searchGrayImage.create(searchImage.size(), CvType.CV_8UC1);
+            thresholdImage.setTo(BLACK);
+            threshold(searchImage.submat(scaledSearchRegion), thresholdImage.submat(scaledSearchRegion),
+                    searchGrayImage.submat(scaledSearchRegion), blurSize);
+        }
+
+        if (scale != 1) {
+            // The corners are refined on the full size grayscale image
+            if (region == null) {
+                Imgproc.cvtColor(image, grayImage, Imgproc.COLOR_BGR2GRAY);
+            } else {
+                grayImage.create(image.size(), CvType.CV_8UC1);
+                Imgproc.cvtColor(image.submat(region), grayImage.submat(region), Imgproc.COLOR_BGR2GRAY);
+            }
+        }
+    }
+
+    /**
+     * Scales a region down to the pyramid level, rounding outwards.
+     */
+    private Rect scaleDown(Rect region, int width, int height) {
+        int left = region.x / scale;
+        int top = region.y / scale;
+        int right = Math.min(width, (region.x + region.width + scale - 1) / scale);
+        int bottom = Math.min(height, (region.y + region.height + scale - 1) / scale);
+        return new Rect(left, top, right - left, bottom - top);
+    }
+
+    private void threshold(Mat image, Mat thresholdImage, Mat grayImage, int blurSize) {
+        // Pass the raw threshold values and addresses to the native code
+        double[] minThreshold = VisionParameters.getGoalMinThreshold().val;
+        double[] maxThreshold = VisionParameters.getGoalMaxThreshold().val;
+        switch (VisionParameters.getGoalThresholdEngine()) {
+        case LOOKUP_TABLE:
+            if (lookupTableThreshold == null) {
+                lookupTableThreshold = new LookupTableThreshold();
+            }
+            // The native code is used for frames the table can't handle
+            if (lookupTableThreshold.threshold(image, thresholdImage, grayImage, blurSize, minThreshold,
+                    maxThreshold)) {
+                thresholdEngine = ThresholdEngine.LOOKUP_TABLE;
+            } else {
+                thresholdNative(image, thresholdImage, grayImage, blurSize, minThreshold, maxThreshold);
+            }
+        break;
+        case NATIVE:
+        default:
+            thresholdNative(image, thresholdImage, grayImage, blurSize, minThreshold, maxThreshold);
+        break;
+        }
+    }
+
+    private static void thresholdNative(Mat image, Mat thresholdImage, Mat grayImage, int blurSize,
+            double[] minThreshold, double[] maxThreshold) {
+        // The GPU is faster on its own, but on the CPU the image can be split
+        // between cores.
+        int stripes = HighGoalProcessor.isGpuEnabled() ? 1 : VisionParameters.getGoalThresholdStripes();
+        StripedThreshold.threshold(image, thresholdImage, grayImage, blurSize, minThreshold, maxThreshold, stripes);
+    }
+
+    /**
+     * Finds the convex hulls of the blobs in the threshold image. The hulls
+     * are in full size image coordinates, even if the threshold was done on a
+     * smaller image.
+     */
+    public void findContours() {
+        contours.clear();
+        smallBlobCount = 0;
+        switch (VisionParameters.getGoalContourEngine()) {
+        case NATIVE:
+            findContoursNative();
+            return;
+        case RUN_LENGTH:
+            findContoursRunLength();
+            return;
+        case OPENCV:
+        default:
+        break;
+        }
+
+        if (scaledSearchRegion == null) {
+            thresholdImage.copyTo(contoursImage);
+            Imgproc.findContours(contoursImage, contours, hierarchy, Imgproc.RETR_EXTERNAL,
+                    Imgproc.CHAIN_APPROX_SIMPLE);
+        } else {
+            // Only search the region, but keep the contours in image
+            // coordinates
+            thresholdImage.submat(scaledSearchRegion).copyTo(contoursImage);
+            Imgproc.findContours(contoursImage, contours, hierarchy, Imgproc.RETR_EXTERNAL,
+                    Imgproc.CHAIN_APPROX_SIMPLE, new Point(scaledSearchRegion.x, scaledSearchRegion.y));
+        }
+
+        // Replace each contour with its hull, scaled back to the full size
+        // image
+        for (MatOfPoint contour : contours) {
+            contourBuffer.load(contour);
+            contourBuffer.convexHull();
+            if (scale != 1) {
+                contourBuffer.scaleHull(scale);
+            }
+            contourBuffer.storeHull(contour);
+        }
+    }
+
+    /**
+     * Same as {@link #findContours()}, but the contours, hulls and area test
+     * are all done in native code, and only the hulls that are big enough are
+     * copied into Mats.
+     */
+    private void findContoursNative() {
+        if (hullBuffer == null) {
+            hullBuffer = new HullBuffer();
+        }
+        double minArea = VisionParameters.getGoalMinBlobArea();
+        if (scaledSearchRegion == null) {
+            hullBuffer.find(thresholdImage, 0, 0, scale, minArea);
+        } else {
+            Mat region = thresholdImage.submat(scaledSearchRegion);
+            hullBuffer.find(region, scaledSearchRegion.x, scaledSearchRegion.y, scale, minArea);
+            region.release();
+        }
+        hullBuffer.getHulls(contours);
+        smallBlobCount = hullBuffer.getBlobCount() - hullBuffer.getHullCount();
+    }
+
+    /**
+     * Same as {@link #findContours()}, but the blobs are found by a
+     * {@link RunLengthLabeler} and only the ones that are big enough are
+     * turned into hulls.
+     */
+    private void findContoursRunLength() {
+        if (labeler == null) {
+            labeler = new RunLengthLabeler();
+        }
+        int offsetX = 0;
+        int offsetY = 0;
+        if (scaledSearchRegion == null) {
+            labeler.label(thresholdImage);
+        } else {
+            Mat region = thresholdImage.submat(scaledSearchRegion);
+            labeler.label(region);
+            region.release();
+            offsetX = scaledSearchRegion.x;
+            offsetY = scaledSearchRegion.y;
+        }
+
+        double minArea = VisionParameters.getGoalMinBlobArea() / (scale * scale);
+        int rejected = 0;
+        for (int blob = 0; blob < labeler.getBlobCount(); blob++) {
+            if (labeler.getArea(blob) <= minArea) {
+                rejected++;
+                continue;
+            }
+            int count = labeler.findHull(blob);
+            int[] hull = labeler.getHull();
+            for (int i = 0; i < count; i++) {
+                hull[i * 2] = (hull[i * 2] + offsetX) * scale + scale / 2;
+                hull[i * 2 + 1] = (hull[i * 2 + 1] + offsetY) * scale + scale / 2;
+            }
+            MatOfPoint contour = new MatOfPoint();
+            contour.create(count, 1, CvType.CV_32SC2);
+            // put() stops at the end of the Mat, so the rest of the array is
+            // ignored
+            contour.put(0, 0, hull);
+            contours.add(contour);
+        }
+        smallBlobCount = rejected;
+    }
+
+    /**
+     * Converts the contours to {@link Target}s and finds the best one, which
+     * is put last. If there are a lot of contours, they are split between
+     * threads.
+     */
+    public void findTargets() {
+        TargetEvaluator evaluator = TargetEvaluator.get();
+        evaluator.updateParameters();
+        evaluator.countAreaRejections(smallBlobCount);
+        findTargets(evaluator, (long) (VisionParameters.getGoalFrameBudget() * 1e6),
+                VisionParameters.getGoalParallelEvaluationThreshold());
+    }
+
+    /**
+     * Same as {@link #findTargets()}, but with the evaluator and limits passed
+     * in instead of read from NetworkTables, so that it can be tested.
+     *
+     * @param evaluator the evaluator, with its parameters already set
+     * @param budget the time since the frame started after which no more
+     *        candidates are evaluated, in nanoseconds, or 0 for no limit
+     * @param parallelThreshold the number of contours at which they are split
+     *        between threads, if there is no budget
+     */
+    void findTargets(TargetEvaluator evaluator, long budget, int parallelThreshold) {
+        int contourCount = contours.size();
+        Target[] results = new Target[contourCount];
+        truncated = false;
+        if (budget > 0) {
+            evaluateWithBudget(evaluator, results, budget);
+        } else if (contourCount >= parallelThreshold) {
+            EVALUATION_POOL.invoke(new EvaluateTask(evaluator, contours, grayImage, results, 0, contourCount));
+        } else {
+            for (int i = 0; i < contourCount; i++) {
+                results[i] = evaluator.evaluate(contours.get(i), grayImage);
+            }
+        }
+
+        // Remove the rejected candidates
+        int targetCount = 0;
+        for (Target target : results) {
+            if (target != null) {
+                results[targetCount++] = target;
+            }
+        }
+
+        // Only the best target needs to be in order
+        Utils.selectTop(results, targetCount, 1);
+        targets = Arrays.asList(Arrays.copyOf(results, targetCount));
+    }
+
+    /**
+     * Evaluates the contours from largest to smallest, stopping when the time
+     * since the frame started is more than the budget. The largest contour is
+     * always evaluated, so there is something to publish.
+     */
+    private void evaluateWithBudget(TargetEvaluator evaluator, Target[] results, long budget) {
+        int contourCount = contours.size();
+        if (candidateOrder.length < contourCount) {
+            candidateOrder = new long[contourCount * 2];
+        }
+        // Areas are positive, so the bits of a float sort in the same order
+        // as its value. The index goes in the low half.
+        for (int i = 0; i < contourCount; i++) {
+            float area = (float) Imgproc.contourArea(contours.get(i));
+            candidateOrder[i] = ((long) Float.floatToIntBits(area) << 32) | i;
+        }
+        Arrays.sort(candidateOrder, 0, contourCount);
+
+        for (int i = contourCount - 1; i >= 0; i--) {
+            if (i < contourCount - 1 && Clock.nanoTime() - startTime > budget) {
+                truncated = true;
+                break;
+            }
+            int index = (int) candidateOrder[i];
+            results[index] = evaluator.evaluate(contours.get(index), grayImage);
+        }
+    }
+
+    /**
+     * Evaluates a range of contours, splitting it in half until it is small
+     * enough. Each thread uses its own {@link TargetEvaluator}, with the
+     * parameters copied from the one that started the task.
+     */
+    private static class EvaluateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Number of contours to evaluate without splitting.
+         */
+        private static final int LEAF_SIZE = 4;
+
+        private final TargetEvaluator parameters;
+        private final List<MatOfPoint> contours;
+        private final Mat grayImage;
+        private final Target[] results;
+        private final int start;
+        private final int end;
+
+        public EvaluateTask(TargetEvaluator parameters, List<MatOfPoint> contours, Mat grayImage, Target[] results,
+                int start, int end) {
+            this.parameters = parameters;
+            this.contours = contours;
+            this.grayImage = grayImage;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= LEAF_SIZE) {
+                TargetEvaluator evaluator = TargetEvaluator.get();
+                evaluator.copyParameters(parameters);
+                for (int i = start; i < end; i++) {
+                    results[i] = evaluator.evaluate(contours.get(i), grayImage);
+                }
+            } else {
+                int middle = (start + end) / 2;
+                invokeAll(new EvaluateTask(parameters, contours, grayImage, results, start, middle),
+                        new EvaluateTask(parameters, contours, grayImage, results, middle, end));
+            }
+        }
+    }
+
+    /**
+     * Runs every step of the algorithm on an image.
+     *
+     * @param image the camera image
+     */
+    public void process(Mat image) {
+        process(image, null);
+    }
+
+    /**
+     * Runs every step of the algorithm on part of an image.
+     *
+     * @param image the camera image
+     * @param region the region to search, or null to search the whole image
+     */
+    public void process(Mat image, Rect region) {
+        threshold(image, region);
+        findContours();
+        findTargets();
+    }
+
+    /**
+     * Gets the highest scoring target, if it is valid.
+     *
+     * @return the best target or null if there is no valid target
+     */
+    public Target getBestTarget() {
+        if (!targets.isEmpty()) {
+            Target target = targets.get(targets.size() - 1);
+            if (target.isValid()) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets all the targets that passed the prefilters. The one with the
+     * highest score is last, the rest are in no particular order.
+     *
+     * @return the targets
+     */
+    public List<Target> getTargets() {
+        return targets;
+    }
+
+    /**
+     * Gets the hulls that {@link #findTargets()} evaluates. They are modified
+     * when they are evaluated.
+     *
+     * @return the list of hulls
+     */
+    List<MatOfPoint> getContours() {
+        return contours;
+    }
+
+    public Rect getSearchRegion() {
+        return searchRegion;
+    }
+
+    /**
+     * Gets the pyramid level the image was thresholded at.
+     *
+     * @return the pyramid level, or 0 if the threshold image is full size
+     */
+    public int getPyramidLevel() {
+        return pyramidLevel;
+    }
+
+    /**
+     * Gets the engine that actually thresholded the image. This is only
+     * different from {@link VisionParameters#getGoalThresholdEngine()} if the
+     * lookup table couldn't be used.
+     *
+     * @return the threshold engine
+     */
+    public ThresholdEngine getThresholdEngine() {
+        return thresholdEngine;
+    }
+
+    /**
+     * Gets whether some of the candidates were not evaluated because the frame
+     * took longer than its time budget.
+     *
+     * @return true if the frame was truncated
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Gets the time the image was grabbed from the camera, which is used to
+     * look up the heading of the robot.
+     *
+     * @return the {@link Clock} time in nanoseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Sets the time the image that is about to be processed was grabbed from
+     * the camera.
+     *
+     * @param timestamp the {@link Clock} time in nanoseconds
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Gets the threshold image. If a pyramid level is set, this is smaller
+     * than the camera image.
+     *
+     * @return the threshold image
+     */
+    public Mat getThresholdImage() {
+        return thresholdImage;
+    }
+
+    public Mat getGrayImage() {
+        return grayImage;
+    }
+}
@@ -0,0 +1,159 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+/**
+ * Tracks how far the robot has to turn to face the goal between camera frames.
+ * The goal doesn't move, so once a frame gives its absolute heading, every new
+ * gyro sample gives the angle remaining without waiting for the next frame.
+ * The yaw rate, found from the last few samples, is used to extrapolate the
+ * angle remaining to a time in the near future, for example to make up for
+ * the delay before the robot acts on it.
+ * <p>
+ * The goal is set by the processing thread and the samples come from the gyro
+ * thread, so all the methods are synchronized. Neither thread holds the lock
+ * for more than a few arithmetic operations.
+ *
+ * @author Ben Wolsieffer
+ */
+public class GoalHeadingEstimator {
+
+    /**
+     * The furthest into the future that the angle remaining is extrapolated,
+     * in seconds. Later times are clamped to this, because the yaw rate isn't
+     * constant for long.
+     */
+    public static final double MAX_EXTRAPOLATION = 0.1;
+
+    /**
+     * How much of the rate between each pair of samples is blended into the
+     * yaw rate. The rate from a single pair is noisy, because the yaw is only
+     * reported in hundredths of a degree.
+     */
+    public static final double RATE_FILTER = 0.5;
+
+    /**
+     * Samples further apart than this in seconds reset the yaw rate, because
+     * the gyro might have stopped.
+     */
+    public static final double MAX_SAMPLE_GAP = 0.1;
+
+    private final double goalTimeout;
+
+    private boolean hasGoal = false;
+    private double goalHeading;
+    private double goalTime;
+
+    private boolean hasSample = false;
+    private double sampleTime;
+    private double yaw;
+    private double yawRate;
+
+    /**
+     * Creates an estimator.
+     *
+     * @param goalTimeout the time in seconds after the goal was seen that it
+     *        is forgotten
+     */
+    public GoalHeadingEstimator(double goalTimeout) {
+        this.goalTimeout = goalTimeout;
+    }
+
+    /**
+     * Sets the absolute heading of the goal from a processed frame.
+     *
+     * @param heading the heading of the goal in radians, in the same frame as
+     *        the gyro yaw
+     * @param time the time in seconds that the frame was taken
+     */
+    public synchronized void setGoal(double heading, double time) {
+        goalHeading = heading;
+        goalTime = time;
+        hasGoal = true;
+    }
+
+    /**
+     * Records a new gyro sample. Samples that aren't newer than the newest one
+     * are ignored.
+     *
+     * @param time the time in seconds the sample was taken
+     * @param yaw the yaw of the robot in radians
+     */
+    public synchronized void newSample(double time, double yaw) {
+        if (hasSample) {
+            double dt = time - sampleTime;
+            if (dt <= 0) {
+                return;
+            }
+            if (dt > MAX_SAMPLE_GAP) {
+                yawRate = 0;
+            } else {
+                yawRate += RATE_FILTER * (wrap(yaw - this.yaw) / dt - yawRate);
+            }
+        }
+        this.sampleTime = time;
+        this.yaw = yaw;
+        hasSample = true;
+    }
+
+    /**
+     * Gets whether there is a recent enough goal and a gyro sample to
+     * estimate the angle remaining.
+     *
+     * @return true if {@link #getAngleRemaining()} is valid
+     */
+    public synchronized boolean isValid() {
+        return hasGoal && hasSample && sampleTime - goalTime <= goalTimeout;
+    }
+
+    /**
+     * Gets the angle the robot has to turn to face the goal as of the newest
+     * gyro sample.
+     *
+     * @return the angle in radians between -pi and pi, positive in the
+     *         direction the yaw increases, or NaN if it is not
+     *         {@link #isValid() valid}
+     */
+    public synchronized double getAngleRemaining() {
+        return isValid() ? wrap(goalHeading - yaw) : Double.NaN;
+    }
+
+    /**
+     * Extrapolates the angle the robot has to turn to face the goal at a
+     * future time, assuming it keeps turning at the same rate. The time is
+     * clamped to between the newest sample and {@link #MAX_EXTRAPOLATION}
+     * after it.
+     *
+     * @param time the time in seconds
+     * @return the angle in radians between -pi and pi, or NaN if it is not
+     *         {@link #isValid() valid}
+     */
+    public synchronized double getAngleRemaining(double time) {
+        if (!isValid()) {
+            return Double.NaN;
+        }
+        double dt = Math.max(0, Math.min(time - sampleTime, MAX_EXTRAPOLATION));
+        return wrap(goalHeading - (yaw + yawRate * dt));
+    }
+
+    /**
+     * Gets the yaw rate used for extrapolation.
+     *
+     * @return the yaw rate in radians per second
+     */
+    public synchronized double getYawRate() {
+        return yawRate;
+    }
+
+    /**
+     * Wraps an angle to between -pi and pi, so the robot always turns the
+     * short way.
+     */
+    private static double wrap(double angle) {
+        return Math.IEEEremainder(angle, 2 * Math.PI);
+    }
+}
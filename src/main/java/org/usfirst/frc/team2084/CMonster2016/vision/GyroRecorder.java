@@ -0,0 +1,74 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.usfirst.frc.team2084.CMonster2016.vision.HighGoalProcessor.*;
+
+/**
+ * Writes gyro samples into a {@link TimeSeriesBuffer}, using the channels in
+ * {@link HighGoalProcessor}. The navX only reports how much the yaw changed
+ * since its last update, not a rate, so the yaw rate is found from each pair
+ * of consecutive yaw samples and the time between them.
+ * <p>
+ * This should only be used by the gyro thread.
+ *
+ * @author Ben Wolsieffer
+ */
+public class GyroRecorder {
+
+    /**
+     * Samples further apart than this in seconds have a yaw rate of 0,
+     * because the gyro might have stopped.
+     */
+    public static final double MAX_SAMPLE_GAP = GoalHeadingEstimator.MAX_SAMPLE_GAP;
+
+    private final TimeSeriesBuffer buffer;
+    private final double[] sample = new double[GYRO_CHANNELS];
+
+    private boolean hasSample = false;
+    private double lastTime;
+
+    /**
+     * Creates a recorder.
+     *
+     * @param buffer the buffer to write to, which must have
+     *        {@link HighGoalProcessor#GYRO_CHANNELS} channels
+     */
+    public GyroRecorder(TimeSeriesBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Records a gyro sample. Samples that aren't newer than the last one are
+     * ignored.
+     *
+     * @param time the time in seconds that the sample was taken
+     * @param yaw the yaw in radians
+     * @param pitch the pitch in radians
+     * @param roll the roll in radians
+     */
+    public void record(double time, double yaw, double pitch, double roll) {
+        double yawRate = 0;
+        if (hasSample) {
+            double dt = time - lastTime;
+            if (dt <= 0) {
+                return;
+            }
+            if (dt <= MAX_SAMPLE_GAP) {
+                // Crossing from -pi to pi is a small turn
+                yawRate = Math.IEEEremainder(yaw - sample[YAW_CHANNEL], 2 * Math.PI) / dt;
+            }
+        }
+        sample[YAW_CHANNEL] = yaw;
+        sample[PITCH_CHANNEL] = pitch;
+        sample[ROLL_CHANNEL] = roll;
+        sample[YAW_RATE_CHANNEL] = yawRate;
+        buffer.newSample(time, sample);
+        lastTime = time;
+        hasSample = true;
+    }
+}
@@ -6,24 +6,24 @@
  */
 package org.usfirst.frc.team2084.CMonster2016.vision;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.opencv.core.Core;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfInt;
-import org.opencv.core.MatOfPoint;
+import org.opencv.core.Rect;
 import org.opencv.core.Size;
 import org.opencv.imgcodecs.Imgcodecs;
-import org.opencv.imgproc.Imgproc;
+import org.usfirst.frc.team2084.CMonster2016.vision.Pipeline.DropPolicy;
 import org.usfirst.frc.team2084.CMonster2016.vision.capture.CameraCapture;
 
 import com.kauailabs.navx.desktop.AHRS;
 import com.kauailabs.navx.desktop.AHRS.SerialDataType;
-import com.kauailabs.navx.desktop.Timer;
 
 /**
  * Algorithm that finds the high goal on the FIRST Stronghold tower and
@@ -37,25 +37,145 @@ public class HighGoalProcessor extends ThreadedVisionProcessor {
     public static final Size IMAGE_SIZE = new Size(640, 480);
 
     /**
-     * Estimated latency of the camera in seconds. This was empirically
-     * estimated.
+     * Estimated time in seconds between when an image is exposed and when it
+     * is grabbed from the camera. This was empirically estimated from when
+     * processing started, so it also includes a little bit of queueing. It is
+     * used until the {@link LatencyEstimator} has measured the latency, or
+     * always if latency estimation is disabled.
      */
     public static final double ESTIMATED_CAMERA_LATENCY = 0.1279;
 
-    private volatile boolean newImage;
-    private final Mat image = new Mat();
-    private final Mat grayImage = new Mat();
+    /**
+     * Frame used when the algorithm is not pipelined.
+     */
+    private final GoalFrame goalFrame = new GoalFrame();
+
+    /**
+     * Frames that are waiting to be reused by the pipeline.
+     */
+    private final ConcurrentLinkedQueue<GoalFrame> freeFrames = new ConcurrentLinkedQueue<>();
+    private volatile Pipeline<GoalFrame> pipeline;
+
+    /**
+     * A worker that processes one frame at a time when parallel processing is
+     * enabled. Each worker has its own images, so any number of them can run
+     * at the same time.
+     */
+    private class ParallelWorker implements Runnable {
+
+        private final GoalFrame frame = new GoalFrame();
+        private Frame cameraFrame = createFrame();
+        private Rect searchRegion;
+        private long sequence;
+
+        @Override
+        public void run() {
+            try {
+                frame.setTimestamp(cameraFrame.getTimestamp());
+                frame.process(cameraFrame.getImage(), searchRegion);
+                commit(sequence, frame);
+            } catch (RuntimeException ex) {
+                System.err.println("Error processing frame " + sequence + ": " + ex);
+                ex.printStackTrace();
+            } finally {
+                idleWorkers.offer(this);
+            }
+        }
+    }
+
+    /**
+     * Workers that are waiting for a frame, if parallel processing is enabled.
+     */
+    private volatile BlockingQueue<ParallelWorker> idleWorkers;
+    private ExecutorService workerPool;
+
+    /**
+     * Sequence number of the last frame given to a worker. Only used by the
+     * background thread.
+     */
+    private long frameSequence = 0;
+
+    /**
+     * Sequence number of the newest frame whose results have been published.
+     */
+    private long committedSequence = 0;
+    private final AtomicLong staleFrameCount = new AtomicLong();
+    private final AtomicLong truncatedFrameCount = new AtomicLong();
+
+    /**
+     * Whether the last published frame was thresholded by the native code even
+     * though the lookup table was selected. Only used by
+     * {@link #publish(GoalFrame)}.
+     */
+    private boolean lookupTableBypassed = false;
+
+    private volatile ExecutionMode executionMode = ExecutionMode.SERIAL;
+
     private volatile Target target;
     private volatile List<Target> allTargets;
+    /**
+     * Mode of the last published frame, which is given to the frames that the
+     * results are drawn on.
+     */
+    private volatile ProcessingMode mode = ProcessingMode.DEFAULT;
     private volatile double processingFps;
 
     public static final int GYRO_UPDATE_RATE = 100;
     private final AHRS gyro = new AHRS("/dev/navx", SerialDataType.kProcessedData, (byte) GYRO_UPDATE_RATE);
 
     /**
-     * Buffer used for compensating for camera lag as the robot turns.
+     * Channels of {@link #gyroBuffer}, written by a {@link GyroRecorder}. The
+     * angles are in radians and the rate is in radians per second.
+     */
+    public static final int YAW_CHANNEL = 0, PITCH_CHANNEL = 1, ROLL_CHANNEL = 2, YAW_RATE_CHANNEL = 3;
+    public static final int GYRO_CHANNELS = 4;
+
+    /**
+     * Number of seconds of gyro samples to keep. This covers the oldest frame
+     * that the {@link LatencyEstimator} compares and the largest latency it
+     * tries, with a second to spare for the time before it runs.
+     */
+    public static final int GYRO_HISTORY =
+            (int) Math.ceil(LatencyEstimator.MAX_WINDOW_AGE + LatencyEstimator.MAX_LATENCY) + 1;
+
+    /**
+     * Buffer used for compensating for camera lag as the robot turns. It is
+     * written by the gyro thread and read by the processing and streaming
+     * threads without locking.
+     */
+    private final TimeSeriesBuffer gyroBuffer =
+            new TimeSeriesBuffer(GYRO_UPDATE_RATE * GYRO_HISTORY, GYRO_CHANNELS);
+
+    /**
+     * Number of frames with a target between latency measurements.
+     */
+    private static final int LATENCY_UPDATE_INTERVAL = 15;
+
+    /**
+     * Measures the camera latency by comparing how the target moves in the
+     * image with how the robot turns.
+     */
+    private final LatencyEstimator latencyEstimator = new LatencyEstimator(
+            (time) -> gyroBuffer.getValue(time, YAW_CHANNEL), ESTIMATED_CAMERA_LATENCY, LATENCY_UPDATE_INTERVAL);
+
+    /**
+     * Combines the goal heading from each frame with every gyro sample, so the
+     * angle remaining to the goal is published at the gyro rate.
      */
-    private final HistoryBuffer headingBuffer = new HistoryBuffer(GYRO_UPDATE_RATE / 2, GYRO_UPDATE_RATE);
+    private final GoalHeadingEstimator goalHeadingEstimator =
+            new GoalHeadingEstimator(VisionResults.STALE_TIMEOUT / 1000.0);
+
+    /**
+     * Writes to {@link #gyroBuffer}, only used by the gyro thread.
+     */
+    private final GyroRecorder gyroRecorder = new GyroRecorder(gyroBuffer);
+
+    /**
+     * Keeps track of where the goal was last seen, so only that part of the
+     * image needs to be searched.
+     */
+    private final RegionTracker regionTracker =
+            new RegionTracker((int) IMAGE_SIZE.width, (int) IMAGE_SIZE.height, Target.CAMERA_MATRIX[0][0]);
 
     private final CameraCapture camera;
 
@@ -71,15 +191,38 @@ public class HighGoalProcessor extends ThreadedVisionProcessor {
         }
         this.camera = capture;
         gyro.setUpdateListener((timestamp) -> {
-            synchronized (headingBuffer) {
-                long currTime = System.currentTimeMillis();
-                double yaw = Math.toRadians(gyro.getYaw());
-                // System.out.println("yaw: " + yaw + ", dt: " + (currTime -
-                // lastGyroTime));
-                lastGyroTime = currTime;
-                headingBuffer.newValue(Timer.getFPGATimestamp(), yaw);
+            long currTime = System.currentTimeMillis();
+            double yaw = Math.toRadians(gyro.getYaw());
+            // System.out.println("yaw: " + yaw + ", dt: " + (currTime -
+            // lastGyroTime));
+            lastGyroTime = currTime;
+            // The timestamp is the time the sample was received
+            double time = Clock.toSeconds(timestamp);
+            gyroRecorder.record(time, yaw, Math.toRadians(gyro.getPitch()), Math.toRadians(gyro.getRoll()));
+
+            goalHeadingEstimator.newSample(time, yaw);
+            if (goalHeadingEstimator.isValid()) {
+                VisionResults.setGoalAngleRemaining(goalHeadingEstimator.getAngleRemaining());
+                VisionResults.setGoalAnglePredicted(
+                        goalHeadingEstimator.getAngleRemaining(time + VisionParameters.getGoalLookahead()));
             }
         });
+
+        switch (VisionParameters.getGoalExecutionMode()) {
+        case PIPELINE:
+            enablePipeline(VisionParameters.getGoalPipelineQueueDepth(), VisionParameters.getGoalPipelineDropPolicy());
+        break;
+        case PARALLEL:
+            if (isRunningInBackground()) {
+                enableParallel(VisionParameters.getGoalParallelWorkers());
+            } else {
+                System.err.println("Parallel processing requires a background thread, processing frames serially.");
+            }
+        break;
+        case SERIAL:
+        default:
+        break;
+        }
     }
 
     /**
@@ -96,8 +239,158 @@ public class HighGoalProcessor extends ThreadedVisionProcessor {
      * @param sMax the maximum saturation
      * @param vMax the maximum value
      */
-    private static native void processNative(long inputImageAddr, long outputImageAddr, long grayImageAddr,
-            int blurSize, double hMin, double sMin, double vMin, double hMax, double sMax, double vMax);
+    static native void processNative(long inputImageAddr, long outputImageAddr, long grayImageAddr, int blurSize,
+            double hMin, double sMin, double vMin, double hMax, double sMax, double vMax);
+
+    /**
+     * Same as
+     * {@link #processNative(long, long, long, int, double, double, double, double, double, double)}
+     * , but only for the rows in [rowStart, rowEnd). The output images must
+     * already be allocated, and they are written in place, so different
+     * stripes can be processed at the same time. This always runs on the CPU.
+     * 
+     * @param inputImageAddr the address of the image to process
+     * @param outputImageAddr the address of the image to write to
+     * @param grayImageAddr the address of the grayscale image to write to
+     * @param blurSize the size of the gaussian blur kernel
+     * @param rowStart the first row of the stripe
+     * @param rowEnd the row after the last row of the stripe
+     * @param hMin the minimum hue
+     * @param sMin the minimum saturation
+     * @param vMin the minimum value
+     * @param hMax the maximum hue
+     * @param sMax the maximum saturation
+     * @param vMax the maximum value
+     */
+    static native void processStripeNative(long inputImageAddr, long outputImageAddr, long grayImageAddr,
+            int blurSize, int rowStart, int rowEnd, double hMin, double sMin, double vMin, double hMax, double sMax,
+            double vMax);
+
+    /**
+     * Finds the blobs in a threshold image, takes their convex hulls and
+     * throws away the ones that are too small, all in native code. The
+     * surviving hulls are packed into a direct buffer, in the format that
+     * {@link HullBuffer} reads. If the buffer is too small, nothing is written
+     * to it.
+     * 
+     * @param thresholdImageAddr the address of the threshold image, which is
+     *        not modified
+     * @param offsetX the amount to add to the x coordinate of each point, in
+     *        threshold image pixels
+     * @param offsetY the amount to add to the y coordinate of each point, in
+     *        threshold image pixels
+     * @param scale the number of full size pixels per threshold image pixel
+     * @param minArea the minimum area of a hull, in full size pixels
+     * @param buffer the direct buffer to write to, in native byte order
+     * @return the number of ints needed to hold the results
+     */
+    static native int findHullsNative(long thresholdImageAddr, int offsetX, int offsetY, int scale,
+            double minArea, ByteBuffer buffer);
+
+    /**
+     * Gets whether the native code found a CUDA device to use.
+     * 
+     * @return true if thresholding runs on the GPU
+     */
+    static native boolean isGpuEnabled();
+
+    /**
+     * Enables pipelined processing. Instead of running the whole algorithm for
+     * a frame before starting the next one, thresholding, contour finding,
+     * target detection and publishing each run on their own thread. This lets
+     * a new frame be thresholded while the previous one is still being
+     * analyzed. Each stage after thresholding gets a queue with the specified
+     * depth and drop policy. This is called when the processor is created if
+     * {@link VisionParameters#getGoalExecutionMode()} is
+     * {@link ExecutionMode#PIPELINE}.
+     * 
+     * @param queueDepth the number of frames that can wait for each stage
+     * @param dropPolicy what to do with frames that arrive at a full stage
+     * @throws IllegalStateException if parallel processing is enabled
+     */
+    public synchronized void enablePipeline(int queueDepth, DropPolicy dropPolicy) {
+        if (idleWorkers != null) {
+            throw new IllegalStateException("Pipelined processing cannot be combined with parallel processing.");
+        }
+        if (pipeline == null) {
+            Pipeline<GoalFrame> newPipeline = new Pipeline<>(freeFrames::offer);
+            newPipeline.addStage("Contours", queueDepth, dropPolicy, GoalFrame::findContours)
+                    .addStage("Targets", queueDepth, dropPolicy, GoalFrame::findTargets)
+                    .addStage("Publish", queueDepth, dropPolicy, this::publish);
+            newPipeline.start();
+            pipeline = newPipeline;
+            executionMode = ExecutionMode.PIPELINE;
+        }
+    }
+
+    /**
+     * Enables parallel processing. Each frame is given to one of a number of
+     * workers, so several consecutive frames can be processed at the same
+     * time. This lets the processing rate match the camera when a single frame
+     * takes longer than the time between frames. Results are published in the
+     * order the frames were captured, and a result is discarded if a newer
+     * frame has already been published. This cannot be combined with
+     * {@link #enablePipeline(int, DropPolicy)}. It is called when the
+     * processor is created if {@link VisionParameters#getGoalExecutionMode()}
+     * is {@link ExecutionMode#PARALLEL}.
+     * <p>
+     * Debug images are only sent for frames that are published, and the debug
+     * handlers are called from the worker threads, one at a time.
+     * 
+     * @param workers the number of frames to process at the same time
+     * @throws IllegalStateException if there is no background thread or
+     *         pipelined processing is enabled
+     */
+    public synchronized void enableParallel(int workers) {
+        if (!isRunningInBackground()) {
+            throw new IllegalStateException("Parallel processing requires a background thread.");
+        }
+        if (pipeline != null) {
+            throw new IllegalStateException("Parallel processing cannot be combined with pipelined processing.");
+        }
+        if (idleWorkers == null) {
+            BlockingQueue<ParallelWorker> workerQueue = new ArrayBlockingQueue<>(workers);
+            for (int i = 0; i < workers; i++) {
+                workerQueue.add(new ParallelWorker());
+            }
+            workerPool = Executors.newFixedThreadPool(workers, (runnable) -> {
+                Thread thread = new Thread(runnable, "High Goal Worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            idleWorkers = workerQueue;
+            executionMode = ExecutionMode.PARALLEL;
+        }
+    }
+
+    /**
+     * Gets the number of frames that ran out of time before all of their
+     * candidates were evaluated.
+     * 
+     * @return the number of truncated frames
+     */
+    public long getTruncatedFrameCount() {
+        return truncatedFrameCount.get();
+    }
+
+    /**
+     * Gets the number of frames whose results were discarded because a newer
+     * frame finished first.
+     * 
+     * @return the number of stale frames
+     */
+    public long getStaleFrameCount() {
+        return staleFrameCount.get();
+    }
+
+    /**
+     * Gets the pipeline, if pipelined processing is enabled.
+     * 
+     * @return the pipeline or null
+     */
+    public Pipeline<GoalFrame> getPipeline() {
+        return pipeline;
+    }
 
     /**
      * Do the actual processing of the image. This runs in a background thread
@@ -105,82 +398,184 @@ public class HighGoalProcessor extends ThreadedVisionProcessor {
      * been optimized to the point where it can match the capture frame rate ,so
      * this is not as necessary anymore.
      * 
-     * @param image the image to process
-     * @param imageHeading the robot's heading when the image was taken
+     * @param cameraFrame the frame to process
      */
     @Override
-    public void backgroundProcess(Mat image) {
-
-        // Pass the raw threshold values and addresses to the native code
-        double[] minThreshold = VisionParameters.getGoalMinThreshold().val;
-        double[] maxThreshold = VisionParameters.getGoalMaxThreshold().val;
-        processNative(image.nativeObj, thresholdImage.nativeObj, grayImage.nativeObj,
-                VisionParameters.getGoalBlurSize(), minThreshold[0], minThreshold[1], minThreshold[2], maxThreshold[0],
-                maxThreshold[1], maxThreshold[2]);
-
-        // Convert the image to HSV, threshold it and find contours
-        List<MatOfPoint> contours = findContours(
-                thresholdImage/* threshold(blur(convertToHsv(image))) */);
-
-        // Convert the contours to Targets
-        List<Target> possibleTargets = contours.stream().map((contour) -> {
-            contour = convexHull(contour);
-            return new Target(contour, grayImage);
-        }).filter((t) -> t.isAreaValid()).collect(Collectors.toList());
-
-        // Sort the targets to find the highest scoring one
-        Collections.sort(possibleTargets);
-
-        if (!possibleTargets.isEmpty()) {
-            double heading = getHeading(image);
-
-            target = possibleTargets.get(possibleTargets.size() - 1);
-            if (target.isValid()) {
-                VisionResults.setGoalHeading(heading + target.getGoalXAngle());
-                VisionResults.setGoalAngle(target.getGoalYAngle());
-                VisionResults.setGoalDistance(target.getDistance());
-                VisionResults.update();
-            } else {
-                target = null;
+    public void backgroundProcess(Frame cameraFrame) {
+        BlockingQueue<ParallelWorker> localIdleWorkers = idleWorkers;
+        Pipeline<GoalFrame> localPipeline = pipeline;
+        if (localIdleWorkers != null) {
+            // Wait for a worker to be free. New images that arrive in the
+            // meantime replace each other in the mailbox.
+            ParallelWorker worker;
+            try {
+                worker = localIdleWorkers.take();
+            } catch (InterruptedException e) {
+                return;
             }
+            // Swap frames with the worker instead of copying
+            worker.cameraFrame = keepFrame(worker.cameraFrame);
+            worker.searchRegion = getSearchRegion(worker.cameraFrame);
+            worker.sequence = ++frameSequence;
+            workerPool.execute(worker);
+        } else if (localPipeline != null) {
+            // Only thresholding happens on this thread, the rest is done by
+            // the pipeline.
+            GoalFrame frame = freeFrames.poll();
+            if (frame == null) {
+                frame = new GoalFrame();
+            }
+            frame.setTimestamp(cameraFrame.getTimestamp());
+            frame.threshold(cameraFrame.getImage(), getSearchRegion(cameraFrame));
+            debugImage("Threshold", frame.getThresholdImage());
+            debugImage("Grayscale", frame.getGrayImage());
+            localPipeline.submit(frame);
+        } else {
+            goalFrame.setTimestamp(cameraFrame.getTimestamp());
+            goalFrame.process(cameraFrame.getImage(), getSearchRegion(cameraFrame));
+            debugImage("Threshold", goalFrame.getThresholdImage());
+            debugImage("Grayscale", goalFrame.getGrayImage());
+            publish(goalFrame);
+        }
+    }
+
+    /**
+     * Publishes the results and debug images of a parallel worker, unless a
+     * newer frame has already been published. The worker isn't reused until
+     * this returns, so its images can be passed to the debug handlers
+     * directly.
+     * 
+     * @param sequence the sequence number of the frame
+     * @param frame the processed frame
+     */
+    private synchronized void commit(long sequence, GoalFrame frame) {
+        if (sequence > committedSequence) {
+            committedSequence = sequence;
+            debugImage("Threshold", frame.getThresholdImage());
+            debugImage("Grayscale", frame.getGrayImage());
+            publish(frame);
         } else {
-            target = null;
+            staleFrameCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Publishes the results of a frame to NetworkTables and makes them
+     * available for drawing.
+     * 
+     * @param frame the processed frame
+     */
+    private void publish(GoalFrame frame) {
+        Target bestTarget = frame.getBestTarget();
+        long imageTime = getImageTime(frame.getTimestamp());
+        double heading = getHeading(imageTime);
+        if (frame.isTruncated()) {
+            truncatedFrameCount.incrementAndGet();
+        }
+        // Published even without a goal, because running out of time might
+        // be why there isn't one
+        VisionResults.setGoalTruncated(frame.isTruncated());
+        logLookupTableBypass(frame.getThresholdEngine());
+        VisionResults.setGoalThresholdEngine(frame.getThresholdEngine());
+        if (bestTarget != null) {
+            double goalHeading = heading + bestTarget.getGoalXAngle();
+            VisionResults.setGoalHeading(goalHeading);
+            goalHeadingEstimator.setGoal(goalHeading, Clock.toSeconds(imageTime));
+            VisionResults.setGoalAngle(bestTarget.getGoalYAngle());
+            VisionResults.setGoalDistance(bestTarget.getDistance());
+            if (VisionParameters.getLatencyEstimation()) {
+                latencyEstimator.addObservation(Clock.toSeconds(frame.getTimestamp()), bestTarget.getGoalXAngle());
+            }
+            VisionResults.setCameraLatency(getCameraLatency());
+            VisionResults.setCameraLatencyConfidence(latencyEstimator.getConfidence());
+            VisionResults.update();
         }
 
-        allTargets = possibleTargets;
+        regionTracker.update(frame.getSearchRegion(),
+                bestTarget != null ? bestTarget.getBoundingRect() : null, heading);
 
-        // debugImage("HSV", hsvImage);
-        debugImage("Threshold", thresholdImage);
-        debugImage("Grayscale", grayImage);
-        // debugImage("Blur", blurImage);
+        target = bestTarget;
+        allTargets = frame.getTargets();
+        mode = ProcessingMode.get(executionMode, frame.getSearchRegion() == null ? SearchMode.FULL : SearchMode.REGION,
+                frame.getPyramidLevel());
 
         processingFps = processingFpsCounter.update();
     }
 
     /**
-     * Gets of the robot when the given image was taken. It does this by reading
-     * the timestamp from the top left corner of the image and looking up the
-     * heading in the history buffer.
+     * Logs when the lookup table starts or stops being bypassed, so that it
+     * isn't silently replaced by the native code.
      * 
-     * @param image the image to get the timestamp from
-     * @return the heading of the robot when the image was taken
-     */
-    private double getHeading(Mat image) {
-        double heading;
-        {
-            byte[] timestampBytes = new byte[9];
-            image.get(0, 0, timestampBytes);
-            long timestamp = Utils.bytesToLong(timestampBytes);
-
-            synchronized (headingBuffer) {
-                heading = headingBuffer.getValue(timestamp / 1000.0);
+     * @param usedEngine the engine that thresholded the frame
+     */
+    private void logLookupTableBypass(ThresholdEngine usedEngine) {
+        boolean bypassed = usedEngine != ThresholdEngine.LOOKUP_TABLE
+                && VisionParameters.getGoalThresholdEngine() == ThresholdEngine.LOOKUP_TABLE;
+        if (bypassed != lookupTableBypassed) {
+            lookupTableBypassed = bypassed;
+            if (bypassed) {
+                int blurSize = VisionParameters.getGoalBlurSize();
+                System.err.println("Lookup table threshold bypassed, using the native code: "
+                        + (blurSize > 0 ? "the blur size is " + blurSize + " instead of 0"
+                                : "the table is still being built"));
+            } else {
+                System.err.println("Lookup table threshold in use");
             }
         }
-        return heading;
+    }
+
+    /**
+     * Gets the part of the image to search, if tracking is enabled.
+     * 
+     * @param cameraFrame the frame that is about to be processed
+     * @return the region to search, or null to search the whole image
+     */
+    private Rect getSearchRegion(Frame cameraFrame) {
+        if (VisionParameters.getGoalTracking()) {
+            regionTracker.setMaxMisses(VisionParameters.getGoalTrackingMaxMisses());
+            regionTracker.setRefreshInterval(VisionParameters.getGoalTrackingRefreshInterval());
+            return regionTracker.getRegion(getHeading(getImageTime(cameraFrame.getTimestamp())));
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Estimates when an image was exposed, which is a little before it was
+     * grabbed.
+     * 
+     * @param grabTime the {@link Clock} time the image was grabbed in
+     *        nanoseconds
+     * @return the {@link Clock} time the image was taken in nanoseconds
+     */
+    private long getImageTime(long grabTime) {
+        return grabTime - Clock.fromSeconds(getCameraLatency());
+    }
+
+    /**
+     * Gets the camera latency that is used to find when images were taken.
+     * This is either measured while running or the hard coded estimate,
+     * depending on {@link VisionParameters#getLatencyEstimation()}.
+     * 
+     * @return the latency in seconds
+     */
+    public double getCameraLatency() {
+        return VisionParameters.getLatencyEstimation() ? latencyEstimator.getLatency() : ESTIMATED_CAMERA_LATENCY;
+    }
+
+    /**
+     * Looks up the heading of the robot at the specified time in the history
+     * buffer.
+     * 
+     * @param timestamp the {@link Clock} time in nanoseconds
+     * @return the heading of the robot at that time
+     */
+    private double getHeading(long timestamp) {
+        return gyroBuffer.getValue(Clock.toSeconds(timestamp), YAW_CHANNEL);
     }
 
     @Override
-    public void preProcess(Mat image) {
+    public void preProcess(Frame cameraFrame) {
         // Update camera exposure
         if (camera != null) {
             camera.setExposure(VisionParameters.getAimingExposure());
@@ -189,24 +584,23 @@ public class HighGoalProcessor extends ThreadedVisionProcessor {
 
         // Save a snapshot if requested
         if (VisionParameters.shouldTakeSnapshot()) {
-            String path = System.getProperty("user.home") + "/vision_snapshots/" + System.currentTimeMillis() + ".png";
-            if (!Imgcodecs.imwrite(path, image)) {
+            String path = System.getProperty("user.home") + "/vision_snapshots/"
+                    + Clock.toWallTime(cameraFrame.getTimestamp()) + ".png";
+            if (!Imgcodecs.imwrite(path, cameraFrame.getImage())) {
                 System.err.println("Could not save snapshot to: " + path);
             }
         }
-
-        // Encode the estimated image timestamp into the top left corner
-        byte[] timestamp = new byte[9];
-        Utils.longToBytes((long) ((Timer.getFPGATimestamp() - ESTIMATED_CAMERA_LATENCY) * 1000), timestamp);
-        image.put(0, 0, timestamp);
     }
 
     @Override
-    public void postProcess(Mat image) {
+    public void postProcess(Frame cameraFrame) {
+        Mat image = cameraFrame.getImage();
+        cameraFrame.setMode(mode);
+
         // Draw other targets
         Target localTarget = target;
         if (localTarget != null) {
-            localTarget.draw(image, true, getHeading(image));
+            localTarget.draw(image, true, getHeading(getImageTime(cameraFrame.getTimestamp())));
         }
 
         List<Target> localAllTargets = allTargets;
@@ -222,52 +616,4 @@ public class HighGoalProcessor extends ThreadedVisionProcessor {
         Utils.drawText(image, "Vision FPS: " + Target.NUMBER_FORMAT.format(processingFps), 20, 50);
         Utils.drawText(image, "Stream FPS: " + Target.NUMBER_FORMAT.format(streamingFpsCounter.update()), 20, 70);
     }
-
-    private final Mat hsvImage = new Mat();
-
-    private Mat convertToHsv(Mat image) {
-        Imgproc.cvtColor(image, hsvImage, Imgproc.COLOR_BGR2HSV);
-        return hsvImage;
-    }
-
-    private final Mat blurImage = new Mat();
-
-    private Mat blur(Mat image) {
-        Imgproc.medianBlur(image, blurImage, 2 * VisionParameters.getGoalBlurSize() + 1);
-
-        return blurImage;
-    }
-
-    private final Mat thresholdImage = new Mat();
-
-    private Mat threshold(Mat image) {
-        Core.inRange(image, VisionParameters.getGoalMinThreshold(), VisionParameters.getGoalMaxThreshold(),
-                thresholdImage);
-        return thresholdImage;
-    }
-
-    private final Mat contoursImage = new Mat();
-
-    private List<MatOfPoint> findContours(Mat image) {
-        Mat hierarchy = new Mat();
-        ArrayList<MatOfPoint> contours = new ArrayList<>();
-        image.copyTo(contoursImage);
-        Imgproc.findContours(contoursImage, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
-        return contours;
-    }
-
-    private MatOfPoint convexHull(MatOfPoint contour) {
-        MatOfInt hullMatrix = new MatOfInt();
-        Imgproc.convexHull(contour, hullMatrix); // perform convex hull, gap
-                                                 // filler
-        MatOfPoint hull = new MatOfPoint();
-        hull.create(hullMatrix.rows(), 1, CvType.CV_32SC2);
-
-        for (int r = 0; r < hullMatrix.rows(); r++) {
-            hull.put(r, 0, contour.get((int) hullMatrix.get(r, 0)[0], 0));
-        }
-
-        return hull;
-    }
-
-}
\ No newline at end of file
+}
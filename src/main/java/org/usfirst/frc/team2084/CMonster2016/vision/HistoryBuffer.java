@@ -6,8 +6,6 @@
  */
 package org.usfirst.frc.team2084.CMonster2016.vision;
 
-import com.kauailabs.navx.desktop.Timer;
-
 /**
  * A buffer that keeps track of values at various times in the past and allows
  * interpolated lookups of values in between them.
@@ -84,7 +82,7 @@ public class HistoryBuffer {
         } else if (time >= getElement(filledLength - 1, 0)) {
             return getElement(filledLength - 1, 1);
         } else {
-            double currTime = Timer.getFPGATimestamp();
+            double currTime = Clock.seconds();
             double deltaTime = currTime - time;
             int r = filledLength - (int) (deltaTime * estimatedFrequency);
             if (r < 0) {
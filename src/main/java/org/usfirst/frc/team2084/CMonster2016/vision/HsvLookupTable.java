@@ -0,0 +1,159 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+/**
+ * Table that says whether each of the 16 million BGR colors falls inside an
+ * HSV range. Looking up a pixel is much cheaper than converting it to HSV and
+ * comparing it, and since the range only changes when someone edits it, the
+ * table only has to be built once. The table is a bitmap with one bit per
+ * color, so it takes 2 MB.
+ * <p>
+ * The HSV conversion matches OpenCV's 8 bit {@code COLOR_BGR2HSV}, so the
+ * result is the same as {@code inRange} on a converted image.
+ *
+ * @author Ben Wolsieffer
+ */
+public class HsvLookupTable {
+
+    private static final int HSV_SHIFT = 12;
+    private static final int GRAY_SHIFT = 14;
+
+    private static final int[] SATURATION_DIVISORS = new int[256];
+    private static final int[] HUE_DIVISORS = new int[256];
+
+    static {
+        for (int i = 1; i < 256; i++) {
+            SATURATION_DIVISORS[i] = (int) Math.round((255 << HSV_SHIFT) / (double) i);
+            HUE_DIVISORS[i] = (int) Math.round((180 << HSV_SHIFT) / (6.0 * i));
+        }
+    }
+
+    private final int hMin, sMin, vMin;
+    private final int hMax, sMax, vMax;
+
+    private final long[] bits = new long[1 << 24 >> 6];
+
+    /**
+     * Builds a table for the specified range. This takes a while, so it should
+     * not be done on the processing thread.
+     *
+     * @param hMin the minimum hue
+     * @param sMin the minimum saturation
+     * @param vMin the minimum value
+     * @param hMax the maximum hue
+     * @param sMax the maximum saturation
+     * @param vMax the maximum value
+     */
+    public HsvLookupTable(int hMin, int sMin, int vMin, int hMax, int sMax, int vMax) {
+        this.hMin = hMin;
+        this.sMin = sMin;
+        this.vMin = vMin;
+        this.hMax = hMax;
+        this.sMax = sMax;
+        this.vMax = vMax;
+
+        for (int b = 0; b < 256; b++) {
+            for (int g = 0; g < 256; g++) {
+                for (int r = 0; r < 256; r++) {
+                    int v = Math.max(b, Math.max(g, r));
+                    // Skip the hue and saturation if the value is already out
+                    if (v < vMin || v > vMax) {
+                        continue;
+                    }
+                    int s = saturation(b, g, r);
+                    if (s < sMin || s > sMax) {
+                        continue;
+                    }
+                    int h = hue(b, g, r);
+                    if (h >= hMin && h <= hMax) {
+                        int index = index(b, g, r);
+                        bits[index >>> 6] |= 1L << index;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int index(int b, int g, int r) {
+        return (b << 16) | (g << 8) | r;
+    }
+
+    /**
+     * Checks whether a color is in the range.
+     *
+     * @param b the blue component (0-255)
+     * @param g the green component (0-255)
+     * @param r the red component (0-255)
+     * @return true if the color is in the range
+     */
+    public boolean contains(int b, int g, int r) {
+        int index = index(b, g, r);
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Checks whether this table was built for the specified range.
+     *
+     * @return true if the range matches
+     */
+    public boolean matches(int hMin, int sMin, int vMin, int hMax, int sMax, int vMax) {
+        return this.hMin == hMin && this.sMin == sMin && this.vMin == vMin && this.hMax == hMax && this.sMax == sMax
+                && this.vMax == vMax;
+    }
+
+    /**
+     * Calculates the hue of a color the same way as OpenCV (0-180).
+     *
+     * @param b the blue component (0-255)
+     * @param g the green component (0-255)
+     * @param r the red component (0-255)
+     * @return the hue
+     */
+    public static int hue(int b, int g, int r) {
+        int v = Math.max(b, Math.max(g, r));
+        int diff = v - Math.min(b, Math.min(g, r));
+
+        int h;
+        if (v == r) {
+            h = g - b;
+        } else if (v == g) {
+            h = b - r + 2 * diff;
+        } else {
+            h = r - g + 4 * diff;
+        }
+        h = (h * HUE_DIVISORS[diff] + (1 << (HSV_SHIFT - 1))) >> HSV_SHIFT;
+        return h < 0 ? h + 180 : h;
+    }
+
+    /**
+     * Calculates the saturation of a color the same way as OpenCV (0-255).
+     *
+     * @param b the blue component (0-255)
+     * @param g the green component (0-255)
+     * @param r the red component (0-255)
+     * @return the saturation
+     */
+    public static int saturation(int b, int g, int r) {
+        int v = Math.max(b, Math.max(g, r));
+        int diff = v - Math.min(b, Math.min(g, r));
+        return (diff * SATURATION_DIVISORS[v] + (1 << (HSV_SHIFT - 1))) >> HSV_SHIFT;
+    }
+
+    /**
+     * Calculates the brightness of a color the same way as OpenCV's
+     * {@code COLOR_BGR2GRAY}.
+     *
+     * @param b the blue component (0-255)
+     * @param g the green component (0-255)
+     * @param r the red component (0-255)
+     * @return the gray value (0-255)
+     */
+    public static int gray(int b, int g, int r) {
+        return (r * 4899 + g * 9617 + b * 1868 + (1 << (GRAY_SHIFT - 1))) >> GRAY_SHIFT;
+    }
+}
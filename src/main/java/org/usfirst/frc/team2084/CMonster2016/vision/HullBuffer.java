@@ -0,0 +1,174 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+
+/**
+ * Finds the convex hulls of the blobs in a threshold image using
+ * {@link HighGoalProcessor#findHullsNative(long, int, int, int, double, ByteBuffer)}
+ * . The native code writes every hull that is big enough into one direct
+ * buffer, so the blobs that are too small never become Java objects at all.
+ * <p>
+ * The buffer is laid out as ints:
+ * <ol>
+ * <li>the number of blobs that were found</li>
+ * <li>the number of hulls that were big enough, {@code n}</li>
+ * <li>{@code n + 1} offsets, which are indexes of ints in the buffer. Hull
+ * {@code i} starts at offset {@code i} and ends before offset
+ * {@code i + 1}.</li>
+ * <li>the points of the hulls, as x, y pairs</li>
+ * </ol>
+ * Each buffer should only be used by one thread.
+ *
+ * @author Ben Wolsieffer
+ */
+public class HullBuffer {
+
+    private static final int BLOB_COUNT_INDEX = 0;
+    private static final int HULL_COUNT_INDEX = 1;
+    private static final int OFFSETS_INDEX = 2;
+
+    private ByteBuffer buffer;
+    private IntBuffer ints;
+    private int[] points = new int[256];
+
+    private int blobCount;
+    private int hullCount;
+
+    public HullBuffer() {
+        allocate(4096);
+    }
+
+    private void allocate(int capacity) {
+        buffer = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder());
+        ints = buffer.asIntBuffer();
+    }
+
+    /**
+     * Finds the hulls in a threshold image. If the buffer isn't big enough, it
+     * is replaced with a bigger one and the search is run again.
+     *
+     * @param thresholdImage the threshold image, which is not modified
+     * @param offsetX the amount to add to the x coordinate of each point, in
+     *        threshold image pixels
+     * @param offsetY the amount to add to the y coordinate of each point, in
+     *        threshold image pixels
+     * @param scale the number of full size pixels per threshold image pixel
+     * @param minArea the minimum area of a hull, in full size pixels
+     * @return the number of hulls that were found
+     */
+    public int find(Mat thresholdImage, int offsetX, int offsetY, int scale, double minArea) {
+        int required = HighGoalProcessor.findHullsNative(thresholdImage.nativeObj, offsetX, offsetY, scale, minArea,
+                buffer);
+        if (required > ints.capacity()) {
+            allocate(required * 2);
+            HighGoalProcessor.findHullsNative(thresholdImage.nativeObj, offsetX, offsetY, scale, minArea, buffer);
+        }
+        return read();
+    }
+
+    /**
+     * Gets the buffer that the native code writes to.
+     *
+     * @return the direct buffer, in native byte order
+     */
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Reads the counts after the buffer has been filled.
+     *
+     * @return the number of hulls
+     */
+    int read() {
+        blobCount = ints.get(BLOB_COUNT_INDEX);
+        hullCount = ints.get(HULL_COUNT_INDEX);
+        return hullCount;
+    }
+
+    /**
+     * @return the number of blobs in the last image, including the ones that
+     *         were too small
+     */
+    public int getBlobCount() {
+        return blobCount;
+    }
+
+    public int getHullCount() {
+        return hullCount;
+    }
+
+    /**
+     * Gets the number of points in a hull.
+     *
+     * @param hull the index of the hull
+     * @return the number of points
+     */
+    public int getPointCount(int hull) {
+        return (ints.get(OFFSETS_INDEX + hull + 1) - ints.get(OFFSETS_INDEX + hull)) / 2;
+    }
+
+    /**
+     * Copies the points of a hull into an array.
+     *
+     * @param hull the index of the hull
+     * @param points the array to write the x, y pairs to, which must have
+     *        room for {@link #getPointCount(int)} pairs
+     * @return the number of ints that were written
+     */
+    public int getPoints(int hull, int[] points) {
+        int start = ints.get(OFFSETS_INDEX + hull);
+        int length = ints.get(OFFSETS_INDEX + hull + 1) - start;
+        ints.position(start);
+        ints.get(points, 0, length);
+        ints.rewind();
+        return length;
+    }
+
+    /**
+     * Copies a hull into a contour with a single native call.
+     *
+     * @param hull the index of the hull
+     * @param contour the contour to write to
+     * @return the contour
+     */
+    public MatOfPoint getHull(int hull, MatOfPoint contour) {
+        int pointCount = getPointCount(hull);
+        if (points.length < pointCount * 2) {
+            points = new int[pointCount * 4];
+        }
+        getPoints(hull, points);
+
+        contour.create(pointCount, 1, CvType.CV_32SC2);
+        // put() stops at the end of the Mat, so the unused part of the array
+        // is ignored
+        contour.put(0, 0, points);
+        return contour;
+    }
+
+    /**
+     * Copies all the hulls into new contours and adds them to a list. New
+     * contours are used every time because the {@link Target}s from the last
+     * frame may still be using the old ones.
+     *
+     * @param contours the list to add to
+     */
+    public void getHulls(List<MatOfPoint> contours) {
+        for (int i = 0; i < hullCount; i++) {
+            contours.add(getHull(i, new MatOfPoint()));
+        }
+    }
+}
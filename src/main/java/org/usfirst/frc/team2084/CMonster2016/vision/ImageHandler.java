@@ -16,6 +16,20 @@ public interface ImageHandler {
 
     public void imageProcessed(Mat image);
 
+    /**
+     * Called with the frame that was just processed, which also says when and
+     * how the image was captured and its {@link Frame#getMode() processing
+     * mode}. Handlers that use the frame after returning
+     * (for example to send it from another thread) must
+     * {@link Frame#retain() retain} it. By default this just calls
+     * {@link #imageProcessed(Mat)}.
+     * 
+     * @param frame the processed frame
+     */
+    public default void frameProcessed(Frame frame) {
+        imageProcessed(frame.getImage());
+    }
+
     public default void debugImage(String name, Mat image) {
     }
 }
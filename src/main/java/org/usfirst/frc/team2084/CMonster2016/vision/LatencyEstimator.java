@@ -0,0 +1,270 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Estimates the camera latency (the time between when an image is exposed and
+ * when it is grabbed) while the robot is running. The goal doesn't move, so
+ * when the robot turns, the angle of the goal in the image changes by the
+ * opposite of the change in heading. The heading has to be looked up at the
+ * time the image was exposed, so only the right latency makes the two changes
+ * line up. Each candidate latency is scored by how badly they disagree over
+ * the last few seconds of frames, and the best one is refined with a parabola
+ * through its neighbors.
+ * <p>
+ * The confidence of a measurement is how much better the best latency is than
+ * the average one. If the robot isn't turning, every latency fits equally
+ * well, so the confidence is zero and the estimate is left alone. Confident
+ * measurements are blended into a running estimate.
+ *
+ * @author Ben Wolsieffer
+ */
+public class LatencyEstimator {
+
+    private static final ExecutorService ESTIMATOR = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "Latency Estimator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The largest latency that is tried, in seconds.
+     */
+    public static final double MAX_LATENCY = 0.3;
+
+    /**
+     * The spacing between the latencies that are tried, in seconds.
+     */
+    public static final double LATENCY_STEP = 0.005;
+
+    /**
+     * The number of frames that are compared.
+     */
+    public static final int WINDOW = 64;
+
+    /**
+     * Frames older than this many seconds before the newest one are not
+     * compared. This is how long {@link #WINDOW} frames take at 15 fps, so
+     * frames from before the target was lost for a while aren't mixed in, and
+     * the heading only has to be known for this long plus
+     * {@link #MAX_LATENCY}.
+     */
+    public static final double MAX_WINDOW_AGE = WINDOW / 15.0;
+
+    /**
+     * Measurements less confident than this are ignored.
+     */
+    public static final double MIN_CONFIDENCE = 0.5;
+
+    /**
+     * How much of each measurement is blended into the estimate, multiplied by
+     * its confidence.
+     */
+    public static final double GAIN = 0.2;
+
+    /**
+     * Consecutive frames further apart than this in seconds are not compared,
+     * because the target might have been lost in between.
+     */
+    public static final double MAX_FRAME_GAP = 0.2;
+
+    /**
+     * Consecutive frames whose target angles are further apart than this in
+     * radians are not compared, because they are probably different targets.
+     */
+    public static final double MAX_ANGLE_CHANGE = 0.2;
+
+    private static final int CANDIDATES = (int) Math.round(MAX_LATENCY / LATENCY_STEP) + 1;
+
+    private final DoubleUnaryOperator headingLookup;
+    private final int updateInterval;
+
+    private final double[] times = new double[WINDOW];
+    private final double[] angles = new double[WINDOW];
+    private int start = 0;
+    private int count = 0;
+    private int observationsSinceUpdate = 0;
+    private boolean updating = false;
+
+    private volatile double latency;
+    private volatile double confidence = 0;
+
+    /**
+     * Held while measuring, because the buffers below are shared.
+     */
+    private final Object measureLock = new Object();
+    private final double[] windowTimes = new double[WINDOW];
+    private final double[] windowAngles = new double[WINDOW];
+    private final double[] costs = new double[CANDIDATES];
+
+    /**
+     * Creates an estimator.
+     *
+     * @param headingLookup looks up the heading of the robot in radians at a
+     *        time in seconds
+     * @param initialLatency the latency to use until there is a good
+     *        measurement, in seconds
+     * @param updateInterval the number of frames between measurements, which
+     *        are made in the background, or 0 to only measure when
+     *        {@link #update()} is called
+     */
+    public LatencyEstimator(DoubleUnaryOperator headingLookup, double initialLatency, int updateInterval) {
+        this.headingLookup = headingLookup;
+        this.latency = initialLatency;
+        this.updateInterval = updateInterval;
+    }
+
+    /**
+     * Records the angle of the target in a frame.
+     *
+     * @param grabTime the time the frame was grabbed from the camera, in
+     *        seconds
+     * @param targetAngle the horizontal angle of the target relative to the
+     *        camera, in radians
+     */
+    public synchronized void addObservation(double grabTime, double targetAngle) {
+        int index;
+        if (count < WINDOW) {
+            index = count++;
+        } else {
+            index = start;
+            start = (start + 1) % WINDOW;
+        }
+        times[index] = grabTime;
+        angles[index] = targetAngle;
+
+        if (updateInterval > 0 && ++observationsSinceUpdate >= updateInterval && !updating) {
+            observationsSinceUpdate = 0;
+            updating = true;
+            ESTIMATOR.execute(() -> {
+                try {
+                    update();
+                } finally {
+                    synchronized (this) {
+                        updating = false;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Measures the latency from the recorded frames and blends it into the
+     * estimate if it is confident enough. This is called automatically if
+     * there is an update interval, and it can be slow, so it shouldn't be
+     * called from the processing thread.
+     *
+     * @return true if the estimate was changed
+     */
+    public boolean update() {
+        synchronized (measureLock) {
+            int windowCount;
+            synchronized (this) {
+                windowCount = count;
+                for (int i = 0; i < count; i++) {
+                    int index = (start + i) % WINDOW;
+                    windowTimes[i] = times[index];
+                    windowAngles[i] = angles[index];
+                }
+            }
+
+            double[] measurement = measure(windowCount);
+            if (measurement == null || measurement[1] < MIN_CONFIDENCE) {
+                return false;
+            }
+
+            synchronized (this) {
+                latency += GAIN * measurement[1] * (measurement[0] - latency);
+                confidence += GAIN * (measurement[1] - confidence);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Finds the latency that best lines up the frames.
+     *
+     * @return the latency and the confidence, or null if there aren't enough
+     *         frames to compare
+     */
+    private double[] measure(int frameCount) {
+        int pairs = 0;
+        for (int c = 0; c < CANDIDATES; c++) {
+            costs[c] = 0;
+        }
+        if (frameCount == 0) {
+            return null;
+        }
+        double oldestTime = windowTimes[frameCount - 1] - MAX_WINDOW_AGE;
+        for (int i = 1; i < frameCount; i++) {
+            double dt = windowTimes[i] - windowTimes[i - 1];
+            double angleChange = windowAngles[i] - windowAngles[i - 1];
+            if (windowTimes[i - 1] < oldestTime || dt <= 0 || dt > MAX_FRAME_GAP
+                    || Math.abs(angleChange) > MAX_ANGLE_CHANGE) {
+                continue;
+            }
+            pairs++;
+            for (int c = 0; c < CANDIDATES; c++) {
+                double candidate = c * LATENCY_STEP;
+                // The heading wraps around at +-pi
+                double headingChange = Math.IEEEremainder(headingLookup.applyAsDouble(windowTimes[i] - candidate)
+                        - headingLookup.applyAsDouble(windowTimes[i - 1] - candidate), 2 * Math.PI);
+                double error = angleChange + headingChange;
+                costs[c] += error * error;
+            }
+        }
+        if (pairs < WINDOW / 4) {
+            return null;
+        }
+
+        int best = 0;
+        double total = 0;
+        for (int c = 0; c < CANDIDATES; c++) {
+            total += costs[c];
+            if (costs[c] < costs[best]) {
+                best = c;
+            }
+        }
+        double mean = total / CANDIDATES;
+        if (mean <= 0) {
+            return null;
+        }
+
+        // Fit a parabola through the best candidate and its neighbors
+        double offset = 0;
+        if (best > 0 && best < CANDIDATES - 1) {
+            double curvature = costs[best - 1] - 2 * costs[best] + costs[best + 1];
+            if (curvature > 0) {
+                offset = 0.5 * (costs[best - 1] - costs[best + 1]) / curvature;
+            }
+        }
+
+        return new double[] { (best + offset) * LATENCY_STEP, 1 - costs[best] / mean };
+    }
+
+    /**
+     * Gets the current latency estimate.
+     *
+     * @return the latency in seconds
+     */
+    public double getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets how confident the recent measurements were, from 0 to 1.
+     *
+     * @return the confidence
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+}
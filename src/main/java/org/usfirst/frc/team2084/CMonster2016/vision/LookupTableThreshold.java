@@ -0,0 +1,128 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Thresholds an image using an {@link HsvLookupTable} instead of converting it
+ * to HSV. Tables are always built in the background. When the range changes,
+ * the old table is used until the new one is ready.
+ * <p>
+ * The table can only be used when there is no blur. The native code blurs the
+ * HSV image, and blurring the BGR image instead changes which blob is chosen
+ * as the goal on a lot of the images from the real field, so matching it
+ * would need the HSV image that the table exists to avoid. Without a blur, the
+ * table gives exactly the same threshold as the native code in about a third
+ * of the time.
+ * <p>
+ * Each instance has its own buffers, so it should only be used by one thread.
+ *
+ * @author Ben Wolsieffer
+ */
+public class LookupTableThreshold {
+
+    private static final ExecutorService TABLE_BUILDER = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "Lookup Table Builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static volatile HsvLookupTable table;
+    /**
+     * The range of the table that is being built or was built last. This is
+     * used so that the same table isn't built more than once.
+     */
+    private static int[] requestedRange;
+
+    /**
+     * Pixel buffers, which only grow. In tracking mode the size of the image
+     * changes almost every frame, so they are usually bigger than the image.
+     */
+    private byte[] imageData = new byte[0];
+    private byte[] thresholdData = new byte[0];
+    private byte[] grayData = new byte[0];
+
+    /**
+     * Gets a table for the range, starting to build a new one if the range has
+     * changed. This never waits for a table to be built.
+     *
+     * @return the newest table, which may be for an old range, or null if the
+     *         first table isn't ready yet
+     */
+    static HsvLookupTable getTable(int hMin, int sMin, int vMin, int hMax, int sMax, int vMax) {
+        HsvLookupTable currentTable = table;
+        if (currentTable == null || !currentTable.matches(hMin, sMin, vMin, hMax, sMax, vMax)) {
+            synchronized (LookupTableThreshold.class) {
+                int[] range = { hMin, sMin, vMin, hMax, sMax, vMax };
+                if (!Arrays.equals(range, requestedRange)) {
+                    requestedRange = range;
+                    TABLE_BUILDER.execute(() -> {
+                        table = new HsvLookupTable(hMin, sMin, vMin, hMax, sMax, vMax);
+                    });
+                }
+            }
+        }
+        return currentTable;
+    }
+
+    /**
+     * Thresholds an image and converts it to grayscale, if the table can be
+     * used. Both are done in a single pass over the image.
+     *
+     * @param image the BGR image to process
+     * @param thresholdImage the image to write the threshold to
+     * @param grayImage the image to write the grayscale version to
+     * @param blurSize the size of the gaussian blur, the table is only used if
+     *        this is 0
+     * @param min the minimum HSV values
+     * @param max the maximum HSV values
+     * @return false if there is a blur or the first table isn't ready yet, in
+     *         which case nothing is written and the native code should be used
+     */
+    public boolean threshold(Mat image, Mat thresholdImage, Mat grayImage, int blurSize, double[] min,
+            double[] max) {
+        if (blurSize > 0) {
+            return false;
+        }
+        // Only whole numbers can match, so round the range inwards
+        HsvLookupTable currentTable = getTable((int) Math.ceil(min[0]), (int) Math.ceil(min[1]),
+                (int) Math.ceil(min[2]), (int) Math.floor(max[0]), (int) Math.floor(max[1]), (int) Math.floor(max[2]));
+        if (currentTable == null) {
+            return false;
+        }
+
+        int pixels = (int) image.total();
+        if (thresholdData.length < pixels) {
+            imageData = new byte[pixels * 3];
+            thresholdData = new byte[pixels];
+            grayData = new byte[pixels];
+        }
+        // get() and put() stop at the end of the Mat, so the rest of the
+        // arrays is ignored
+        image.get(0, 0, imageData);
+
+        for (int i = 0, j = 0; i < pixels; i++, j += 3) {
+            int b = imageData[j] & 0xFF;
+            int g = imageData[j + 1] & 0xFF;
+            int r = imageData[j + 2] & 0xFF;
+            thresholdData[i] = currentTable.contains(b, g, r) ? (byte) 255 : 0;
+            grayData[i] = (byte) HsvLookupTable.gray(b, g, r);
+        }
+
+        thresholdImage.create(image.size(), CvType.CV_8UC1);
+        thresholdImage.put(0, 0, thresholdData);
+        grayImage.create(image.size(), CvType.CV_8UC1);
+        grayImage.put(0, 0, grayData);
+        return true;
+    }
+}
@@ -0,0 +1,215 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs a series of stages on separate threads, connected by bounded queues.
+ * This lets a new item start the first stage while older items are still in
+ * later stages, so the throughput is limited by the slowest stage instead of
+ * the sum of all of them. Every item leaves the pipeline through the recycler,
+ * whether it made it through all the stages or was dropped.
+ *
+ * @author Ben Wolsieffer
+ * @param <T> the type of item that flows through the pipeline
+ */
+public class Pipeline<T> {
+
+    /**
+     * What to do when an item arrives at a stage whose queue is full.
+     */
+    public enum DropPolicy {
+        /**
+         * Wait for space in the queue. Nothing is dropped, but earlier stages
+         * slow down to the speed of this one.
+         */
+        BLOCK,
+        /**
+         * Drop the oldest item in the queue to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the new item.
+         */
+        DROP_NEWEST
+    }
+
+    private class Stage implements Runnable {
+
+        private final String name;
+        private final BlockingQueue<T> queue;
+        private final DropPolicy dropPolicy;
+        private final Consumer<T> action;
+        private final AtomicLong droppedCount = new AtomicLong();
+        private Stage next;
+
+        public Stage(String name, int queueDepth, DropPolicy dropPolicy, Consumer<T> action) {
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<>(queueDepth);
+            this.dropPolicy = dropPolicy;
+            this.action = action;
+        }
+
+        /**
+         * Adds an item to this stage's queue, following the drop policy if it
+         * is full.
+         *
+         * @param item the item to add
+         */
+        public void offer(T item) {
+            switch (dropPolicy) {
+            case BLOCK:
+                while (true) {
+                    try {
+                        queue.put(item);
+                        return;
+                    } catch (InterruptedException e) {
+                    }
+                }
+            case DROP_OLDEST:
+                while (!queue.offer(item)) {
+                    T oldItem = queue.poll();
+                    if (oldItem != null) {
+                        drop(oldItem);
+                    }
+                }
+            break;
+            case DROP_NEWEST:
+                if (!queue.offer(item)) {
+                    drop(item);
+                }
+            break;
+            }
+        }
+
+        private void drop(T item) {
+            droppedCount.incrementAndGet();
+            recycler.accept(item);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                T item;
+                try {
+                    item = queue.take();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+
+                try {
+                    action.accept(item);
+                } catch (RuntimeException ex) {
+                    System.err.println("Error in pipeline stage " + name + ": " + ex);
+                    ex.printStackTrace();
+                    drop(item);
+                    continue;
+                }
+
+                if (next != null) {
+                    next.offer(item);
+                } else {
+                    recycler.accept(item);
+                }
+            }
+        }
+    }
+
+    private final List<Stage> stages = new ArrayList<>();
+    private final Consumer<T> recycler;
+    private boolean started = false;
+
+    /**
+     * Creates an empty pipeline.
+     *
+     * @param recycler called with every item that leaves the pipeline, either
+     *        after the last stage or when it is dropped
+     */
+    public Pipeline(Consumer<T> recycler) {
+        this.recycler = recycler;
+    }
+
+    /**
+     * Adds a stage to the end of the pipeline. Stages cannot be added after
+     * the pipeline is started.
+     *
+     * @param name the name of the stage, used for its thread
+     * @param queueDepth the number of items that can wait for this stage
+     * @param dropPolicy what to do with new items when the queue is full
+     * @param action the work done by the stage
+     * @return this pipeline
+     */
+    public Pipeline<T> addStage(String name, int queueDepth, DropPolicy dropPolicy, Consumer<T> action) {
+        if (started) {
+            throw new IllegalStateException("Cannot add a stage to a running pipeline.");
+        }
+
+        Stage stage = new Stage(name, queueDepth, dropPolicy, action);
+        if (!stages.isEmpty()) {
+            stages.get(stages.size() - 1).next = stage;
+        }
+        stages.add(stage);
+        return this;
+    }
+
+    /**
+     * Starts a thread for each stage.
+     */
+    public void start() {
+        if (!started) {
+            started = true;
+            for (Stage stage : stages) {
+                Thread thread = new Thread(stage, "Pipeline Stage: " + stage.name);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Adds an item to the first stage of the pipeline.
+     *
+     * @param item the item to process
+     */
+    public void submit(T item) {
+        if (stages.isEmpty()) {
+            recycler.accept(item);
+        } else {
+            stages.get(0).offer(item);
+        }
+    }
+
+    /**
+     * Gets the number of items dropped at a stage, either because its queue was
+     * full or because the stage threw an exception.
+     *
+     * @param stage the index of the stage
+     * @return the number of dropped items
+     */
+    public long getDroppedCount(int stage) {
+        return stages.get(stage).droppedCount.get();
+    }
+
+    /**
+     * Gets the total number of items dropped by all stages.
+     *
+     * @return the number of dropped items
+     */
+    public long getDroppedCount() {
+        long count = 0;
+        for (Stage stage : stages) {
+            count += stage.droppedCount.get();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,441 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+/**
+ * Finds the pose of a rectangle from the image locations of its four corners,
+ * without using OpenCV. Since all four corners lie on a plane, the homography
+ * between the rectangle and the undistorted image points gives a good first
+ * guess at the pose, which is then refined with a few Gauss-Newton steps on
+ * the reprojection error. Everything is done with primitive arrays that are
+ * reused between calls, so an instance should only be used by one thread.
+ * <p>
+ * The results use the same conventions as {@code Calib3d.solvePnP()}: the
+ * rotation is a Rodrigues vector and a point on the rectangle is moved into
+ * camera coordinates by rotating it and then adding the translation.
+ *
+ * @author Ben Wolsieffer
+ */
+public class PlanarPoseSolver {
+
+    private static final int UNDISTORT_ITERATIONS = 10;
+    private static final int REFINE_ITERATIONS = 10;
+    private static final double REFINE_EPSILON = 1e-10;
+    private static final double JACOBIAN_STEP = 1e-7;
+
+    private final double fx, fy, cx, cy;
+    private final double k1, k2, p1, p2, k3;
+
+    /**
+     * Corners of the rectangle as x, y pairs, in the same order as
+     * {@link Target#OBJECT_POINTS}. The z coordinates are all 0.
+     */
+    private final double[] objectPoints;
+
+    // Scratch arrays
+    private final double[] imagePoints = new double[8];
+    private final double[] homography = new double[9];
+    private final double[] linearSystem = new double[8 * 9];
+    private final double[] rotationMatrix = new double[9];
+    private final double[] pose = new double[6];
+    private final double[] residuals = new double[8];
+    private final double[] stepResiduals = new double[8];
+    private final double[] jacobian = new double[8 * 6];
+    private final double[] normalSystem = new double[6 * 7];
+
+    /**
+     * Creates a solver for a rectangle of the specified size, centered on the
+     * origin.
+     *
+     * @param cameraMatrix the 3x3 camera matrix
+     * @param distortion the distortion coefficients (k1, k2, p1, p2, k3)
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     */
+    public PlanarPoseSolver(double[][] cameraMatrix, double[] distortion, double width, double height) {
+        fx = cameraMatrix[0][0];
+        fy = cameraMatrix[1][1];
+        cx = cameraMatrix[0][2];
+        cy = cameraMatrix[1][2];
+        k1 = distortion.length > 0 ? distortion[0] : 0;
+        k2 = distortion.length > 1 ? distortion[1] : 0;
+        p1 = distortion.length > 2 ? distortion[2] : 0;
+        p2 = distortion.length > 3 ? distortion[3] : 0;
+        k3 = distortion.length > 4 ? distortion[4] : 0;
+
+        objectPoints = new double[] {
+                -width / 2, -height / 2,
+                width / 2, -height / 2,
+                -width / 2, height / 2,
+                width / 2, height / 2 };
+    }
+
+    /**
+     * Finds the pose of the rectangle.
+     *
+     * @param corners the corners in the image as x, y pairs, in the order top
+     *        left, top right, bottom left, bottom right
+     * @param rvec the array to write the rotation vector to
+     * @param tvec the array to write the translation to
+     * @return false if the corners are degenerate and no pose could be found
+     */
+    public boolean solve(double[] corners, double[] rvec, double[] tvec) {
+        for (int i = 0; i < 4; i++) {
+            undistort(corners[i * 2], corners[i * 2 + 1], imagePoints, i * 2);
+        }
+
+        if (!findHomography() || !poseFromHomography()) {
+            return false;
+        }
+        refine();
+
+        for (int i = 0; i < 3; i++) {
+            rvec[i] = pose[i];
+            tvec[i] = pose[i + 3];
+        }
+        return Double.isFinite(tvec[0]) && Double.isFinite(tvec[1]) && Double.isFinite(tvec[2]) && tvec[2] > 0;
+    }
+
+    /**
+     * Converts a pixel location into normalized camera coordinates and
+     * removes the lens distortion. This is the same iteration that
+     * {@code Imgproc.undistortPoints()} uses.
+     */
+    private void undistort(double u, double v, double[] dest, int offset) {
+        double x0 = (u - cx) / fx;
+        double y0 = (v - cy) / fy;
+        double x = x0;
+        double y = y0;
+        for (int i = 0; i < UNDISTORT_ITERATIONS; i++) {
+            double r2 = x * x + y * y;
+            double icdist = 1 / (1 + ((k3 * r2 + k2) * r2 + k1) * r2);
+            double deltaX = 2 * p1 * x * y + p2 * (r2 + 2 * x * x);
+            double deltaY = p1 * (r2 + 2 * y * y) + 2 * p2 * x * y;
+            x = (x0 - deltaX) * icdist;
+            y = (y0 - deltaY) * icdist;
+        }
+        dest[offset] = x;
+        dest[offset + 1] = y;
+    }
+
+    /**
+     * Finds the homography that maps the rectangle onto the undistorted image
+     * points. With exactly four points, this is an 8x8 linear system once the
+     * last element is fixed at 1, which is safe because the center of the
+     * rectangle is always in front of the camera.
+     */
+    private boolean findHomography() {
+        for (int i = 0; i < 4; i++) {
+            double objX = objectPoints[i * 2];
+            double objY = objectPoints[i * 2 + 1];
+            double x = imagePoints[i * 2];
+            double y = imagePoints[i * 2 + 1];
+
+            // x * (h6 X + h7 Y + 1) = h0 X + h1 Y + h2
+            int row = i * 2 * 9;
+            linearSystem[row] = objX;
+            linearSystem[row + 1] = objY;
+            linearSystem[row + 2] = 1;
+            linearSystem[row + 3] = 0;
+            linearSystem[row + 4] = 0;
+            linearSystem[row + 5] = 0;
+            linearSystem[row + 6] = -objX * x;
+            linearSystem[row + 7] = -objY * x;
+            linearSystem[row + 8] = x;
+
+            // y * (h6 X + h7 Y + 1) = h3 X + h4 Y + h5
+            row += 9;
+            linearSystem[row] = 0;
+            linearSystem[row + 1] = 0;
+            linearSystem[row + 2] = 0;
+            linearSystem[row + 3] = objX;
+            linearSystem[row + 4] = objY;
+            linearSystem[row + 5] = 1;
+            linearSystem[row + 6] = -objX * y;
+            linearSystem[row + 7] = -objY * y;
+            linearSystem[row + 8] = y;
+        }
+        if (!solveLinear(linearSystem, 8)) {
+            return false;
+        }
+        for (int i = 0; i < 8; i++) {
+            homography[i] = linearSystem[i * 9 + 8];
+        }
+        homography[8] = 1;
+        return true;
+    }
+
+    /**
+     * Splits the homography into a rotation and translation. The first two
+     * columns are the scaled x and y axes of the rectangle, which are made
+     * orthonormal by evening out the error between them.
+     */
+    private boolean poseFromHomography() {
+        double[] h = homography;
+        double norm1 = Math.sqrt(h[0] * h[0] + h[3] * h[3] + h[6] * h[6]);
+        double norm2 = Math.sqrt(h[1] * h[1] + h[4] * h[4] + h[7] * h[7]);
+        if (norm1 == 0 || norm2 == 0) {
+            return false;
+        }
+        double scale = 2 / (norm1 + norm2);
+
+        // Bisector and difference of the two axes, which are at right angles
+        // to each other even when the axes aren't
+        double ax = h[0] / norm1 + h[1] / norm2;
+        double ay = h[3] / norm1 + h[4] / norm2;
+        double az = h[6] / norm1 + h[7] / norm2;
+        double bx = h[0] / norm1 - h[1] / norm2;
+        double by = h[3] / norm1 - h[4] / norm2;
+        double bz = h[6] / norm1 - h[7] / norm2;
+        double aNorm = Math.sqrt(ax * ax + ay * ay + az * az) * Math.sqrt(2);
+        double bNorm = Math.sqrt(bx * bx + by * by + bz * bz) * Math.sqrt(2);
+        if (aNorm == 0 || bNorm == 0) {
+            return false;
+        }
+        ax /= aNorm;
+        ay /= aNorm;
+        az /= aNorm;
+        bx /= bNorm;
+        by /= bNorm;
+        bz /= bNorm;
+
+        double r1x = ax + bx, r1y = ay + by, r1z = az + bz;
+        double r2x = ax - bx, r2y = ay - by, r2z = az - bz;
+
+        double[] r = rotationMatrix;
+        r[0] = r1x;
+        r[3] = r1y;
+        r[6] = r1z;
+        r[1] = r2x;
+        r[4] = r2y;
+        r[7] = r2z;
+        r[2] = r1y * r2z - r1z * r2y;
+        r[5] = r1z * r2x - r1x * r2z;
+        r[8] = r1x * r2y - r1y * r2x;
+
+        matrixToRodrigues(r, pose);
+        pose[3] = h[2] * scale;
+        pose[4] = h[5] * scale;
+        pose[5] = h[8] * scale;
+        return true;
+    }
+
+    /**
+     * Improves the pose by minimizing the distance in pixels between the
+     * projected corners and the measured ones.
+     */
+    private void refine() {
+        double error = project(pose, residuals);
+        for (int iteration = 0; iteration < REFINE_ITERATIONS; iteration++) {
+            // Numerical Jacobian of the residuals
+            for (int j = 0; j < 6; j++) {
+                double original = pose[j];
+                pose[j] += JACOBIAN_STEP;
+                project(pose, stepResiduals);
+                pose[j] = original;
+                for (int i = 0; i < 8; i++) {
+                    jacobian[i * 6 + j] = (stepResiduals[i] - residuals[i]) / JACOBIAN_STEP;
+                }
+            }
+
+            // Normal equations: (J^T J) delta = -J^T r
+            for (int a = 0; a < 6; a++) {
+                for (int b = 0; b < 6; b++) {
+                    double sum = 0;
+                    for (int i = 0; i < 8; i++) {
+                        sum += jacobian[i * 6 + a] * jacobian[i * 6 + b];
+                    }
+                    normalSystem[a * 7 + b] = sum;
+                }
+                double sum = 0;
+                for (int i = 0; i < 8; i++) {
+                    sum -= jacobian[i * 6 + a] * residuals[i];
+                }
+                normalSystem[a * 7 + 6] = sum;
+            }
+            if (!solveLinear(normalSystem, 6)) {
+                return;
+            }
+
+            double stepSize = 0;
+            for (int j = 0; j < 6; j++) {
+                double step = normalSystem[j * 7 + 6];
+                pose[j] += step;
+                stepSize += step * step;
+            }
+            double newError = project(pose, stepResiduals);
+            if (!(newError < error)) {
+                // Went the wrong way, so undo the step and stop
+                for (int j = 0; j < 6; j++) {
+                    pose[j] -= normalSystem[j * 7 + 6];
+                }
+                return;
+            }
+            error = newError;
+            System.arraycopy(stepResiduals, 0, residuals, 0, 8);
+            if (stepSize < REFINE_EPSILON) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Projects the rectangle using a pose and calculates the difference from
+     * the measured corners, scaled to pixels.
+     *
+     * @return the sum of the squared differences
+     */
+    private double project(double[] pose, double[] residuals) {
+        rodriguesToMatrix(pose, rotationMatrix);
+        double[] r = rotationMatrix;
+        double error = 0;
+        for (int i = 0; i < 4; i++) {
+            double objX = objectPoints[i * 2];
+            double objY = objectPoints[i * 2 + 1];
+            double x = r[0] * objX + r[1] * objY + pose[3];
+            double y = r[3] * objX + r[4] * objY + pose[4];
+            double z = r[6] * objX + r[7] * objY + pose[5];
+
+            double dx = (x / z - imagePoints[i * 2]) * fx;
+            double dy = (y / z - imagePoints[i * 2 + 1]) * fy;
+            residuals[i * 2] = dx;
+            residuals[i * 2 + 1] = dy;
+            error += dx * dx + dy * dy;
+        }
+        return error;
+    }
+
+    /**
+     * Solves a linear system in place using Gaussian elimination with partial
+     * pivoting. The matrix is stored row by row, with the right hand side as
+     * the last column. The solution is left in the last column.
+     *
+     * @param matrix the augmented matrix
+     * @param n the number of unknowns
+     * @return false if the matrix is singular
+     */
+    static boolean solveLinear(double[] matrix, int n) {
+        int stride = n + 1;
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < n; row++) {
+                if (Math.abs(matrix[row * stride + col]) > Math.abs(matrix[pivot * stride + col])) {
+                    pivot = row;
+                }
+            }
+            if (Math.abs(matrix[pivot * stride + col]) < 1e-15) {
+                return false;
+            }
+            if (pivot != col) {
+                for (int k = col; k < stride; k++) {
+                    double tmp = matrix[col * stride + k];
+                    matrix[col * stride + k] = matrix[pivot * stride + k];
+                    matrix[pivot * stride + k] = tmp;
+                }
+            }
+            for (int row = col + 1; row < n; row++) {
+                double factor = matrix[row * stride + col] / matrix[col * stride + col];
+                for (int k = col; k < stride; k++) {
+                    matrix[row * stride + k] -= factor * matrix[col * stride + k];
+                }
+            }
+        }
+        for (int row = n - 1; row >= 0; row--) {
+            double sum = matrix[row * stride + n];
+            for (int k = row + 1; k < n; k++) {
+                sum -= matrix[row * stride + k] * matrix[k * stride + n];
+            }
+            matrix[row * stride + n] = sum / matrix[row * stride + row];
+        }
+        return true;
+    }
+
+    /**
+     * Converts a rotation vector into a 3x3 rotation matrix, the same as
+     * {@code Calib3d.Rodrigues()}.
+     *
+     * @param rvec the rotation vector, only the first 3 elements are used
+     * @param matrix the array to write the matrix to, row by row
+     */
+    static void rodriguesToMatrix(double[] rvec, double[] matrix) {
+        double theta = Math.sqrt(rvec[0] * rvec[0] + rvec[1] * rvec[1] + rvec[2] * rvec[2]);
+        if (theta < 1e-12) {
+            matrix[0] = 1;
+            matrix[1] = -rvec[2];
+            matrix[2] = rvec[1];
+            matrix[3] = rvec[2];
+            matrix[4] = 1;
+            matrix[5] = -rvec[0];
+            matrix[6] = -rvec[1];
+            matrix[7] = rvec[0];
+            matrix[8] = 1;
+            return;
+        }
+        double kx = rvec[0] / theta;
+        double ky = rvec[1] / theta;
+        double kz = rvec[2] / theta;
+        double c = Math.cos(theta);
+        double s = Math.sin(theta);
+        double c1 = 1 - c;
+
+        matrix[0] = c + c1 * kx * kx;
+        matrix[1] = c1 * kx * ky - s * kz;
+        matrix[2] = c1 * kx * kz + s * ky;
+        matrix[3] = c1 * ky * kx + s * kz;
+        matrix[4] = c + c1 * ky * ky;
+        matrix[5] = c1 * ky * kz - s * kx;
+        matrix[6] = c1 * kz * kx - s * ky;
+        matrix[7] = c1 * kz * ky + s * kx;
+        matrix[8] = c + c1 * kz * kz;
+    }
+
+    /**
+     * Converts a 3x3 rotation matrix into a rotation vector, the same as
+     * {@code Calib3d.Rodrigues()}.
+     *
+     * @param matrix the rotation matrix, row by row
+     * @param rvec the array to write the rotation vector to
+     */
+    static void matrixToRodrigues(double[] matrix, double[] rvec) {
+        double rx = matrix[7] - matrix[5];
+        double ry = matrix[2] - matrix[6];
+        double rz = matrix[3] - matrix[1];
+
+        double s = Math.sqrt(rx * rx + ry * ry + rz * rz) / 2;
+        double c = (matrix[0] + matrix[4] + matrix[8] - 1) / 2;
+        c = Math.max(-1, Math.min(1, c));
+
+        if (s < 1e-5) {
+            if (c > 0) {
+                // Very small rotation
+                rvec[0] = rx / 2;
+                rvec[1] = ry / 2;
+                rvec[2] = rz / 2;
+                return;
+            }
+
+            // Rotation of almost 180 degrees, the axis has to be found from
+            // the diagonal
+            rx = Math.sqrt(Math.max((matrix[0] + 1) / 2, 0));
+            ry = Math.sqrt(Math.max((matrix[4] + 1) / 2, 0)) * (matrix[1] < 0 ? -1 : 1);
+            rz = Math.sqrt(Math.max((matrix[8] + 1) / 2, 0)) * (matrix[2] < 0 ? -1 : 1);
+            if (Math.abs(rx) < Math.abs(ry) && Math.abs(rx) < Math.abs(rz) && (matrix[5] > 0) != (ry * rz > 0)) {
+                rz = -rz;
+            }
+            double scale = Math.acos(c) / Math.sqrt(rx * rx + ry * ry + rz * rz);
+            rvec[0] = rx * scale;
+            rvec[1] = ry * scale;
+            rvec[2] = rz * scale;
+            return;
+        }
+
+        double scale = Math.atan2(s, c) / (2 * s);
+        rvec[0] = rx * scale;
+        rvec[1] = ry * scale;
+        rvec[2] = rz * scale;
+    }
+}
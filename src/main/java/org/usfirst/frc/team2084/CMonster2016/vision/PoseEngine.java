@@ -0,0 +1,24 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+/**
+ * The ways the pose of a high goal target can be calculated from its corners.
+ *
+ * @author Ben Wolsieffer
+ */
+public enum PoseEngine {
+    /**
+     * OpenCV's {@code solvePnP()} with the P3P algorithm.
+     */
+    OPENCV,
+    /**
+     * The pure Java {@link PlanarPoseSolver}, which doesn't need any Mats or
+     * native calls.
+     */
+    PLANAR
+}
@@ -0,0 +1,106 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+/**
+ * Describes how a frame was processed: how consecutive frames were scheduled,
+ * how much of the image was searched and at what pyramid level. Modes are
+ * immutable, and the common ones are shared so that setting the mode of a
+ * frame doesn't allocate.
+ *
+ * @author Ben Wolsieffer
+ */
+public final class ProcessingMode {
+
+    /**
+     * The mode of a frame that was processed without any of the optional
+     * modes enabled.
+     */
+    public static final ProcessingMode DEFAULT;
+
+    /**
+     * The shared modes, indexed by execution mode, search mode and pyramid
+     * level.
+     */
+    private static final ProcessingMode[][][] MODES = new ProcessingMode[ExecutionMode.values().length][SearchMode
+            .values().length][GoalFrame.MAX_PYRAMID_LEVEL + 1];
+
+    static {
+        for (ExecutionMode executionMode : ExecutionMode.values()) {
+            for (SearchMode searchMode : SearchMode.values()) {
+                for (int level = 0; level <= GoalFrame.MAX_PYRAMID_LEVEL; level++) {
+                    MODES[executionMode.ordinal()][searchMode.ordinal()][level] =
+                            new ProcessingMode(executionMode, searchMode, level);
+                }
+            }
+        }
+        DEFAULT = get(ExecutionMode.SERIAL, SearchMode.FULL, 0);
+    }
+
+    private final ExecutionMode executionMode;
+    private final SearchMode searchMode;
+    private final int pyramidLevel;
+
+    private ProcessingMode(ExecutionMode executionMode, SearchMode searchMode, int pyramidLevel) {
+        this.executionMode = executionMode;
+        this.searchMode = searchMode;
+        this.pyramidLevel = pyramidLevel;
+    }
+
+    /**
+     * Gets the mode with the specified settings.
+     *
+     * @param executionMode how consecutive frames were scheduled
+     * @param searchMode how much of the image was searched
+     * @param pyramidLevel the pyramid level the image was thresholded at
+     * @return the mode
+     */
+    public static ProcessingMode get(ExecutionMode executionMode, SearchMode searchMode, int pyramidLevel) {
+        if (pyramidLevel >= 0 && pyramidLevel <= GoalFrame.MAX_PYRAMID_LEVEL) {
+            return MODES[executionMode.ordinal()][searchMode.ordinal()][pyramidLevel];
+        }
+        return new ProcessingMode(executionMode, searchMode, pyramidLevel);
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public SearchMode getSearchMode() {
+        return searchMode;
+    }
+
+    /**
+     * Gets the pyramid level the image was thresholded at. The threshold image
+     * is 1/2^level of the size of the camera image.
+     *
+     * @return the pyramid level, or 0 if the full size image was used
+     */
+    public int getPyramidLevel() {
+        return pyramidLevel;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ProcessingMode)) {
+            return false;
+        }
+        ProcessingMode other = (ProcessingMode) obj;
+        return executionMode == other.executionMode && searchMode == other.searchMode
+                && pyramidLevel == other.pyramidLevel;
+    }
+
+    @Override
+    public int hashCode() {
+        return (executionMode.hashCode() * 31 + searchMode.hashCode()) * 31 + pyramidLevel;
+    }
+
+    @Override
+    public String toString() {
+        return executionMode + ", " + searchMode + ", pyramid level " + pyramidLevel;
+    }
+}
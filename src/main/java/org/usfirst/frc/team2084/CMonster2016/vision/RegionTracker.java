@@ -0,0 +1,154 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import org.opencv.core.Rect;
+
+/**
+ * Decides which part of the image to search for the goal. Once a target has
+ * been found, the goal is almost always close to where it was in the last
+ * frame, so only a window around the last target needs to be searched. The
+ * window is moved by the amount the robot has turned since then. The whole
+ * image is searched again after too many frames without a target, and every so
+ * often in case a better target appeared somewhere else.
+ *
+ * @author Ben Wolsieffer
+ */
+public class RegionTracker {
+
+    public static final int DEFAULT_MAX_MISSES = 3;
+    public static final int DEFAULT_REFRESH_INTERVAL = 30;
+
+    /**
+     * Minimum number of pixels to add on each side of the last target.
+     */
+    public static final int MIN_MARGIN = 16;
+
+    private final int imageWidth;
+    private final int imageHeight;
+    private final double focalLength;
+
+    private int maxMisses = DEFAULT_MAX_MISSES;
+    private int refreshInterval = DEFAULT_REFRESH_INTERVAL;
+    private double marginScale = 0.5;
+
+    private boolean tracking = false;
+    private Rect lastBounds;
+    private double lastHeading;
+    private int misses = 0;
+    private int framesSinceRefresh = 0;
+
+    /**
+     * Creates a tracker for images of the specified size.
+     *
+     * @param imageWidth the width of the image
+     * @param imageHeight the height of the image
+     * @param focalLength the horizontal focal length of the camera in pixels,
+     *        used to convert turning into movement in the image
+     */
+    public RegionTracker(int imageWidth, int imageHeight, double focalLength) {
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.focalLength = focalLength;
+    }
+
+    /**
+     * Sets the number of frames in a row that can be missing a target before
+     * the whole image is searched again.
+     *
+     * @param maxMisses the number of misses
+     */
+    public synchronized void setMaxMisses(int maxMisses) {
+        this.maxMisses = maxMisses;
+    }
+
+    /**
+     * Sets how often the whole image is searched even if the target is being
+     * tracked.
+     *
+     * @param refreshInterval the number of frames between full searches
+     */
+    public synchronized void setRefreshInterval(int refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Sets how much bigger than the last target the search region is, as a
+     * fraction of the target's larger dimension on each side.
+     *
+     * @param marginScale the margin scale
+     */
+    public synchronized void setMarginScale(double marginScale) {
+        this.marginScale = marginScale;
+    }
+
+    /**
+     * Gets the region of the next image to search.
+     *
+     * @param heading the heading of the robot when the image was taken, in
+     *        radians
+     * @return the region to search, or null to search the whole image
+     */
+    public synchronized Rect getRegion(double heading) {
+        if (!tracking || framesSinceRefresh >= refreshInterval) {
+            return null;
+        }
+
+        // The target moves left when the robot turns right. The heading wraps
+        // around at +/-pi, so take the shortest turn.
+        int shift = (int) Math.round(-Math.IEEEremainder(heading - lastHeading, 2 * Math.PI) * focalLength);
+        int margin = Math.max(MIN_MARGIN, (int) (Math.max(lastBounds.width, lastBounds.height) * marginScale));
+
+        int left = Math.max(0, lastBounds.x + shift - margin);
+        int top = Math.max(0, lastBounds.y - margin);
+        int right = Math.min(imageWidth, lastBounds.x + lastBounds.width + shift + margin);
+        int bottom = Math.min(imageHeight, lastBounds.y + lastBounds.height + margin);
+
+        if (right <= left || bottom <= top) {
+            // The target has moved out of the image
+            return null;
+        }
+        return new Rect(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * Updates the tracker with the result of searching an image.
+     *
+     * @param searchRegion the region that was searched, or null if it was the
+     *        whole image
+     * @param targetBounds the bounding box of the target that was found, or
+     *        null if there was no valid target
+     * @param heading the heading of the robot when the image was taken, in
+     *        radians
+     */
+    public synchronized void update(Rect searchRegion, Rect targetBounds, double heading) {
+        if (searchRegion == null) {
+            framesSinceRefresh = 0;
+        } else {
+            framesSinceRefresh++;
+        }
+
+        if (targetBounds != null) {
+            tracking = true;
+            lastBounds = targetBounds;
+            lastHeading = heading;
+            misses = 0;
+        } else if (searchRegion == null || ++misses >= maxMisses) {
+            // There is no target anywhere, or it hasn't been seen for too long
+            tracking = false;
+        }
+    }
+
+    /**
+     * Gets whether a target is being tracked.
+     *
+     * @return true if only part of the image is being searched
+     */
+    public synchronized boolean isTracking() {
+        return tracking;
+    }
+}
@@ -0,0 +1,239 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+/**
+ * A rotation followed by a translation, stored as a 3x4 matrix in a primitive
+ * array. The methods that build the transform add a step to the end of it, so
+ * a chain of rotations and translations can be built once, in the same order
+ * they would be done to a point, and then applied to many points with a
+ * single matrix multiplication each. Nothing is allocated once the transform
+ * is created.
+ * <p>
+ * Transforms are mutable and not thread safe.
+ *
+ * @author Ben Wolsieffer
+ */
+public class RigidTransform {
+
+    /**
+     * The matrix, row by row. The first three columns are the rotation and
+     * the last column is the translation.
+     */
+    private final double[] m = new double[12];
+
+    /**
+     * Creates a transform that does nothing.
+     */
+    public RigidTransform() {
+        setIdentity();
+    }
+
+    /**
+     * Resets this transform so it does nothing.
+     *
+     * @return this transform
+     */
+    public RigidTransform setIdentity() {
+        for (int i = 0; i < 12; i++) {
+            m[i] = 0;
+        }
+        m[0] = 1;
+        m[5] = 1;
+        m[10] = 1;
+        return this;
+    }
+
+    /**
+     * Copies another transform into this one.
+     *
+     * @param other the transform to copy
+     * @return this transform
+     */
+    public RigidTransform set(RigidTransform other) {
+        System.arraycopy(other.m, 0, m, 0, 12);
+        return this;
+    }
+
+    /**
+     * Adds a translation to the end of this transform.
+     *
+     * @param x the x translation
+     * @param y the y translation
+     * @param z the z translation
+     * @return this transform
+     */
+    public RigidTransform translate(double x, double y, double z) {
+        m[3] += x;
+        m[7] += y;
+        m[11] += z;
+        return this;
+    }
+
+    /**
+     * Adds a rotation around the x axis to the end of this transform.
+     *
+     * @param angle the angle to rotate (in radians)
+     * @return this transform
+     */
+    public RigidTransform rotateX(double angle) {
+        rotateRows(1, 2, angle);
+        return this;
+    }
+
+    /**
+     * Adds a rotation around the y axis to the end of this transform.
+     *
+     * @param angle the angle to rotate (in radians)
+     * @return this transform
+     */
+    public RigidTransform rotateY(double angle) {
+        rotateRows(2, 0, angle);
+        return this;
+    }
+
+    /**
+     * Adds a rotation around the z axis to the end of this transform.
+     *
+     * @param angle the angle to rotate (in radians)
+     * @return this transform
+     */
+    public RigidTransform rotateZ(double angle) {
+        rotateRows(0, 1, angle);
+        return this;
+    }
+
+    /**
+     * Rotates two rows of the matrix, which is the same as multiplying it by
+     * a rotation around the third axis.
+     */
+    private void rotateRows(int a, int b, double angle) {
+        double c = Math.cos(angle);
+        double s = Math.sin(angle);
+        for (int col = 0; col < 4; col++) {
+            double va = m[a * 4 + col];
+            double vb = m[b * 4 + col];
+            m[a * 4 + col] = c * va - s * vb;
+            m[b * 4 + col] = s * va + c * vb;
+        }
+    }
+
+    /**
+     * Adds another transform to the end of this one.
+     *
+     * @param next the transform to do after this one
+     * @return this transform
+     */
+    public RigidTransform then(RigidTransform next) {
+        if (next == this) {
+            next = new RigidTransform().set(this);
+        }
+        double[] n = next.m;
+        // Each column of the result only depends on the same column of this
+        // matrix, so it can be done in place
+        for (int col = 0; col < 4; col++) {
+            double x = m[col];
+            double y = m[4 + col];
+            double z = m[8 + col];
+            double w = col == 3 ? 1 : 0;
+            m[col] = n[0] * x + n[1] * y + n[2] * z + n[3] * w;
+            m[4 + col] = n[4] * x + n[5] * y + n[6] * z + n[7] * w;
+            m[8 + col] = n[8] * x + n[9] * y + n[10] * z + n[11] * w;
+        }
+        return this;
+    }
+
+    /**
+     * Turns this transform into its inverse.
+     *
+     * @return this transform
+     */
+    public RigidTransform invert() {
+        // The inverse of a rotation is its transpose
+        swap(1, 4);
+        swap(2, 8);
+        swap(6, 9);
+        double x = m[3];
+        double y = m[7];
+        double z = m[11];
+        m[3] = -(m[0] * x + m[1] * y + m[2] * z);
+        m[7] = -(m[4] * x + m[5] * y + m[6] * z);
+        m[11] = -(m[8] * x + m[9] * y + m[10] * z);
+        return this;
+    }
+
+    private void swap(int i, int j) {
+        double tmp = m[i];
+        m[i] = m[j];
+        m[j] = tmp;
+    }
+
+    /**
+     * Gets an element of the matrix.
+     *
+     * @param row the row (0-2)
+     * @param col the column (0-3), column 3 is the translation
+     * @return the value
+     */
+    public double get(int row, int col) {
+        return m[row * 4 + col];
+    }
+
+    /**
+     * Transforms a point in place.
+     *
+     * @param point the point, as an {x, y, z} array
+     */
+    public void transform(double[] point) {
+        transform(point, 0, point, 0);
+    }
+
+    /**
+     * Transforms a point and stores the result in another array. The arrays
+     * can be the same.
+     *
+     * @param src the array containing the point
+     * @param srcOffset the index of the x coordinate in the source array
+     * @param dest the array to write the result to
+     * @param destOffset the index to write the x coordinate to
+     */
+    public void transform(double[] src, int srcOffset, double[] dest, int destOffset) {
+        double x = src[srcOffset];
+        double y = src[srcOffset + 1];
+        double z = src[srcOffset + 2];
+        dest[destOffset] = m[0] * x + m[1] * y + m[2] * z + m[3];
+        dest[destOffset + 1] = m[4] * x + m[5] * y + m[6] * z + m[7];
+        dest[destOffset + 2] = m[8] * x + m[9] * y + m[10] * z + m[11];
+    }
+
+    /**
+     * Transforms many points in place.
+     *
+     * @param points the points, packed as x, y, z triples
+     * @param offset the index of the first point's x coordinate
+     * @param count the number of points
+     */
+    public void transform(double[] points, int offset, int count) {
+        for (int i = offset, end = offset + count * 3; i < end; i += 3) {
+            transform(points, i, points, i);
+        }
+    }
+
+    /**
+     * Rotates a direction in place, without translating it.
+     *
+     * @param direction the direction, as an {x, y, z} array
+     */
+    public void rotate(double[] direction) {
+        double x = direction[0];
+        double y = direction[1];
+        double z = direction[2];
+        direction[0] = m[0] * x + m[1] * y + m[2] * z;
+        direction[1] = m[4] * x + m[5] * y + m[6] * z;
+        direction[2] = m[8] * x + m[9] * y + m[10] * z;
+    }
+}
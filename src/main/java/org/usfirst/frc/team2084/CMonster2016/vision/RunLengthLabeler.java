@@ -0,0 +1,329 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.Arrays;
+
+import org.opencv.core.Mat;
+
+/**
+ * Finds the blobs in a threshold image by splitting each row into runs of
+ * white pixels and joining runs that touch the runs in the row above. The
+ * high goal threshold is almost all black, so there are very few runs, and
+ * everything after the first pass over the image only looks at the runs.
+ * Pixels are connected to all eight of their neighbors, the same as
+ * {@code Imgproc.findContours()}.
+ * <p>
+ * For each blob, this finds its area, bounding box and moments, and the
+ * convex hull can be found from the ends of its runs. The buffers are reused
+ * between images, so each labeler should only be used by one thread.
+ *
+ * @author Ben Wolsieffer
+ */
+public class RunLengthLabeler {
+
+    private byte[] mask = new byte[0];
+
+    // Runs, in the order they were found
+    private int runCount;
+    private int[] runY = new int[256];
+    private int[] runStart = new int[256];
+    /**
+     * The pixel after the end of each run.
+     */
+    private int[] runEnd = new int[256];
+    /**
+     * Union-find parent of each run. The root is always the first run of the
+     * blob.
+     */
+    private int[] runParent = new int[256];
+
+    // Blobs
+    private int blobCount;
+    private int[] runBlob = new int[256];
+    private int[] blobRunOffsets = new int[65];
+    private int[] blobRunCursors = new int[64];
+    private int[] sortedRuns = new int[256];
+    private int[] blobArea = new int[64];
+    private int[] blobMinX = new int[64];
+    private int[] blobMinY = new int[64];
+    private int[] blobMaxX = new int[64];
+    private int[] blobMaxY = new int[64];
+    /**
+     * Raw moments m00, m10, m01, m20, m11 and m02 of each blob.
+     */
+    private double[] blobMoments = new double[64 * 6];
+
+    // Hull scratch space
+    private int[] hullPoints = new int[64];
+    private long[] hullKeys = new long[32];
+    private int[] hull = new int[128];
+
+    /**
+     * Finds the blobs in a threshold image.
+     *
+     * @param thresholdImage the 8 bit threshold image, which can be a submat
+     * @return the number of blobs
+     */
+    public int label(Mat thresholdImage) {
+        int width = thresholdImage.cols();
+        int height = thresholdImage.rows();
+        if (mask.length < width * height) {
+            mask = new byte[width * height];
+        }
+        thresholdImage.get(0, 0, mask);
+        return label(mask, width, height);
+    }
+
+    /**
+     * Finds the blobs in a mask, where any non-zero pixel is part of a blob.
+     *
+     * @param mask the pixels, row by row
+     * @param width the width of the mask
+     * @param height the height of the mask
+     * @return the number of blobs
+     */
+    public int label(byte[] mask, int width, int height) {
+        runCount = 0;
+        int previousFirst = 0;
+        int previousEnd = 0;
+        for (int y = 0; y < height; y++) {
+            int rowFirst = runCount;
+            int row = y * width;
+            int previous = previousFirst;
+            int x = 0;
+            while (x < width) {
+                if (mask[row + x] == 0) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < width && mask[row + x] != 0) {
+                    x++;
+                }
+                int run = addRun(y, start, x);
+
+                // Join all the runs above that touch this one, including
+                // diagonally. The previous run pointer doesn't move past a
+                // run that could also touch the next run in this row.
+                while (previous < previousEnd && runEnd[previous] < start) {
+                    previous++;
+                }
+                for (int above = previous; above < previousEnd && runStart[above] <= x; above++) {
+                    union(run, above);
+                }
+            }
+            previousFirst = rowFirst;
+            previousEnd = runCount;
+        }
+
+        findBlobs();
+        return blobCount;
+    }
+
+    private int addRun(int y, int start, int end) {
+        if (runCount == runY.length) {
+            int length = runCount * 2;
+            runY = Arrays.copyOf(runY, length);
+            runStart = Arrays.copyOf(runStart, length);
+            runEnd = Arrays.copyOf(runEnd, length);
+            runParent = Arrays.copyOf(runParent, length);
+            runBlob = new int[length];
+            sortedRuns = new int[length];
+        }
+        int run = runCount++;
+        runY[run] = y;
+        runStart[run] = start;
+        runEnd[run] = end;
+        runParent[run] = run;
+        return run;
+    }
+
+    private int find(int run) {
+        int root = run;
+        while (runParent[root] != root) {
+            root = runParent[root];
+        }
+        // Path compression
+        while (runParent[run] != root) {
+            int next = runParent[run];
+            runParent[run] = root;
+            run = next;
+        }
+        return root;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA < rootB) {
+            runParent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            runParent[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Numbers the blobs, calculates their statistics and sorts the runs by
+     * blob.
+     */
+    private void findBlobs() {
+        blobCount = 0;
+        // Roots come before the rest of the runs in their blob, so each blob
+        // is numbered when its root is reached
+        for (int run = 0; run < runCount; run++) {
+            int root = find(run);
+            if (root == run) {
+                if (blobCount == blobArea.length) {
+                    growBlobs();
+                }
+                int blob = blobCount++;
+                blobArea[blob] = 0;
+                blobMinX[blob] = Integer.MAX_VALUE;
+                blobMinY[blob] = runY[run];
+                blobMaxX[blob] = Integer.MIN_VALUE;
+                blobMaxY[blob] = runY[run];
+                Arrays.fill(blobMoments, blob * 6, blob * 6 + 6, 0);
+                blobRunCursors[blob] = 0;
+                runBlob[run] = blob;
+            } else {
+                runBlob[run] = runBlob[root];
+            }
+
+            int blob = runBlob[run];
+            int y = runY[run];
+            int start = runStart[run];
+            int last = runEnd[run] - 1;
+            int length = last - start + 1;
+
+            blobArea[blob] += length;
+            blobMinX[blob] = Math.min(blobMinX[blob], start);
+            blobMaxX[blob] = Math.max(blobMaxX[blob], last);
+            blobMaxY[blob] = y;
+
+            // Sums of x and x^2 over the run
+            double sumX = length * (start + last) / 2.0;
+            double sumX2 = sumOfSquares(last) - sumOfSquares(start - 1);
+            int m = blob * 6;
+            blobMoments[m] += length;
+            blobMoments[m + 1] += sumX;
+            blobMoments[m + 2] += (double) length * y;
+            blobMoments[m + 3] += sumX2;
+            blobMoments[m + 4] += sumX * y;
+            blobMoments[m + 5] += (double) length * y * y;
+
+            blobRunCursors[blob]++;
+        }
+
+        // Counting sort of the runs by blob, which keeps them in row order
+        blobRunOffsets[0] = 0;
+        for (int blob = 0; blob < blobCount; blob++) {
+            blobRunOffsets[blob + 1] = blobRunOffsets[blob] + blobRunCursors[blob];
+            blobRunCursors[blob] = blobRunOffsets[blob];
+        }
+        for (int run = 0; run < runCount; run++) {
+            sortedRuns[blobRunCursors[runBlob[run]]++] = run;
+        }
+    }
+
+    private static double sumOfSquares(int n) {
+        return n < 1 ? 0 : (double) n * (n + 1) * (2 * n + 1) / 6;
+    }
+
+    private void growBlobs() {
+        int length = blobArea.length * 2;
+        blobArea = Arrays.copyOf(blobArea, length);
+        blobMinX = Arrays.copyOf(blobMinX, length);
+        blobMinY = Arrays.copyOf(blobMinY, length);
+        blobMaxX = Arrays.copyOf(blobMaxX, length);
+        blobMaxY = Arrays.copyOf(blobMaxY, length);
+        blobMoments = Arrays.copyOf(blobMoments, length * 6);
+        blobRunOffsets = Arrays.copyOf(blobRunOffsets, length + 1);
+        blobRunCursors = Arrays.copyOf(blobRunCursors, length);
+    }
+
+    public int getBlobCount() {
+        return blobCount;
+    }
+
+    /**
+     * @param blob the index of the blob
+     * @return the number of pixels in the blob
+     */
+    public int getArea(int blob) {
+        return blobArea[blob];
+    }
+
+    public int getMinX(int blob) {
+        return blobMinX[blob];
+    }
+
+    public int getMinY(int blob) {
+        return blobMinY[blob];
+    }
+
+    public int getMaxX(int blob) {
+        return blobMaxX[blob];
+    }
+
+    public int getMaxY(int blob) {
+        return blobMaxY[blob];
+    }
+
+    /**
+     * Gets the raw moments of a blob, in the same order as OpenCV:
+     * {@code m00, m10, m01, m20, m11, m02}.
+     *
+     * @param blob the index of the blob
+     * @param moments the array to write the moments to
+     */
+    public void getMoments(int blob, double[] moments) {
+        System.arraycopy(blobMoments, blob * 6, moments, 0, 6);
+    }
+
+    public double getCenterX(int blob) {
+        return blobMoments[blob * 6 + 1] / blobMoments[blob * 6];
+    }
+
+    public double getCenterY(int blob) {
+        return blobMoments[blob * 6 + 2] / blobMoments[blob * 6];
+    }
+
+    /**
+     * Finds the convex hull of a blob. The hull of a blob is the same as the
+     * hull of the ends of its runs, so only those are looked at.
+     *
+     * @param blob the index of the blob
+     * @return the number of points in the hull, which can be read with
+     *         {@link #getHull()}
+     */
+    public int findHull(int blob) {
+        int first = blobRunOffsets[blob];
+        int runs = blobRunOffsets[blob + 1] - first;
+        int count = runs * 2;
+        if (hullPoints.length < count * 2) {
+            hullPoints = new int[count * 4];
+            hullKeys = new long[count * 2];
+            hull = new int[count * 8];
+        }
+        for (int i = 0; i < runs; i++) {
+            int run = sortedRuns[first + i];
+            hullPoints[i * 4] = runStart[run];
+            hullPoints[i * 4 + 1] = runY[run];
+            hullPoints[i * 4 + 2] = runEnd[run] - 1;
+            hullPoints[i * 4 + 3] = runY[run];
+        }
+        return ContourBuffer.convexHull(hullPoints, count, hullKeys, hull);
+    }
+
+    /**
+     * @return the points of the last hull that was found, as x, y pairs
+     */
+    public int[] getHull() {
+        return hull;
+    }
+}
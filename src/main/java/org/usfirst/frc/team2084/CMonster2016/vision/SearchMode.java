@@ -0,0 +1,24 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+/**
+ * How much of the image was searched for the high goal.
+ *
+ * @author Ben Wolsieffer
+ */
+public enum SearchMode {
+    /**
+     * The whole image was searched.
+     */
+    FULL,
+    /**
+     * Only the region around the last target was searched, as chosen by the
+     * {@link RegionTracker}.
+     */
+    REGION
+}
@@ -0,0 +1,110 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Runs the CPU version of the high goal threshold on several threads by
+ * splitting the image into horizontal stripes. Each stripe converts and blurs
+ * a few extra rows from its neighbors (the halo), so the result is the same as
+ * thresholding the whole image at once. The stripes write straight into the
+ * shared threshold and grayscale images.
+ *
+ * @author Ben Wolsieffer
+ */
+public class StripedThreshold {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Processes a range of stripes, splitting it in half until there is only
+     * one stripe left.
+     */
+    private static class StripeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Mat image;
+        private final Mat thresholdImage;
+        private final Mat grayImage;
+        private final int blurSize;
+        private final double[] min;
+        private final double[] max;
+        private final int stripes;
+        private final int firstStripe;
+        private final int lastStripe;
+
+        public StripeTask(Mat image, Mat thresholdImage, Mat grayImage, int blurSize, double[] min, double[] max,
+                int stripes, int firstStripe, int lastStripe) {
+            this.image = image;
+            this.thresholdImage = thresholdImage;
+            this.grayImage = grayImage;
+            this.blurSize = blurSize;
+            this.min = min;
+            this.max = max;
+            this.stripes = stripes;
+            this.firstStripe = firstStripe;
+            this.lastStripe = lastStripe;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastStripe - firstStripe == 1) {
+                int rows = image.rows();
+                int rowStart = firstStripe * rows / stripes;
+                int rowEnd = (firstStripe + 1) * rows / stripes;
+                HighGoalProcessor.processStripeNative(image.nativeObj, thresholdImage.nativeObj, grayImage.nativeObj,
+                        blurSize, rowStart, rowEnd, min[0], min[1], min[2], max[0], max[1], max[2]);
+            } else {
+                int middle = (firstStripe + lastStripe) / 2;
+                invokeAll(
+                        new StripeTask(image, thresholdImage, grayImage, blurSize, min, max, stripes, firstStripe,
+                                middle),
+                        new StripeTask(image, thresholdImage, grayImage, blurSize, min, max, stripes, middle,
+                                lastStripe));
+            }
+        }
+    }
+
+    /**
+     * Color converts, blurs and thresholds an image using the specified number
+     * of stripes. If there is only one stripe, this just calls the normal
+     * native code.
+     *
+     * @param image the BGR image to process
+     * @param thresholdImage the image to write the threshold to
+     * @param grayImage the image to write the grayscale version to
+     * @param blurSize the size of the gaussian blur, the kernel is
+     *        2 * blurSize + 1 pixels wide
+     * @param min the minimum HSV values
+     * @param max the maximum HSV values
+     * @param stripes the number of stripes to split the image into
+     */
+    public static void threshold(Mat image, Mat thresholdImage, Mat grayImage, int blurSize, double[] min,
+            double[] max, int stripes) {
+        stripes = Math.max(1, Math.min(stripes, image.rows()));
+        if (stripes == 1) {
+            HighGoalProcessor.processNative(image.nativeObj, thresholdImage.nativeObj, grayImage.nativeObj, blurSize,
+                    min[0], min[1], min[2], max[0], max[1], max[2]);
+        } else {
+            // The stripes write into these, so they can't be reallocated by the
+            // native code.
+            thresholdImage.create(image.size(), CvType.CV_8UC1);
+            grayImage.create(image.size(), CvType.CV_8UC1);
+
+            POOL.invoke(new StripeTask(image, thresholdImage, grayImage, blurSize, min, max, stripes, 0, stripes));
+        }
+    }
+
+    private StripedThreshold() {
+    }
+}
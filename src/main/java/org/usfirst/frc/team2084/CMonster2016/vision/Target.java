@@ -7,43 +7,28 @@
 package org.usfirst.frc.team2084.CMonster2016.vision;
 
 import static org.usfirst.frc.team2084.CMonster2016.vision.HighGoalProcessor.IMAGE_SIZE;
-import static org.usfirst.frc.team2084.CMonster2016.vision.Utils.ratioToScore;
-import static org.usfirst.frc.team2084.CMonster2016.vision.VisionParameters.*;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.util.Arrays;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
-import java.util.function.BooleanSupplier;
-import java.util.function.DoubleSupplier;
-
-import org.opencv.calib3d.Calib3d;
-import org.opencv.core.Core;
+
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfDouble;
 import org.opencv.core.MatOfPoint;
-import org.opencv.core.MatOfPoint2f;
 import org.opencv.core.MatOfPoint3f;
 import org.opencv.core.Point;
 import org.opencv.core.Point3;
-import org.opencv.core.RotatedRect;
+import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
-import org.opencv.core.Size;
-import org.opencv.core.TermCriteria;
 import org.opencv.imgproc.Imgproc;
-import org.opencv.imgproc.Moments;
 import org.usfirst.frc.team2084.CMonster2016.vision.Utils.Color;
 
 /**
- * An object that represents a potential target. It runs a number of tests to
- * determine if it could possibly be a goal and how well it matches. This class
- * and {@link HighGoalProcessor} are the most important parts of our vision
- * code.
+ * An object that represents a potential target, along with the results of the
+ * tests that determine if it could possibly be a goal and how well it matches.
+ * The tests are run by {@link TargetEvaluator}, targets themselves never
+ * change after they are created. This class and {@link HighGoalProcessor} are
+ * the most important parts of our vision code.
  *
  * @author Ben Wolsieffer
  */
@@ -64,13 +49,8 @@ public class Target implements Comparable<Target> {
             -0.010531884927443303,
             -0.004479451330784382,
             1.0088761872766687 };
-    private static final Mat CAMERA_MAT = matFrom2DArray(CAMERA_MATRIX);
-    private static final MatOfDouble DISTORTION_MAT = new MatOfDouble(DISTORTION_MATRIX);
-
-    /**
-     * Flips the y axis.
-     */
-    private static final MatOfDouble SIGN_NORMALIZATION_MATRIX = new MatOfDouble(1, -1, 1);
+    static final Mat CAMERA_MAT = matFrom2DArray(CAMERA_MATRIX);
+    static final MatOfDouble DISTORTION_MAT = new MatOfDouble(DISTORTION_MATRIX);
 
     public static final Scalar TARGET_COLOR = Color.GREEN;
     public static final Scalar VALID_TARGET_COLOR = Color.BLUE;
@@ -107,239 +87,128 @@ public class Target implements Comparable<Target> {
     public static final double MAX_X_ANGLE = Math.toRadians(60);
     public static final double MAX_Z_ANGLE = Math.toRadians(25);
 
-    private final MatOfPoint contour;
-
-    private MatOfPoint2f corners;
-
-    private static class Validator {
-
-        public final BooleanSupplier function;
-        public final String name;
-
-        public Validator(BooleanSupplier function, String name) {
-            this.function = function;
-            this.name = name;
-        }
+    /**
+     * Indices of the corners, in the order of {@link #OBJECT_POINTS}.
+     */
+    static final int TOP_LEFT = 0;
+    static final int TOP_RIGHT = 1;
+    static final int BOTTOM_LEFT = 2;
+    static final int BOTTOM_RIGHT = 3;
 
-    }
+    private final MatOfPoint contour;
 
     /**
-     * Easily modifiable array of validators for a target. They all have names
-     * so the user can see which test disqualified a target for debugging.
+     * The bounding box and corners are kept as primitives rather than a Rect
+     * and an array, so that the target is the only object allocated for each
+     * candidate.
      */
-    private Validator[] validators = {
-            new Validator(this::validateZAngle, "Z Angle"),
-            new Validator(this::validateXAngle, "X Angle"),
-            new Validator(this::validateDistance, "Distance"),
-            new Validator(this::validateAspectRatio, "Aspect Ratio"),
-            new Validator(this::validateRectangularityHeight, "Rectangularity Height"),
-            new Validator(this::validateRectangularityWidth, "Rectangularity Width") };
-    private DoubleSupplier[] scores = { this::scoreAngle };
+    private final int boundsX;
+    private final int boundsY;
+    private final int boundsWidth;
+    private final int boundsHeight;
+    private final double topLeftX;
+    private final double topLeftY;
+    private final double topRightX;
+    private final double topRightY;
+    private final double bottomLeftX;
+    private final double bottomLeftY;
+    private final double bottomRightX;
+    private final double bottomRightY;
 
     /**
      * The score of this target.
      */
-    private double score = -1;
+    private final double score;
 
     /**
      * Stores whether or not the target meets the minimum score requirements.
      */
-    private boolean valid = true;
-    private boolean validArea = true;
+    private final boolean valid;
 
-    private Point topLeft;
-    private Point topRight;
-    private Point bottomLeft;
-    private Point bottomRight;
+    /**
+     * Name of the validator that caused the target to be disqualified.
+     */
+    private final String failedValidator;
 
-    private Point center;
-    private Point3 position;
-    private MatOfDouble rotation = new MatOfDouble();
+    private final double centerX;
+    private final double centerY;
+    private final double positionX;
+    private final double positionY;
+    private final double positionZ;
+    private final double rotationX;
+    private final double rotationY;
+    private final double rotationZ;
 
-    private double widthTop;
-    private double widthBottom;
-    private double width;
-    private double heightLeft;
-    private double heightRight;
-    private double height;
+    private final double width;
+    private final double height;
 
-    private double area;
+    private final double area;
 
-    private double distance;
+    private final double distance;
 
-    private double xGoalAngle;
-    private double yGoalAngle;
+    private final double xGoalAngle;
+    private final double yGoalAngle;
 
     /**
-     * Creates a new possible target based on the specified blob and calculates
-     * its score.
+     * Creates a target from the results of a {@link TargetEvaluator}. Use
+     * {@link TargetEvaluator#evaluate(MatOfPoint, Mat)} to create targets.
      *
-     * @param p the shape of the possible target
+     * @param evaluator the evaluator that just evaluated the target
+     * @param contour the simplified contour of the target
      */
-    public Target(MatOfPoint contour, Mat grayImage) {
-        // Simplify contour to make the corner finding algorithm work better
-        MatOfPoint2f fContour = new MatOfPoint2f();
-        contour.convertTo(fContour, CvType.CV_32F);
-        Imgproc.approxPolyDP(fContour, fContour, VisionParameters.getGoalApproxPolyEpsilon(), true);
-        fContour.convertTo(contour, CvType.CV_32S);
-
+    Target(TargetEvaluator evaluator, MatOfPoint contour) {
         this.contour = contour;
-
-        // Check area, and don't do any calculations if it is not valid
-        if (validArea = validateArea()) {
-
-            // Find a bounding rectangle
-            RotatedRect rect = Imgproc.minAreaRect(fContour);
-
-            Point[] rectPoints = new Point[4];
-            rect.points(rectPoints);
-
-            for (int j = 0; j < rectPoints.length; j++) {
-                Point rectPoint = rectPoints[j];
-
-                double minDistance = Double.MAX_VALUE;
-                Point point = null;
-
-                for (int i = 0; i < contour.rows(); i++) {
-                    Point contourPoint = new Point(contour.get(i, 0));
-                    double dist = distance(rectPoint, contourPoint);
-                    if (dist < minDistance) {
-                        minDistance = dist;
-                        point = contourPoint;
-                    }
-                }
-
-                rectPoints[j] = point;
-            }
-            MatOfPoint2f rectMat = new MatOfPoint2f(rectPoints);
-            // Refine the corners to improve accuracy
-            Imgproc.cornerSubPix(grayImage, rectMat, new Size(4, 10), new Size(-1, -1),
-                    new TermCriteria(TermCriteria.EPS + TermCriteria.COUNT, 30, 0.1));
-            rectPoints = rectMat.toArray();
-
-            // Identify each corner
-            SortedMap<Double, List<Point>> x = new TreeMap<>();
-            Arrays.stream(rectPoints).forEach((p) -> {
-                List<Point> points;
-                if ((points = x.get(p.x)) == null) {
-                    x.put(p.x, points = new LinkedList<>());
-                }
-                points.add(p);
-            });
-
-            int i = 0;
-            for (Iterator<List<Point>> it = x.values().iterator(); it.hasNext();) {
-                List<Point> s = it.next();
-
-                for (Point p : s) {
-                    switch (i) {
-                    case 0:
-                        topLeft = p;
-                    break;
-                    case 1:
-                        bottomLeft = p;
-                    break;
-                    case 2:
-                        topRight = p;
-                    break;
-                    case 3:
-                        bottomRight = p;
-                    }
-                    i++;
-                }
-            }
-
-            // Organize corners
-            if (topLeft.y > bottomLeft.y) {
-                Point p = bottomLeft;
-                bottomLeft = topLeft;
-                topLeft = p;
-            }
-
-            if (topRight.y > bottomRight.y) {
-                Point p = bottomRight;
-                bottomRight = topRight;
-                topRight = p;
-            }
-
-            // Create corners for centroid calculation
-            corners = new MatOfPoint2f(rectPoints);
-
-            // Calculate center
-            Moments moments = Imgproc.moments(corners);
-            center = new Point(moments.m10 / moments.m00, moments.m01 / moments.m00);
-
-            // Put the points in the correct order for solvePNP
-            rectPoints[0] = topLeft;
-            rectPoints[1] = topRight;
-            rectPoints[2] = bottomLeft;
-            rectPoints[3] = bottomRight;
-            // Recreate corners in the new order
-            corners = new MatOfPoint2f(rectPoints);
-
-            widthTop = distance(topLeft, topRight);
-            widthBottom = distance(bottomLeft, bottomRight);
-            width = (widthTop + widthBottom) / 2.0;
-            heightLeft = distance(topLeft, bottomLeft);
-            heightRight = distance(topRight, bottomRight);
-            height = (heightLeft + heightRight) / 2.0;
-
-            Mat tvec = new Mat();
-
-            // Calculate target's location
-            Calib3d.solvePnP(OBJECT_POINTS, corners, CAMERA_MAT, DISTORTION_MAT, rotation, tvec, false, Calib3d.CV_P3P);
-
-            // =======================================
-            // Position and Orientation Transformation
-            // =======================================
-
-            double armAngle = VisionResults.getArmAngle();
-
-            // Flip y axis to point upward
-            Core.multiply(tvec, SIGN_NORMALIZATION_MATRIX, tvec);
-
-            // Shift origin to arm pivot point, on the robot's centerline
-            CoordinateMath.translate(tvec, CAMERA_X_OFFSET, CAMERA_Y_OFFSET, ARM_LENGTH);
-
-            // Align axes with ground
-            CoordinateMath.rotateX(tvec, -armAngle);
-            Core.add(rotation, new MatOfDouble(armAngle, 0, 0), rotation);
-
-            // Shift origin to robot center of rotation
-            CoordinateMath.translate(tvec, 0, ARM_PIVOT_Y_OFFSET, -ARM_PIVOT_Z_OFFSET);
-
-            double xPosFeet = tvec.get(0, 0)[0];
-            double yPosFeet = tvec.get(1, 0)[0];
-            double zPosFeet = tvec.get(2, 0)[0];
-
-            // Old less effective aiming heading and distance calculation
-            // double pixelsToFeet = TARGET_WIDTH / width;
-
-            // distance = (TARGET_WIDTH * HighGoalProcessor.IMAGE_SIZE.width
-            // / (2 * width ** Math.tan(VisionParameters.getFOVAngle() / 2)));
-            // double xPosFeet = (center.x - (HighGoalProcessor.IMAGE_SIZE.width
-            // / 2)) * pixelsToFeet;
-            // double yPosFeet = -(center.y -
-            // (HighGoalProcessor.IMAGE_SIZE.height / 2)) * pixelsToFeet;
-
-            distance = Math.sqrt(xPosFeet * xPosFeet + zPosFeet * zPosFeet);
-
-            position = new Point3(xPosFeet, yPosFeet, zPosFeet);
-
-            xGoalAngle = Math.atan(xPosFeet / zPosFeet);
-            yGoalAngle = Math.atan(yPosFeet / zPosFeet);
-
-            validate();
-            score = calculateScore();
-        } else {
-            valid = false;
-        }
+        boundsX = evaluator.boundsX;
+        boundsY = evaluator.boundsY;
+        boundsWidth = evaluator.boundsWidth;
+        boundsHeight = evaluator.boundsHeight;
+        double[] corners = evaluator.corners;
+        topLeftX = corners[TOP_LEFT * 2];
+        topLeftY = corners[TOP_LEFT * 2 + 1];
+        topRightX = corners[TOP_RIGHT * 2];
+        topRightY = corners[TOP_RIGHT * 2 + 1];
+        bottomLeftX = corners[BOTTOM_LEFT * 2];
+        bottomLeftY = corners[BOTTOM_LEFT * 2 + 1];
+        bottomRightX = corners[BOTTOM_RIGHT * 2];
+        bottomRightY = corners[BOTTOM_RIGHT * 2 + 1];
+        score = evaluator.score;
+        valid = evaluator.valid;
+        failedValidator = evaluator.failedValidator;
+        centerX = evaluator.centerX;
+        centerY = evaluator.centerY;
+        positionX = evaluator.position[0];
+        positionY = evaluator.position[1];
+        positionZ = evaluator.position[2];
+        rotationX = evaluator.rotation[0];
+        rotationY = evaluator.rotation[1];
+        rotationZ = evaluator.rotation[2];
+        width = evaluator.width;
+        height = evaluator.height;
+        area = evaluator.area;
+        distance = evaluator.distance;
+        xGoalAngle = evaluator.xGoalAngle;
+        yGoalAngle = evaluator.yGoalAngle;
     }
 
-    private static double distance(Point p1, Point p2) {
-        double x = p1.x - p2.x;
-        double y = p1.y - p2.y;
-        return Math.sqrt(x * x + y * y);
+    /**
+     * Gets one of the corners, in the order of {@link #OBJECT_POINTS}.
+     *
+     * @param corner the index of the corner
+     * @return the corner in image coordinates
+     */
+    Point getCorner(int corner) {
+        switch (corner) {
+        case TOP_LEFT:
+            return new Point(topLeftX, topLeftY);
+        case TOP_RIGHT:
+            return new Point(topRightX, topRightY);
+        case BOTTOM_LEFT:
+            return new Point(bottomLeftX, bottomLeftY);
+        case BOTTOM_RIGHT:
+            return new Point(bottomRightX, bottomRightY);
+        default:
+            throw new IndexOutOfBoundsException("Invalid corner: " + corner);
+        }
     }
 
     /**
@@ -369,6 +238,12 @@ public class Target implements Comparable<Target> {
             drawColor = TARGET_COLOR;
         }
 
+        Point topLeft = getCorner(TOP_LEFT);
+        Point topRight = getCorner(TOP_RIGHT);
+        Point bottomLeft = getCorner(BOTTOM_LEFT);
+        Point bottomRight = getCorner(BOTTOM_RIGHT);
+        Point center = new Point(centerX, centerY);
+
         Imgproc.line(image, topLeft, topRight, drawColor, DRAW_THICKNESS);
         Imgproc.line(image, topRight, bottomRight, drawColor, DRAW_THICKNESS);
         Imgproc.line(image, bottomRight, bottomLeft, drawColor, DRAW_THICKNESS);
@@ -386,15 +261,15 @@ public class Target implements Comparable<Target> {
             Utils.drawText(image, " rotation: " + NUMBER_FORMAT.format(Math.toDegrees(xGoalAngle)) + " deg", 0,
                     IMAGE_SIZE.height - 85);
             Utils.drawText(image, "distance: " + NUMBER_FORMAT.format(distance) + " ft", 0, IMAGE_SIZE.height - 65);
-            Utils.drawText(image, "        x: " + NUMBER_FORMAT.format(position.x) + " ft", 0, IMAGE_SIZE.height - 45);
-            Utils.drawText(image, "        y: " + NUMBER_FORMAT.format(position.y) + " ft", 0, IMAGE_SIZE.height - 25);
-            Utils.drawText(image, "        z: " + NUMBER_FORMAT.format(position.z) + " ft", 0, IMAGE_SIZE.height - 5);
+            Utils.drawText(image, "        x: " + NUMBER_FORMAT.format(positionX) + " ft", 0, IMAGE_SIZE.height - 45);
+            Utils.drawText(image, "        y: " + NUMBER_FORMAT.format(positionY) + " ft", 0, IMAGE_SIZE.height - 25);
+            Utils.drawText(image, "        z: " + NUMBER_FORMAT.format(positionZ) + " ft", 0, IMAGE_SIZE.height - 5);
 
             double textX = IMAGE_SIZE.width - 250;
 
-            double angleX = Math.toDegrees(rotation.get(0, 0)[0]);
-            double angleY = Math.toDegrees(rotation.get(1, 0)[0]);
-            double angleZ = Math.toDegrees(rotation.get(2, 0)[0]);
+            double angleX = Math.toDegrees(rotationX);
+            double angleY = Math.toDegrees(rotationY);
+            double angleZ = Math.toDegrees(rotationZ);
 
             Utils.drawText(image, "heading: " + NUMBER_FORMAT.format(Math.toDegrees(imageHeading)) + " deg", textX,
                     IMAGE_SIZE.height - 65);
@@ -405,149 +280,44 @@ public class Target implements Comparable<Target> {
 
     }
 
-    /**
-     * Name of the validator that caused the target to be disqualified.
-     */
-    private String failedValidator = "";
-
-    private boolean validate() {
-        for (Validator validator : validators) {
-            if (!validator.function.getAsBoolean()) {
-                failedValidator = validator.name;
-                return valid = false;
-            }
-        }
-        return valid = true;
-    }
-
     public String getFailedValidator() {
         return failedValidator;
     }
 
-    private boolean validateArea() {
-        return (area = Imgproc.contourArea(contour)) > VisionParameters.getGoalMinBlobArea();
-    }
-
-    private boolean validateXAngle() {
-        return Math.abs(rotation.get(0, 0)[0]) < MAX_X_ANGLE;
+    public MatOfPoint getContour() {
+        return contour;
     }
 
     /**
-     * This isn't reliable enough to use.
+     * @return a new copy of the upright bounding box of the contour
      */
-    private boolean validateYAngle() {
-        return Math.abs(rotation.get(1, 0)[0]) < MAX_X_ANGLE;
-    }
-
-    private boolean validateZAngle() {
-        return Math.abs(rotation.get(2, 0)[0]) < MAX_Z_ANGLE;
+    public Rect getBoundingRect() {
+        return new Rect(boundsX, boundsY, boundsWidth, boundsHeight);
     }
 
-    private boolean validateDistance() {
-        return distance < 30 && distance > 2;
+    public boolean isValid() {
+        return valid;
     }
 
     /**
-     * Calculates this target's score. If the target is not valid, it returns 0.
-     * This is called in the constructor.
-     *
-     * @return this target's score
+     * @return the area
      */
-    private double calculateScore() {
-        double totalScore = 0;
-        for (DoubleSupplier score : scores) {
-            double scoreVal = score.getAsDouble();
-            if (!Double.isFinite(scoreVal)) {
-                valid = false;
-                return Double.NaN;
-            } else {
-                totalScore += scoreVal;
-            }
-        }
-        totalScore /= scores.length;
-
-        return totalScore;
+    public double getArea() {
+        return area;
     }
 
     /**
-     * Calculate the aspect ratio score for this target. This is calculated by
-     * dividing the target's ratio by the target's ideal ratio. This ratio is
-     * converted to a score using {@link Utils#ratioToScore(double)}.
-     *
-     * @return this target's rectangularity score
+     * @return the average width in pixels
      */
-    private double scoreAspectRatio() {
-        double ratio = width / height;
-        double ideal = TARGET_ASPECT_RATIO;
-        double lScore = ratioToScore(ratio / ideal);
-        if (lScore < getGoalMinAspectRatioScore()) {
-            lScore = Double.NaN;
-        }
-
-        return lScore;
-    }
-
-    private boolean validateAspectRatio() {
-        return Double.isFinite(scoreAspectRatio());
-    }
-
-    private double scoreRectangularityWidth() {
-        double lScore = ratioToScore(widthTop / widthBottom);
-
-        if (lScore < getGoalMinRectangularityWidthScore()) {
-            lScore = Double.NaN;
-        }
-        return lScore;
-    }
-
-    private boolean validateRectangularityWidth() {
-        return Double.isFinite(scoreRectangularityWidth());
-    }
-
-    private double scoreRectangularityHeight() {
-        double lScore = ratioToScore(heightLeft / heightRight);
-
-        if (lScore < getGoalMinRectangularityHeightScore()) {
-            lScore = Double.NaN;
-        }
-        return lScore;
-    }
-
-    private boolean validateRectangularityHeight() {
-        return Double.isFinite(scoreRectangularityHeight());
-    }
-
-    private double scoreSkew() {
-        double horizontalWidth = topRight.x - topRight.x;
-        if (horizontalWidth != 0) {
-            double angle = Math.atan((topLeft.y - topRight.y) / horizontalWidth);
-            return ratioToScore((angle / (Math.PI / 2)) + 1);
-        } else {
-            return 0;
-        }
-    }
-
-    private double scoreAngle() {
-        return 3 - Math.abs(xGoalAngle);
-    }
-
-    public MatOfPoint getContour() {
-        return contour;
-    }
-
-    public boolean isValid() {
-        return valid;
-    }
-
-    public boolean isAreaValid() {
-        return validArea;
+    public double getWidth() {
+        return width;
     }
 
     /**
-     * @return the area
+     * @return the average height in pixels
      */
-    public double getArea() {
-        return area;
+    public double getHeight() {
+        return height;
     }
 
     /**
@@ -571,9 +341,16 @@ public class Target implements Comparable<Target> {
         return yGoalAngle;
     }
 
+    /**
+     * Compares targets by score. Targets without a real score are lower than
+     * all the others.
+     */
     @Override
     public int compareTo(Target o) {
-        if (score < o.score) {
+        boolean hasScore = !Double.isNaN(score);
+        if (hasScore != !Double.isNaN(o.score)) {
+            return hasScore ? 1 : -1;
+        } else if (score < o.score) {
             return -1;
         } else if (score > o.score) {
             return 1;
@@ -0,0 +1,735 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.usfirst.frc.team2084.CMonster2016.vision.Target.*;
+import static org.usfirst.frc.team2084.CMonster2016.vision.Utils.ratioToScore;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Turns contours into {@link Target}s. All of the intermediate values are
+ * kept in primitive arrays and Mats that belong to the evaluator, so once it
+ * has warmed up, candidates that fail a {@link Prefilter} allocate nothing,
+ * and the only object allocated for the rest is the finished {@link Target}.
+ * Targets are not reused, because the newest ones are drawn by the streaming
+ * thread while the next frame is being evaluated. Evaluators are not thread
+ * safe, so each thread gets its own from {@link #get()}.
+ *
+ * @author Ben Wolsieffer
+ */
+public class TargetEvaluator {
+
+    private static final ThreadLocal<TargetEvaluator> EVALUATORS = ThreadLocal.withInitial(TargetEvaluator::new);
+
+    /**
+     * Gets the evaluator for the current thread.
+     *
+     * @return the evaluator
+     */
+    public static TargetEvaluator get() {
+        return EVALUATORS.get();
+    }
+
+    /**
+     * A test that a target must pass to be valid. Validators don't have any
+     * state of their own, they just look at the values the evaluator
+     * calculated, so the same ones are shared by every evaluator. Each one
+     * keeps track of how often it rejects a target and how long it takes, so
+     * that they can be run in the best order.
+     */
+    public static class Validator {
+
+        private final String name;
+        private final Predicate<TargetEvaluator> test;
+
+        private final LongAdder tests = new LongAdder();
+        private final LongAdder rejections = new LongAdder();
+        private final LongAdder timedTests = new LongAdder();
+        private final LongAdder timedNanos = new LongAdder();
+
+        Validator(String name, Predicate<TargetEvaluator> test) {
+            this.name = name;
+            this.test = test;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        boolean test(TargetEvaluator evaluator) {
+            return test.test(evaluator);
+        }
+
+        /**
+         * Records the result of running this validator.
+         *
+         * @param passed whether the target passed
+         * @param nanos how long the test took, or a negative number if it
+         *        wasn't timed
+         */
+        void record(boolean passed, long nanos) {
+            tests.increment();
+            if (!passed) {
+                rejections.increment();
+            }
+            if (nanos >= 0) {
+                timedTests.increment();
+                timedNanos.add(nanos);
+            }
+        }
+
+        /**
+         * @return the number of targets this validator has tested
+         */
+        public long getTestCount() {
+            return tests.sum();
+        }
+
+        /**
+         * @return the number of targets this validator has rejected
+         */
+        public long getRejectionCount() {
+            return rejections.sum();
+        }
+
+        /**
+         * Gets the fraction of the targets this validator tested that it
+         * rejected. Targets rejected by an earlier validator are not
+         * counted.
+         *
+         * @return the rejection rate, or 0 if nothing has been tested
+         */
+        public double getRejectionRate() {
+            long count = tests.sum();
+            return count == 0 ? 0 : (double) rejections.sum() / count;
+        }
+
+        /**
+         * @return the average time this validator takes, in nanoseconds, or 0
+         *         if it hasn't been timed
+         */
+        public double getAverageNanos() {
+            long count = timedTests.sum();
+            return count == 0 ? 0 : (double) timedNanos.sum() / count;
+        }
+
+        /**
+         * Gets the expected cost of running this validator for each target
+         * it rejects. Running the validators in order of this value makes
+         * the expected cost of the whole chain the lowest.
+         */
+        double getRank() {
+            return getAverageNanos() / Math.max(getRejectionRate(), MIN_REJECTION_RATE);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d/%d rejected, %.0f ns", name, getRejectionCount(), getTestCount(),
+                    getAverageNanos());
+        }
+    }
+
+    /**
+     * Easily modifiable array of validators for a target. They all have names
+     * so the user can see which test disqualified a target for debugging.
+     * This is the order they start out in, but they are reordered as the
+     * program runs, so if a target fails more than one, which one is reported
+     * can change.
+     */
+    static final Validator[] VALIDATORS = {
+            new Validator("Z Angle", (e) -> Math.abs(e.rotation[2]) < MAX_Z_ANGLE),
+            new Validator("X Angle", (e) -> Math.abs(e.rotation[0]) < MAX_X_ANGLE),
+            new Validator("Distance", (e) -> e.distance < 30 && e.distance > 2),
+            new Validator("Aspect Ratio",
+                    (e) -> ratioToScore((e.width / e.height) / TARGET_ASPECT_RATIO) >= e.minAspectRatioScore),
+            new Validator("Rectangularity Height",
+                    (e) -> ratioToScore(e.heightLeft / e.heightRight) >= e.minRectangularityHeightScore),
+            new Validator("Rectangularity Width",
+                    (e) -> ratioToScore(e.widthTop / e.widthBottom) >= e.minRectangularityWidthScore) };
+
+    /**
+     * Validators that have never rejected anything are treated as if they
+     * reject this fraction of targets, so they still get sorted by cost.
+     */
+    private static final double MIN_REJECTION_RATE = 0.001;
+
+    /**
+     * Only one in this many validations is timed, because reading the clock
+     * costs about as much as the validators themselves.
+     */
+    private static final int TIMING_INTERVAL = 16;
+
+    /**
+     * Number of validations each evaluator does between reorderings.
+     */
+    private static final int REORDER_INTERVAL = 1024;
+
+    private static volatile Validator[] validatorOrder = VALIDATORS.clone();
+
+    /**
+     * Gets the validators in the order they are currently run.
+     *
+     * @return a copy of the validator order
+     */
+    public static Validator[] getValidatorOrder() {
+        return validatorOrder.clone();
+    }
+
+    /**
+     * Sorts the validators using the statistics they have collected so far.
+     */
+    public static synchronized void reorderValidators() {
+        Validator[] order = validatorOrder.clone();
+        sortByRank(order);
+        validatorOrder = order;
+    }
+
+    /**
+     * Sorts validators so the ones with the lowest cost per rejection come
+     * first. The ranks are read once before sorting, since other threads can
+     * be updating them.
+     */
+    static void sortByRank(Validator[] validators) {
+        double[] ranks = new double[validators.length];
+        for (int i = 0; i < validators.length; i++) {
+            ranks[i] = validators[i].getRank();
+        }
+        // Insertion sort, which keeps the order of validators with the same
+        // rank
+        for (int i = 1; i < validators.length; i++) {
+            Validator validator = validators[i];
+            double rank = ranks[i];
+            int j = i;
+            while (j > 0 && ranks[j - 1] > rank) {
+                validators[j] = validators[j - 1];
+                ranks[j] = ranks[j - 1];
+                j--;
+            }
+            validators[j] = validator;
+            ranks[j] = rank;
+        }
+    }
+
+    /**
+     * The cheap tests that a blob has to pass before the expensive corner
+     * refinement and pose estimation are done, in the order they are run.
+     * Blobs that fail one of these are thrown away instead of becoming
+     * invalid {@link Target}s.
+     */
+    public enum Prefilter {
+        /**
+         * The area of the simplified hull is too small.
+         */
+        AREA,
+        /**
+         * The simplified hull has too few or too many corners to be a
+         * rectangle seen at an angle.
+         */
+        VERTEX_COUNT,
+        /**
+         * The bounding box is too tall or too wide.
+         */
+        ASPECT_RATIO,
+        /**
+         * The hull fills too little of its bounding box.
+         */
+        FILL_RATIO;
+    }
+
+    private static final Size CORNER_WINDOW_SIZE = new Size(4, 10);
+    private static final Size CORNER_ZERO_ZONE = new Size(-1, -1);
+    private static final TermCriteria CORNER_CRITERIA =
+            new TermCriteria(TermCriteria.EPS + TermCriteria.COUNT, 30, 0.1);
+
+    // Parameters, read once per frame
+    private double approxPolyEpsilon;
+    private double minBlobArea;
+    private int minVertices;
+    private int maxVertices;
+    private double minBoundingAspectRatio;
+    private double maxBoundingAspectRatio;
+    private double minFillRatio;
+    private double minAspectRatioScore;
+    private double minRectangularityWidthScore;
+    private double minRectangularityHeightScore;
+    private double armAngle;
+    private PoseEngine poseEngine;
+
+    private int validations = 0;
+
+    // Counts of what the prefilters did, for this evaluator only
+    private final long[] prefilterRejections = new long[Prefilter.values().length];
+    private long prefilterPasses = 0;
+
+    // Preallocated images
+    private final MatOfPoint2f floatContour = new MatOfPoint2f();
+    private final MatOfPoint2f approxContour = new MatOfPoint2f();
+    private final MatOfPoint2f cornersMat = new MatOfPoint2f();
+    private final Mat rvec = new Mat();
+    private final Mat tvec = new Mat();
+
+    /**
+     * Moves a point from camera coordinates (with the y axis pointing up) to
+     * robot coordinates. This depends on the arm angle, so it is rebuilt for
+     * every frame.
+     */
+    private final RigidTransform cameraToRobot = new RigidTransform();
+
+    private final PlanarPoseSolver poseSolver =
+            new PlanarPoseSolver(CAMERA_MATRIX, DISTORTION_MATRIX, TARGET_WIDTH, TARGET_HEIGHT);
+
+    // Scratch arrays
+    private int[] contourPoints = new int[64];
+    private float[] approxPoints = new float[64];
+    private final double[] rectPoints = new double[8];
+    private final float[] cornerPoints = new float[8];
+    private final int[] cornerOrder = new int[4];
+    private final double[] vector = new double[3];
+
+    // Results for the current candidate
+    final double[] corners = new double[8];
+    final double[] position = new double[3];
+    final double[] rotation = new double[3];
+    int boundsX;
+    int boundsY;
+    int boundsWidth;
+    int boundsHeight;
+    double centerX;
+    double centerY;
+    double area;
+    double widthTop;
+    double widthBottom;
+    double width;
+    double heightLeft;
+    double heightRight;
+    double height;
+    double distance;
+    double xGoalAngle;
+    double yGoalAngle;
+    double score;
+    boolean valid;
+    String failedValidator;
+
+    /**
+     * Creates an evaluator. Outside of tests, use {@link #get()} instead.
+     */
+    TargetEvaluator() {
+        cornersMat.alloc(4);
+    }
+
+    /**
+     * Reads the parameters that are used for every candidate. This should be
+     * called once for each frame, before any candidates are evaluated.
+     */
+    public void updateParameters() {
+        approxPolyEpsilon = VisionParameters.getGoalApproxPolyEpsilon();
+        minBlobArea = VisionParameters.getGoalMinBlobArea();
+        minVertices = VisionParameters.getGoalMinVertices();
+        maxVertices = VisionParameters.getGoalMaxVertices();
+        minBoundingAspectRatio = VisionParameters.getGoalMinBoundingAspectRatio();
+        maxBoundingAspectRatio = VisionParameters.getGoalMaxBoundingAspectRatio();
+        minFillRatio = VisionParameters.getGoalMinFillRatio();
+        minAspectRatioScore = VisionParameters.getGoalMinAspectRatioScore();
+        minRectangularityWidthScore = VisionParameters.getGoalMinRectangularityWidthScore();
+        minRectangularityHeightScore = VisionParameters.getGoalMinRectangularityHeightScore();
+        armAngle = VisionResults.getArmAngle();
+        cameraToRobot.setIdentity()
+                // Shift origin to arm pivot point, on the robot's centerline
+                .translate(CAMERA_X_OFFSET, CAMERA_Y_OFFSET, ARM_LENGTH)
+                // Align axes with ground
+                .rotateX(-armAngle)
+                // Shift origin to robot center of rotation
+                .translate(0, ARM_PIVOT_Y_OFFSET, -ARM_PIVOT_Z_OFFSET);
+        poseEngine = VisionParameters.getGoalPoseEngine();
+    }
+
+    /**
+     * Copies the parameters from another evaluator instead of reading them
+     * again, so that all the candidates in a frame are evaluated the same way
+     * even if they are split between threads.
+     *
+     * @param other the evaluator that {@link #updateParameters()} was called
+     *        on
+     */
+    public void copyParameters(TargetEvaluator other) {
+        if (other == this) {
+            return;
+        }
+        approxPolyEpsilon = other.approxPolyEpsilon;
+        minBlobArea = other.minBlobArea;
+        minVertices = other.minVertices;
+        maxVertices = other.maxVertices;
+        minBoundingAspectRatio = other.minBoundingAspectRatio;
+        maxBoundingAspectRatio = other.maxBoundingAspectRatio;
+        minFillRatio = other.minFillRatio;
+        minAspectRatioScore = other.minAspectRatioScore;
+        minRectangularityWidthScore = other.minRectangularityWidthScore;
+        minRectangularityHeightScore = other.minRectangularityHeightScore;
+        armAngle = other.armAngle;
+        poseEngine = other.poseEngine;
+        cameraToRobot.set(other.cameraToRobot);
+    }
+
+    /**
+     * Sets the {@link Prefilter} parameters directly instead of reading them
+     * from NetworkTables. This is used by the tests.
+     */
+    void setPrefilterParameters(double minBlobArea, int minVertices, int maxVertices, double minBoundingAspectRatio,
+            double maxBoundingAspectRatio, double minFillRatio) {
+        this.minBlobArea = minBlobArea;
+        this.minVertices = minVertices;
+        this.maxVertices = maxVertices;
+        this.minBoundingAspectRatio = minBoundingAspectRatio;
+        this.maxBoundingAspectRatio = maxBoundingAspectRatio;
+        this.minFillRatio = minFillRatio;
+    }
+
+    /**
+     * Evaluates a possible target. The contour is simplified in place.
+     *
+     * @param contour the convex hull of the blob
+     * @param grayImage the grayscale image used to refine the corners
+     * @return the target, or null if it failed one of the {@link Prefilter}s
+     */
+    public Target evaluate(MatOfPoint contour, Mat grayImage) {
+        // Simplify contour to make the corner finding algorithm work better
+        contour.convertTo(floatContour, CvType.CV_32F);
+        Imgproc.approxPolyDP(floatContour, approxContour, approxPolyEpsilon, true);
+        approxContour.convertTo(contour, CvType.CV_32S);
+
+        // Check area, and don't do any calculations if it is not valid
+        area = Imgproc.contourArea(contour);
+        if (area <= minBlobArea) {
+            return reject(Prefilter.AREA);
+        }
+
+        int pointCount = (int) approxContour.total();
+        if (pointCount < minVertices || pointCount > maxVertices) {
+            return reject(Prefilter.VERTEX_COUNT);
+        }
+
+        if (approxPoints.length < pointCount * 2) {
+            approxPoints = new float[pointCount * 4];
+            contourPoints = new int[pointCount * 4];
+        }
+        approxContour.get(0, 0, approxPoints);
+        contour.get(0, 0, contourPoints);
+
+        findBounds(pointCount);
+        double boundingAspectRatio = (double) boundsWidth / boundsHeight;
+        if (!(boundingAspectRatio >= minBoundingAspectRatio && boundingAspectRatio <= maxBoundingAspectRatio)) {
+            return reject(Prefilter.ASPECT_RATIO);
+        }
+        if (area / ((double) boundsWidth * boundsHeight) < minFillRatio) {
+            return reject(Prefilter.FILL_RATIO);
+        }
+        prefilterPasses++;
+
+        // Find a bounding rectangle, then use the contour points closest to
+        // its corners
+        minAreaRect(approxPoints, pointCount, rectPoints);
+        for (int j = 0; j < 4; j++) {
+            double rx = rectPoints[j * 2];
+            double ry = rectPoints[j * 2 + 1];
+
+            int nearest = ContourBuffer.nearest(contourPoints, pointCount, rx, ry);
+            cornerPoints[j * 2] = contourPoints[nearest * 2];
+            cornerPoints[j * 2 + 1] = contourPoints[nearest * 2 + 1];
+        }
+
+        // Refine the corners to improve accuracy
+        cornersMat.put(0, 0, cornerPoints);
+        Imgproc.cornerSubPix(grayImage, cornersMat, CORNER_WINDOW_SIZE, CORNER_ZERO_ZONE, CORNER_CRITERIA);
+        cornersMat.get(0, 0, cornerPoints);
+
+        // The corners are still in order around the rectangle, so this is a
+        // good time to find the center
+        polygonCentroid(cornerPoints);
+
+        identifyCorners();
+
+        widthTop = distance(corners, TOP_LEFT, TOP_RIGHT);
+        widthBottom = distance(corners, BOTTOM_LEFT, BOTTOM_RIGHT);
+        width = (widthTop + widthBottom) / 2.0;
+        heightLeft = distance(corners, TOP_LEFT, BOTTOM_LEFT);
+        heightRight = distance(corners, TOP_RIGHT, BOTTOM_RIGHT);
+        height = (heightLeft + heightRight) / 2.0;
+
+        // Calculate target's location, with the corners in the same order as
+        // the object points. Fall back to OpenCV if the planar solver fails.
+        if (poseEngine != PoseEngine.PLANAR || !poseSolver.solve(corners, rotation, vector)) {
+            for (int i = 0; i < 8; i++) {
+                cornerPoints[i] = (float) corners[i];
+            }
+            cornersMat.put(0, 0, cornerPoints);
+            Calib3d.solvePnP(OBJECT_POINTS, cornersMat, CAMERA_MAT, DISTORTION_MAT, rvec, tvec, false,
+                    Calib3d.CV_P3P);
+            rvec.get(0, 0, rotation);
+            tvec.get(0, 0, vector);
+        }
+
+        // =======================================
+        // Position and Orientation Transformation
+        // =======================================
+
+        // Flip y axis to point upward
+        vector[1] = -vector[1];
+
+        // Move into robot coordinates
+        cameraToRobot.transform(vector);
+        rotation[0] += armAngle;
+
+        double xPosFeet = vector[0];
+        double yPosFeet = vector[1];
+        double zPosFeet = vector[2];
+
+        distance = Math.sqrt(xPosFeet * xPosFeet + zPosFeet * zPosFeet);
+
+        position[0] = xPosFeet;
+        position[1] = yPosFeet;
+        position[2] = zPosFeet;
+
+        xGoalAngle = Math.atan(xPosFeet / zPosFeet);
+        yGoalAngle = Math.atan(yPosFeet / zPosFeet);
+
+        validate();
+        score = calculateScore();
+
+        return new Target(this, contour);
+    }
+
+    /**
+     * Counts blobs that were thrown away for being too small before they got
+     * to the evaluator, for example by the native hull finder.
+     *
+     * @param count the number of blobs
+     */
+    void countAreaRejections(int count) {
+        prefilterRejections[Prefilter.AREA.ordinal()] += count;
+    }
+
+    private Target reject(Prefilter prefilter) {
+        prefilterRejections[prefilter.ordinal()]++;
+        return null;
+    }
+
+    /**
+     * Gets the number of blobs rejected by a prefilter since this evaluator
+     * was created. Like the rest of the evaluator, this should only be called
+     * from the thread that uses it.
+     *
+     * @param prefilter the prefilter
+     * @return the number of rejections
+     */
+    public long getRejectionCount(Prefilter prefilter) {
+        return prefilterRejections[prefilter.ordinal()];
+    }
+
+    /**
+     * Gets the number of blobs that passed all of the {@link Prefilter}s
+     * since this evaluator was created.
+     *
+     * @return the number of blobs that were fully evaluated
+     */
+    public long getPrefilterPassCount() {
+        return prefilterPasses;
+    }
+
+    /**
+     * Finds the upright bounding box of the contour, the same way as
+     * {@link Imgproc#boundingRect(MatOfPoint)}.
+     */
+    private void findBounds(int pointCount) {
+        int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < pointCount; i++) {
+            int x = contourPoints[i * 2];
+            int y = contourPoints[i * 2 + 1];
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        boundsX = minX;
+        boundsY = minY;
+        boundsWidth = maxX - minX + 1;
+        boundsHeight = maxY - minY + 1;
+    }
+
+    private void validate() {
+        if (++validations % REORDER_INTERVAL == 0) {
+            reorderValidators();
+        }
+        boolean timed = validations % TIMING_INTERVAL == 0;
+
+        for (Validator validator : validatorOrder) {
+            boolean passed;
+            if (timed) {
+                long start = System.nanoTime();
+                passed = validator.test(this);
+                validator.record(passed, System.nanoTime() - start);
+            } else {
+                passed = validator.test(this);
+                validator.record(passed, -1);
+            }
+            if (!passed) {
+                failedValidator = validator.name;
+                valid = false;
+                return;
+            }
+        }
+        failedValidator = "";
+        valid = true;
+    }
+
+    /**
+     * Calculates the target's score. If the score isn't a real number, the
+     * target is marked as invalid.
+     */
+    private double calculateScore() {
+        double totalScore = 3 - Math.abs(xGoalAngle);
+        if (!Double.isFinite(totalScore)) {
+            valid = false;
+            return Double.NaN;
+        }
+        return totalScore;
+    }
+
+    /**
+     * Sorts the refined corners into top left, top right, bottom left and
+     * bottom right order.
+     */
+    private void identifyCorners() {
+        // Sort the corners by x, keeping the original order for ties
+        for (int i = 0; i < 4; i++) {
+            int j = i;
+            while (j > 0 && cornerPoints[cornerOrder[j - 1] * 2] > cornerPoints[i * 2]) {
+                cornerOrder[j] = cornerOrder[j - 1];
+                j--;
+            }
+            cornerOrder[j] = i;
+        }
+
+        // The two leftmost corners are on the left side, the top one has the
+        // smaller y
+        int topLeft = cornerOrder[0];
+        int bottomLeft = cornerOrder[1];
+        if (cornerPoints[topLeft * 2 + 1] > cornerPoints[bottomLeft * 2 + 1]) {
+            topLeft = cornerOrder[1];
+            bottomLeft = cornerOrder[0];
+        }
+        int topRight = cornerOrder[2];
+        int bottomRight = cornerOrder[3];
+        if (cornerPoints[topRight * 2 + 1] > cornerPoints[bottomRight * 2 + 1]) {
+            topRight = cornerOrder[3];
+            bottomRight = cornerOrder[2];
+        }
+
+        setCorner(TOP_LEFT, topLeft);
+        setCorner(TOP_RIGHT, topRight);
+        setCorner(BOTTOM_LEFT, bottomLeft);
+        setCorner(BOTTOM_RIGHT, bottomRight);
+    }
+
+    private void setCorner(int corner, int point) {
+        corners[corner * 2] = cornerPoints[point * 2];
+        corners[corner * 2 + 1] = cornerPoints[point * 2 + 1];
+    }
+
+    private static double distance(double[] points, int p1, int p2) {
+        double x = points[p1 * 2] - points[p2 * 2];
+        double y = points[p1 * 2 + 1] - points[p2 * 2 + 1];
+        return Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Finds the center of a quadrilateral using the same moments as
+     * {@link Imgproc#moments(Mat)}.
+     */
+    private void polygonCentroid(float[] points) {
+        double m00 = 0;
+        double m10 = 0;
+        double m01 = 0;
+        for (int i = 0; i < 4; i++) {
+            int j = (i + 1) % 4;
+            double xi = points[i * 2];
+            double yi = points[i * 2 + 1];
+            double xj = points[j * 2];
+            double yj = points[j * 2 + 1];
+            double cross = xi * yj - xj * yi;
+            m00 += cross;
+            m10 += (xi + xj) * cross;
+            m01 += (yi + yj) * cross;
+        }
+        centerX = m10 / (3 * m00);
+        centerY = m01 / (3 * m00);
+    }
+
+    /**
+     * Finds the smallest rectangle that contains a convex polygon. One side
+     * of the smallest rectangle always lies along an edge of the polygon, so
+     * each edge is tried in turn.
+     *
+     * @param points the polygon, as x, y pairs
+     * @param count the number of points in the polygon
+     * @param rect the array to write the four corners of the rectangle to,
+     *        in order around the rectangle
+     */
+    static void minAreaRect(float[] points, int count, double[] rect) {
+        double minArea = Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int next = (i + 1) % count;
+            double ux = points[next * 2] - points[i * 2];
+            double uy = points[next * 2 + 1] - points[i * 2 + 1];
+            double length = Math.sqrt(ux * ux + uy * uy);
+            if (length == 0) {
+                continue;
+            }
+            ux /= length;
+            uy /= length;
+
+            // Project every point onto the edge and its normal
+            double minU = Double.MAX_VALUE, maxU = -Double.MAX_VALUE;
+            double minN = Double.MAX_VALUE, maxN = -Double.MAX_VALUE;
+            for (int j = 0; j < count; j++) {
+                double x = points[j * 2];
+                double y = points[j * 2 + 1];
+                double u = x * ux + y * uy;
+                double n = y * ux - x * uy;
+                minU = Math.min(minU, u);
+                maxU = Math.max(maxU, u);
+                minN = Math.min(minN, n);
+                maxN = Math.max(maxN, n);
+            }
+
+            double area = (maxU - minU) * (maxN - minN);
+            if (area < minArea) {
+                minArea = area;
+                setRectCorner(rect, 0, ux, uy, minU, minN);
+                setRectCorner(rect, 1, ux, uy, maxU, minN);
+                setRectCorner(rect, 2, ux, uy, maxU, maxN);
+                setRectCorner(rect, 3, ux, uy, minU, maxN);
+            }
+        }
+    }
+
+    private static void setRectCorner(double[] rect, int corner, double ux, double uy, double u, double n) {
+        rect[corner * 2] = u * ux - n * uy;
+        rect[corner * 2 + 1] = u * uy + n * ux;
+    }
+}
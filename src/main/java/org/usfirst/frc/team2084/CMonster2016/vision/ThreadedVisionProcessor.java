@@ -31,75 +31,132 @@ public abstract class ThreadedVisionProcessor extends VisionProcessor {
 
     private class ProcessingThread implements Runnable {
 
-        private final Mat localImage = new Mat();
-
         @Override
         public void run() {
             while (true) {
-                boolean localNewImage = false;
-                synchronized (image) {
-                    try {
-                        image.wait();
-                    } catch (InterruptedException e) {
-                    }
-                    if (newImage) {
-                        newImage = false;
-                        localNewImage = true;
-                        image.copyTo(localImage);
-                    }
-                }
-                if (localNewImage) {
-                    backgroundProcess(localImage);
-                }
+                // Wait for the newest frame. The mailbox is checked before
+                // waiting, so a frame that arrived while the last one was
+                // being processed is picked up immediately.
+                Frame frame = mailbox.acquire(0);
+                backgroundProcess(frame);
             }
         }
     }
 
-    private volatile boolean newImage;
-    private final Mat image = new Mat();
+    /**
+     * Frames owned by the processing thread. They are never released, they
+     * just move between the mailbox and whoever {@link #keepFrame(Frame) keeps}
+     * them.
+     */
+    private final FramePool mailboxPool = new FramePool(3);
 
     /**
-     * @param image
+     * Passes frames from the streaming thread to the processing thread. If the
+     * processing thread is still busy when a new frame arrives, the waiting
+     * frame is dropped and replaced by the new one.
+     */
+    private final TripleBuffer<Frame> mailbox = new TripleBuffer<>(mailboxPool::acquire);
+
+    /**
+     * Processes an image that did not come with a {@link Frame}, for example
+     * one that was loaded from a file. It is treated as if it was grabbed now.
+     *
+     * @param image the image to process
      */
     @Override
     public final void process(Mat image) {
-        preProcess(image);
+        Frame frame = new Frame(null, image);
+        frame.setTimestamp(Clock.nanoTime());
+        process(frame);
+    }
+
+    /**
+     * @param frame
+     */
+    @Override
+    public final void process(Frame frame) {
+        preProcess(frame);
 
         if (runInBackground) {
-            // Copy the image for the processing thread
-            synchronized (this.image) {
-                image.copyTo(this.image);
-                newImage = true;
-                this.image.notify();
-            }
+            // Copy the image for the processing thread. This is the only copy,
+            // because postProcess() draws on the streaming image while the
+            // processing thread is using its own.
+            Frame backgroundFrame = mailbox.getBackBuffer();
+            frame.getImage().copyTo(backgroundFrame.getImage());
+            backgroundFrame.copyInfo(frame);
+            mailbox.publish();
         } else {
-            backgroundProcess(image);
+            backgroundProcess(frame);
         }
 
-        postProcess(image);
+        postProcess(frame);
+    }
+
+    /**
+     * Gets the number of images that were dropped because the processing
+     * thread was still busy with an earlier one.
+     * 
+     * @return the number of dropped images
+     */
+    public long getDroppedFrameCount() {
+        return mailbox.getDroppedCount();
+    }
+
+    /**
+     * Lets {@link #backgroundProcess(Frame)} keep the frame it was given after
+     * it returns, without copying it. The replacement takes its place in the
+     * mailbox and will be overwritten by a later frame. This must only be
+     * called from {@link #backgroundProcess(Frame)} when it is running in the
+     * background thread.
+     * 
+     * @param replacement a frame that the caller no longer needs, which must
+     *        have come from {@link #keepFrame(Frame)} or
+     *        {@link #createFrame()}
+     * @return the frame that was passed to {@link #backgroundProcess(Frame)}
+     */
+    protected Frame keepFrame(Frame replacement) {
+        return mailbox.exchangeFrontBuffer(replacement);
+    }
+
+    /**
+     * Creates a frame that can be given to {@link #keepFrame(Frame)}.
+     * 
+     * @return a new frame
+     */
+    protected Frame createFrame() {
+        return mailboxPool.acquire();
+    }
+
+    /**
+     * Gets whether the algorithm is running in a background thread.
+     * 
+     * @return true if the algorithm runs in the background
+     */
+    public boolean isRunningInBackground() {
+        return runInBackground;
     }
 
     /**
      * Do the processing of the image in a separate thread.
      * 
-     * @param image the image to process
+     * @param frame the frame to process
      */
-    public abstract void backgroundProcess(Mat image);
+    public abstract void backgroundProcess(Frame frame);
 
     /**
      * Processing that happens in the streaming thread before the image is
      * handed to the background thread.
      * 
-     * @param image the image to process
+     * @param frame the frame to process
      */
-    public abstract void preProcess(Mat image);
+    public abstract void preProcess(Frame frame);
 
     /**
      * Processing that happens in the streaming thread after the image is handed
      * to the background thread.
      * 
-     * @param image the image to process
+     * @param frame the frame to process
      */
-    public abstract void postProcess(Mat image);
+    public abstract void postProcess(Frame frame);
 
 }
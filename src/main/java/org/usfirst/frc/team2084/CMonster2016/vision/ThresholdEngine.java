@@ -0,0 +1,29 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+/**
+ * The ways the high goal image can be thresholded.
+ *
+ * @author Ben Wolsieffer
+ */
+public enum ThresholdEngine {
+    /**
+     * Native code that converts the image to HSV, blurs it and thresholds it.
+     * This uses the GPU if there is one, otherwise the image is split into
+     * stripes that are processed in parallel.
+     */
+    NATIVE,
+    /**
+     * Java code that uses a {@link HsvLookupTable} instead of converting the
+     * image to HSV. It can only be used when the blur size is 0, otherwise the
+     * native code is used so that the results are the same. The engine that
+     * was actually used is published as
+     * {@link VisionResults#GOAL_THRESHOLD_ENGINE_KEY}.
+     */
+    LOOKUP_TABLE
+}
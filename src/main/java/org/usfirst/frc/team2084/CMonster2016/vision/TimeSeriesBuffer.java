@@ -0,0 +1,208 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A history buffer that stores several values (channels) for each sample time,
+ * such as all the angles from the gyro, and interpolates all of them in one
+ * lookup. The times and each channel are kept in their own arrays, so the
+ * binary search over the times only touches the times, and the two samples on
+ * either side are only found once no matter how many channels there are.
+ * <p>
+ * Like {@link ConcurrentHistoryBuffer}, it can be written by one thread and
+ * read by any number of threads without locking.
+ *
+ * @author Ben Wolsieffer
+ */
+public class TimeSeriesBuffer {
+
+    private final int length;
+    private final int channels;
+
+    /**
+     * The bits of the sample times.
+     */
+    private final AtomicLongArray times;
+
+    /**
+     * The bits of the values of each channel.
+     */
+    private final AtomicLongArray[] values;
+
+    /**
+     * Twice the number of samples that have been written, plus one while a
+     * sample is being written.
+     */
+    private volatile long sequence = 0;
+
+    /**
+     * Creates a buffer that holds the specified number of samples.
+     *
+     * @param length the number of samples to keep
+     * @param channels the number of values in each sample
+     */
+    public TimeSeriesBuffer(int length, int channels) {
+        this.length = length;
+        this.channels = channels;
+        times = new AtomicLongArray(length);
+        values = new AtomicLongArray[channels];
+        for (int i = 0; i < channels; i++) {
+            values[i] = new AtomicLongArray(length);
+        }
+    }
+
+    /**
+     * Gets the number of values in each sample.
+     *
+     * @return the number of channels
+     */
+    public int getChannelCount() {
+        return channels;
+    }
+
+    /**
+     * Adds a new sample to the buffer, replacing the oldest one if the buffer
+     * is full. This must only be called by one thread.
+     *
+     * @param time the time the sample was taken
+     * @param sample the value of each channel
+     */
+    public void newSample(double time, double[] sample) {
+        long seq = sequence;
+        int index = (int) ((seq >>> 1) % length);
+
+        sequence = seq + 1;
+        times.set(index, Double.doubleToRawLongBits(time));
+        for (int i = 0; i < channels; i++) {
+            values[i].set(index, Double.doubleToRawLongBits(sample[i]));
+        }
+        sequence = seq + 2;
+    }
+
+    /**
+     * Gets the value of every channel at the specified time. If the time is not
+     * within the known samples, the oldest or newest sample is returned.
+     *
+     * @param time the time to look up
+     * @param sample the array to write the value of each channel to
+     * @return false if the buffer is empty, in which case every value is 0
+     */
+    public boolean getSample(double time, double[] sample) {
+        while (true) {
+            long seq = sequence;
+            if ((seq & 1) == 0) {
+                boolean found = lookup(seq >>> 1, time, sample);
+                if (sequence == seq) {
+                    return found;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the value of one channel at the specified time. If the time is not
+     * within the known samples, the oldest or newest value is returned.
+     *
+     * @param time the time to look up
+     * @param channel the channel to get
+     * @return the value at that time, or 0 if the buffer is empty
+     */
+    public double getValue(double time, int channel) {
+        while (true) {
+            long seq = sequence;
+            if ((seq & 1) == 0) {
+                long count = seq >>> 1;
+                int filled = (int) Math.min(count, length);
+                double value = 0;
+                if (filled > 0) {
+                    int first = (int) ((count - filled) % length);
+                    int position = search(first, filled, time);
+                    value = interpolate(first, filled, position, time, values[channel]);
+                }
+                if (sequence == seq) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up a sample once the number of samples written is known. If a
+     * sample is written in the middle of this, the result is garbage, but the
+     * loops still end.
+     */
+    private boolean lookup(long count, double time, double[] sample) {
+        int filled = (int) Math.min(count, length);
+        if (filled == 0) {
+            for (int i = 0; i < channels; i++) {
+                sample[i] = 0;
+            }
+            return false;
+        }
+        int first = (int) ((count - filled) % length);
+        int position = search(first, filled, time);
+        for (int i = 0; i < channels; i++) {
+            sample[i] = interpolate(first, filled, position, time, values[i]);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the position of the first sample at or after the time. This is 0
+     * if the time is before every sample and filled if it is after every
+     * sample.
+     */
+    private int search(int first, int filled, double time) {
+        int low = 0;
+        int high = filled;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timeAt(first, middle) < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Interpolates a channel between the sample at the position and the one
+     * before it, or returns the oldest or newest value if there isn't one on
+     * both sides.
+     */
+    private double interpolate(int first, int filled, int position, double time, AtomicLongArray channel) {
+        if (position == 0) {
+            return valueAt(first, 0, channel);
+        }
+        if (position >= filled) {
+            return valueAt(first, position - 1, channel);
+        }
+        double oldTime = timeAt(first, position - 1);
+        double oldValue = valueAt(first, position - 1, channel);
+        double slope = (valueAt(first, position, channel) - oldValue) / (timeAt(first, position) - oldTime);
+        return slope * (time - oldTime) + oldValue;
+    }
+
+    private int getIndex(int first, int position) {
+        int index = first + position;
+        if (index >= length) {
+            index -= length;
+        }
+        return index;
+    }
+
+    private double timeAt(int first, int position) {
+        return Double.longBitsToDouble(times.get(getIndex(first, position)));
+    }
+
+    private double valueAt(int first, int position, AtomicLongArray channel) {
+        return Double.longBitsToDouble(channel.get(getIndex(first, position)));
+    }
+}
@@ -0,0 +1,200 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Lock free triple buffer that passes the latest value from one producer thread
+ * to one consumer thread. The producer always owns a back buffer to write into
+ * and the consumer always owns a front buffer to read from. The third buffer
+ * holds the newest complete value. Publishing and acquiring only swap indices,
+ * so the data is never copied and neither thread can block the other.
+ *
+ * @author Ben Wolsieffer
+ * @param <T> the type of the buffers
+ */
+public class TripleBuffer<T> {
+
+    private static final int INDEX_MASK = 0b011;
+    /**
+     * Set in {@link #middle} when it holds a value the consumer has not seen
+     * yet.
+     */
+    private static final int NEW_FLAG = 0b100;
+
+    private final T[] buffers;
+
+    /**
+     * Index of the buffer that holds the newest complete value, combined with
+     * {@link #NEW_FLAG}. This is the only state shared between the threads.
+     */
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    /**
+     * Index of the buffer owned by the producer.
+     */
+    private int back = 0;
+
+    /**
+     * Index of the buffer owned by the consumer.
+     */
+    private int front = 2;
+
+    /**
+     * The consumer thread, if it is currently waiting for a value.
+     */
+    private volatile Thread waitingThread;
+
+    /**
+     * Number of values that were overwritten before the consumer saw them.
+     * Only the producer writes this.
+     */
+    private volatile long droppedCount = 0;
+
+    /**
+     * Creates a new triple buffer, using the factory to create each of the
+     * three buffers.
+     *
+     * @param factory creates the buffers
+     */
+    @SuppressWarnings("unchecked")
+    public TripleBuffer(Supplier<T> factory) {
+        buffers = (T[]) new Object[] { factory.get(), factory.get(), factory.get() };
+    }
+
+    /**
+     * Gets the buffer the producer should write the next value into. This
+     * must only be called from the producer thread.
+     *
+     * @return the back buffer
+     */
+    public T getBackBuffer() {
+        return buffers[back];
+    }
+
+    /**
+     * Makes the value in the back buffer available to the consumer and gives
+     * the producer a new back buffer. This must only be called from the
+     * producer thread.
+     *
+     * @return true if a value that the consumer never saw was overwritten
+     */
+    public boolean publish() {
+        int oldMiddle = middle.getAndSet(back | NEW_FLAG);
+        back = oldMiddle & INDEX_MASK;
+
+        Thread waiting = waitingThread;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+
+        if ((oldMiddle & NEW_FLAG) != 0) {
+            droppedCount++;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the number of values that were replaced by a newer one before the
+     * consumer acquired them.
+     *
+     * @return the number of dropped values
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Checks if a value has been published since the consumer last acquired
+     * one.
+     *
+     * @return true if there is a new value
+     */
+    public boolean hasNew() {
+        return (middle.get() & NEW_FLAG) != 0;
+    }
+
+    /**
+     * Gets the buffer currently owned by the consumer without checking for a
+     * new value. This must only be called from the consumer thread.
+     *
+     * @return the front buffer
+     */
+    public T getFrontBuffer() {
+        return buffers[front];
+    }
+
+    /**
+     * Replaces the consumer's front buffer with a different one, so that the
+     * consumer can keep the old one after it acquires the next value. This
+     * must only be called from the consumer thread.
+     *
+     * @param replacement the new front buffer
+     * @return the old front buffer
+     */
+    public T exchangeFrontBuffer(T replacement) {
+        T oldFront = buffers[front];
+        buffers[front] = replacement;
+        return oldFront;
+    }
+
+    /**
+     * Takes the newest value if there is one. The returned buffer belongs to
+     * the consumer until the next time it acquires a value. This must only be
+     * called from the consumer thread.
+     *
+     * @return the newest value, or null if nothing was published since the
+     *         last call
+     */
+    public T acquire() {
+        if (hasNew()) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+            return buffers[front];
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Takes the newest value, waiting for one to be published if necessary.
+     * This must only be called from the consumer thread.
+     *
+     * @param timeout the maximum time to wait in milliseconds, or 0 to wait
+     *        forever
+     * @return the newest value, or null if the timeout expired
+     */
+    public T acquire(long timeout) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        T value;
+        while ((value = acquire()) == null) {
+            long remaining = deadline - System.nanoTime();
+            if (timeout > 0 && remaining <= 0) {
+                return null;
+            }
+
+            waitingThread = Thread.currentThread();
+            // Check again after registering, in case the producer published
+            // before it could see the waiting thread.
+            if (!hasNew()) {
+                if (timeout > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            waitingThread = null;
+        }
+        return value;
+    }
+}
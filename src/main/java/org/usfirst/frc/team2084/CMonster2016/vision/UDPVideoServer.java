@@ -20,10 +20,14 @@ import org.opencv.imgcodecs.Imgcodecs;
  * Serves a Motion JPEG image over HTTP. It supports multiple simultaneous
  * clients and can be started and stopped repeatedly. This is what we use for
  * streaming now.
+ * <p>
+ * The server can be added to a {@link VisionRunner} as an
+ * {@link ImageHandler}, and then sends every processed frame in the
+ * background.
  * 
  * @author Ben Wolsieffer
  */
-public class UDPVideoServer {
+public class UDPVideoServer implements ImageHandler {
 
     public static final int PORT = 5802;
 
@@ -44,13 +48,19 @@ public class UDPVideoServer {
     private byte[] socketBuffer = new byte[0];
 
     /**
-     * Flag indicating that the server is running.
+     * Flag indicating that the server is running. It is read by the
+     * {@link #frameSender} thread.
      */
-    private boolean running;
+    private volatile boolean running;
 
     private final DatagramSocket socket;
     private DatagramPacket packet;
 
+    /**
+     * Sends frames passed to {@link #sendFrame(Frame)} in the background.
+     */
+    private final FrameSender frameSender;
+
     /**
      * Creates a new {@link UDPVideoServer} that listens on the specified port
      * and uses the specified quality level for the video stream.
@@ -67,6 +77,7 @@ public class UDPVideoServer {
 
         socket = new DatagramSocket();
         packet = new DatagramPacket(socketBuffer, socketBuffer.length);
+        frameSender = new FrameSender("UDP Video Server Thread", this::sendImage);
     }
 
     /**
@@ -148,6 +159,45 @@ public class UDPVideoServer {
         }
     }
 
+    /**
+     * Sends a frame to all connected clients in the background. The frame is
+     * retained until it has been sent, so it is not copied. If frames arrive
+     * faster than they can be sent, only the latest one is sent. This should
+     * not be mixed with {@link #sendImage(Mat)}, because they share the
+     * encoding buffers.
+     * 
+     * @param frame the frame to send
+     */
+    public void sendFrame(Frame frame) {
+        frameSender.send(frame);
+    }
+
+    /**
+     * Sends an image, blocking until it is sent. Errors are printed instead
+     * of thrown, so a client that disconnects doesn't stop the processing
+     * thread.
+     * 
+     * @param image the image to send
+     */
+    @Override
+    public void imageProcessed(Mat image) {
+        try {
+            sendImage(image);
+        } catch (IOException | IllegalStateException ex) {
+            System.err.println("Could not send image: " + ex);
+        }
+    }
+
+    /**
+     * Sends a frame in the background using {@link #sendFrame(Frame)}.
+     * 
+     * @param frame the frame to send
+     */
+    @Override
+    public void frameProcessed(Frame frame) {
+        sendFrame(frame);
+    }
+
     public int getQuality() {
         return (int) qualityParams.get(1, 0)[0];
     }
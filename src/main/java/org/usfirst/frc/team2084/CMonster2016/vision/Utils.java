@@ -49,6 +49,30 @@ public final class Utils {
         return (Math.max(0, Math.min(100 * (1 - Math.abs(1 - ratio)), 100)));
     }
 
+    /**
+     * Moves the largest items in an array to the end, in ascending order,
+     * without sorting the rest of the array. This takes time proportional to
+     * the number of items times {@code k}, so it is much faster than a full
+     * sort when only the best few are needed.
+     *
+     * @param items the array
+     * @param count the number of items in the array to look at
+     * @param k the number of items to move to the end
+     */
+    public static <T extends Comparable<? super T>> void selectTop(T[] items, int count, int k) {
+        for (int end = count - 1; end >= Math.max(0, count - k); end--) {
+            int best = end;
+            for (int i = end - 1; i >= 0; i--) {
+                if (items[i].compareTo(items[best]) > 0) {
+                    best = i;
+                }
+            }
+            T tmp = items[end];
+            items[end] = items[best];
+            items[best] = tmp;
+        }
+    }
+
     public static void drawText(Mat image, String text, double x, double y) {
         Imgproc.putText(image, text, new Point(x, y), Core.FONT_HERSHEY_PLAIN, TEXT_SIZE, TEXT_COLOR);
     }
@@ -23,10 +23,14 @@ import fi.iki.elonen.NanoHTTPD.Response.Status;
  * clients and can be started and stopped repeatedly. We stopped using this
  * because of bandwidth problems on the field. {@link UDPVideoServer} works much
  * better.
+ * <p>
+ * The server can be added to a {@link VisionRunner} as an
+ * {@link ImageHandler}, and then sends every processed frame in the
+ * background.
  * 
  * @author Ben Wolsieffer
  */
-public class VideoServer {
+public class VideoServer implements ImageHandler {
 
     private class HTTPServer extends NanoHTTPD {
 
@@ -143,15 +147,21 @@ public class VideoServer {
     private byte[] socketBuffer = new byte[0];
 
     /**
-     * Flag indicating that the server is running.
+     * Flag indicating that the server is running. It is read by the
+     * {@link #frameSender} thread.
      */
-    private boolean running;
+    private volatile boolean running;
 
     private NakedByteArrayOutputStream responseBufferOutputStream = new NakedByteArrayOutputStream();
     private long imageIndex = 0;
 
     private final HTTPServer server;
 
+    /**
+     * Sends frames passed to {@link #sendFrame(Frame)} in the background.
+     */
+    private final FrameSender frameSender;
+
     /**
      * Creates a new {@link VideoServer} that listens on the specified port and
      * uses the specified quality level for the video stream.
@@ -171,6 +181,7 @@ public class VideoServer {
         qualityParams = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, quality);
 
         server = new HTTPServer();
+        frameSender = new FrameSender("Video Server Thread", this::sendImage);
     }
 
     /**
@@ -254,6 +265,45 @@ public class VideoServer {
         }
     }
 
+    /**
+     * Sends a frame to all connected clients in the background. The frame is
+     * retained until it has been sent, so it is not copied. If frames arrive
+     * faster than they can be sent, only the latest one is sent. This should
+     * not be mixed with {@link #sendImage(Mat)}, because they share the
+     * encoding buffers.
+     * 
+     * @param frame the frame to send
+     */
+    public void sendFrame(Frame frame) {
+        frameSender.send(frame);
+    }
+
+    /**
+     * Sends an image, blocking until it is sent. Errors are printed instead
+     * of thrown, so a client that disconnects doesn't stop the processing
+     * thread.
+     * 
+     * @param image the image to send
+     */
+    @Override
+    public void imageProcessed(Mat image) {
+        try {
+            sendImage(image);
+        } catch (IOException | IllegalStateException ex) {
+            System.err.println("Could not send image: " + ex);
+        }
+    }
+
+    /**
+     * Sends a frame in the background using {@link #sendFrame(Frame)}.
+     * 
+     * @param frame the frame to send
+     */
+    @Override
+    public void frameProcessed(Frame frame) {
+        sendFrame(frame);
+    }
+
     public int getQuality() {
         return (int) qualityParams.get(1, 0)[0];
     }
@@ -7,6 +7,7 @@
 package org.usfirst.frc.team2084.CMonster2016.vision;
 
 import org.opencv.core.Scalar;
+import org.usfirst.frc.team2084.CMonster2016.vision.Pipeline.DropPolicy;
 
 import edu.wpi.first.wpilibj.networktables.NetworkTable;
 import edu.wpi.first.wpilibj.tables.ITable;
@@ -25,6 +26,13 @@ public class VisionParameters {
     public static final Range DEFAULT_GOAL_S_THRESHOLD = new Range(0, 255);
     public static final Range DEFAULT_GOAL_V_THRESHOLD = new Range(99, 255);
     public static final double DEFAULT_GOAL_MIN_BLOB_AREA = 2000;
+    // The prefilters don't reject anything by default, they have to be tuned
+    // on the field first
+    public static final int DEFAULT_GOAL_MIN_VERTICES = 0;
+    public static final int DEFAULT_GOAL_MAX_VERTICES = Integer.MAX_VALUE;
+    public static final double DEFAULT_GOAL_MIN_BOUNDING_ASPECT_RATIO = 0;
+    public static final double DEFAULT_GOAL_MAX_BOUNDING_ASPECT_RATIO = Double.POSITIVE_INFINITY;
+    public static final double DEFAULT_GOAL_MIN_FILL_RATIO = 0;
     public static final double DEFAULT_GOAL_MIN_ASPECT_RATIO_SCORE = 10;
     public static final double DEFAULT_GOAL_MIN_RECTANGULARITY_WIDTH_SCORE = 10;
     public static final double DEFAULT_GOAL_MIN_RECTANGULARITY_HEIGHT_SCORE = 10;
@@ -32,7 +40,23 @@ public class VisionParameters {
     public static final double DEFAULT_GOAL_MIN_DISTANCE = 3;
     public static final double DEFAULT_GOAL_APPROX_POLY_EPSILON = 10;
     public static final int DEFAULT_GOAL_BLUR_SIZE = 6;
+    public static final ThresholdEngine DEFAULT_GOAL_THRESHOLD_ENGINE = ThresholdEngine.NATIVE;
+    public static final PoseEngine DEFAULT_GOAL_POSE_ENGINE = PoseEngine.OPENCV;
+    public static final ContourEngine DEFAULT_GOAL_CONTOUR_ENGINE = ContourEngine.OPENCV;
+    public static final ExecutionMode DEFAULT_GOAL_EXECUTION_MODE = ExecutionMode.SERIAL;
+    public static final int DEFAULT_GOAL_PIPELINE_QUEUE_DEPTH = 1;
+    public static final DropPolicy DEFAULT_GOAL_PIPELINE_DROP_POLICY = DropPolicy.DROP_OLDEST;
+    public static final int DEFAULT_GOAL_PARALLEL_WORKERS = 2;
+    public static final int DEFAULT_GOAL_PARALLEL_EVALUATION_THRESHOLD = 16;
+    public static final double DEFAULT_GOAL_FRAME_BUDGET = 0;
+    public static final int DEFAULT_GOAL_THRESHOLD_STRIPES = Runtime.getRuntime().availableProcessors();
+    public static final boolean DEFAULT_GOAL_TRACKING = false;
+    public static final int DEFAULT_GOAL_PYRAMID_LEVEL = 0;
+    public static final int DEFAULT_GOAL_TRACKING_MAX_MISSES = RegionTracker.DEFAULT_MAX_MISSES;
+    public static final int DEFAULT_GOAL_TRACKING_REFRESH_INTERVAL = RegionTracker.DEFAULT_REFRESH_INTERVAL;
     public static final double DEFAULT_AIMING_EXPOSURE = 0;
+    public static final boolean DEFAULT_LATENCY_ESTIMATION = true;
+    public static final double DEFAULT_GOAL_LOOKAHEAD = 0.02;
     public static final Range DEFAULT_BOULDER_H_THRESHOLD = new Range(0, 255);
     public static final Range DEFAULT_BOULDER_S_THRESHOLD = new Range(0, 255);
     public static final Range DEFAULT_BOULDER_V_THRESHOLD = new Range(0, 255);
@@ -56,6 +80,11 @@ public class VisionParameters {
     private static final String GOAL_V_MAX_KEY = "goal_vMax";
 
     private static final String GOAL_MIN_BLOB_AREA_KEY = "goal_min_blob_area";
+    private static final String GOAL_MIN_VERTICES_KEY = "goal_min_vertices";
+    private static final String GOAL_MAX_VERTICES_KEY = "goal_max_vertices";
+    private static final String GOAL_MIN_BOUNDING_ASPECT_RATIO_KEY = "goal_min_bounding_aspect";
+    private static final String GOAL_MAX_BOUNDING_ASPECT_RATIO_KEY = "goal_max_bounding_aspect";
+    private static final String GOAL_MIN_FILL_RATIO_KEY = "goal_min_fill_ratio";
     private static final String GOAL_MIN_ASPECT_RATIO_SCORE_KEY = "min_aspect_score";
     private static final String GOAL_MIN_RECTANGULARITY_WIDTH_SCORE_KEY = "min_rect_w_score";
     private static final String GOAL_MIN_RECTANGULARITY_HEIGHT_SCORE_KEY = "min_rect_h_score";
@@ -64,11 +93,27 @@ public class VisionParameters {
     private static final String GOAL_APPROX_POLY_EPSILON_KEY = "approx_poly_epsilon";
 
     private static final String GOAL_BLUR_SIZE_KEY = "blur_size";
+    private static final String GOAL_THRESHOLD_ENGINE_KEY = "threshold_engine";
+    private static final String GOAL_POSE_ENGINE_KEY = "pose_engine";
+    private static final String GOAL_CONTOUR_ENGINE_KEY = "contour_engine";
+    private static final String GOAL_EXECUTION_MODE_KEY = "execution_mode";
+    private static final String GOAL_PIPELINE_QUEUE_DEPTH_KEY = "pipeline_queue_depth";
+    private static final String GOAL_PIPELINE_DROP_POLICY_KEY = "pipeline_drop_policy";
+    private static final String GOAL_PARALLEL_WORKERS_KEY = "parallel_workers";
+    private static final String GOAL_PARALLEL_EVALUATION_THRESHOLD_KEY = "parallel_evaluation_threshold";
+    private static final String GOAL_FRAME_BUDGET_KEY = "frame_budget";
+    private static final String GOAL_THRESHOLD_STRIPES_KEY = "threshold_stripes";
+    private static final String GOAL_TRACKING_KEY = "tracking";
+    private static final String GOAL_PYRAMID_LEVEL_KEY = "pyramid_level";
+    private static final String GOAL_TRACKING_MAX_MISSES_KEY = "tracking_max_misses";
+    private static final String GOAL_TRACKING_REFRESH_INTERVAL_KEY = "tracking_refresh";
 
     private static final String FOV_ANGLE_KEY = "fov_angle";
 
     private static final String AIMING_AUTO_EXPOSURE_KEY = "auto_exposure";
     private static final String AIMING_EXPOSURE_KEY = "exposure";
+    private static final String LATENCY_ESTIMATION_KEY = "latency_estimation";
+    private static final String GOAL_LOOKAHEAD_KEY = "goal_lookahead";
 
     private static final String BOULDER_H_MIN_KEY = "boulder_hMin";
     private static final String BOULDER_H_MAX_KEY = "boulder_hMax";
@@ -174,6 +219,46 @@ public class VisionParameters {
         VISION_PARAMETERS.putNumber(GOAL_MIN_BLOB_AREA_KEY, area);
     }
 
+    public static int getGoalMinVertices() {
+        return (int) VISION_PARAMETERS.getNumber(GOAL_MIN_VERTICES_KEY, DEFAULT_GOAL_MIN_VERTICES);
+    }
+
+    public static void setGoalMinVertices(int vertices) {
+        VISION_PARAMETERS.putNumber(GOAL_MIN_VERTICES_KEY, vertices);
+    }
+
+    public static int getGoalMaxVertices() {
+        return (int) VISION_PARAMETERS.getNumber(GOAL_MAX_VERTICES_KEY, DEFAULT_GOAL_MAX_VERTICES);
+    }
+
+    public static void setGoalMaxVertices(int vertices) {
+        VISION_PARAMETERS.putNumber(GOAL_MAX_VERTICES_KEY, vertices);
+    }
+
+    public static double getGoalMinBoundingAspectRatio() {
+        return VISION_PARAMETERS.getNumber(GOAL_MIN_BOUNDING_ASPECT_RATIO_KEY, DEFAULT_GOAL_MIN_BOUNDING_ASPECT_RATIO);
+    }
+
+    public static void setGoalMinBoundingAspectRatio(double ratio) {
+        VISION_PARAMETERS.putNumber(GOAL_MIN_BOUNDING_ASPECT_RATIO_KEY, ratio);
+    }
+
+    public static double getGoalMaxBoundingAspectRatio() {
+        return VISION_PARAMETERS.getNumber(GOAL_MAX_BOUNDING_ASPECT_RATIO_KEY, DEFAULT_GOAL_MAX_BOUNDING_ASPECT_RATIO);
+    }
+
+    public static void setGoalMaxBoundingAspectRatio(double ratio) {
+        VISION_PARAMETERS.putNumber(GOAL_MAX_BOUNDING_ASPECT_RATIO_KEY, ratio);
+    }
+
+    public static double getGoalMinFillRatio() {
+        return VISION_PARAMETERS.getNumber(GOAL_MIN_FILL_RATIO_KEY, DEFAULT_GOAL_MIN_FILL_RATIO);
+    }
+
+    public static void setGoalMinFillRatio(double ratio) {
+        VISION_PARAMETERS.putNumber(GOAL_MIN_FILL_RATIO_KEY, ratio);
+    }
+
     public static double getGoalMinAspectRatioScore() {
         return VISION_PARAMETERS.getNumber(GOAL_MIN_ASPECT_RATIO_SCORE_KEY, DEFAULT_GOAL_MIN_ASPECT_RATIO_SCORE);
     }
@@ -232,6 +317,176 @@ public class VisionParameters {
         VISION_PARAMETERS.putNumber(GOAL_BLUR_SIZE_KEY, size);
     }
 
+    public static ThresholdEngine getGoalThresholdEngine() {
+        try {
+            return ThresholdEngine.valueOf(
+                    VISION_PARAMETERS.getString(GOAL_THRESHOLD_ENGINE_KEY, DEFAULT_GOAL_THRESHOLD_ENGINE.name()));
+        } catch (IllegalArgumentException ex) {
+            return DEFAULT_GOAL_THRESHOLD_ENGINE;
+        }
+    }
+
+    public static void setGoalThresholdEngine(ThresholdEngine engine) {
+        VISION_PARAMETERS.putString(GOAL_THRESHOLD_ENGINE_KEY, engine.name());
+    }
+
+    public static PoseEngine getGoalPoseEngine() {
+        try {
+            return PoseEngine
+                    .valueOf(VISION_PARAMETERS.getString(GOAL_POSE_ENGINE_KEY, DEFAULT_GOAL_POSE_ENGINE.name()));
+        } catch (IllegalArgumentException ex) {
+            return DEFAULT_GOAL_POSE_ENGINE;
+        }
+    }
+
+    public static void setGoalPoseEngine(PoseEngine engine) {
+        VISION_PARAMETERS.putString(GOAL_POSE_ENGINE_KEY, engine.name());
+    }
+
+    public static ContourEngine getGoalContourEngine() {
+        try {
+            return ContourEngine.valueOf(
+                    VISION_PARAMETERS.getString(GOAL_CONTOUR_ENGINE_KEY, DEFAULT_GOAL_CONTOUR_ENGINE.name()));
+        } catch (IllegalArgumentException ex) {
+            return DEFAULT_GOAL_CONTOUR_ENGINE;
+        }
+    }
+
+    public static void setGoalContourEngine(ContourEngine engine) {
+        VISION_PARAMETERS.putString(GOAL_CONTOUR_ENGINE_KEY, engine.name());
+    }
+
+    /**
+     * Gets how consecutive frames are processed. This is only read when the
+     * {@link HighGoalProcessor} is created, so changing it requires a restart.
+     *
+     * @return the execution mode
+     */
+    public static ExecutionMode getGoalExecutionMode() {
+        try {
+            return ExecutionMode
+                    .valueOf(VISION_PARAMETERS.getString(GOAL_EXECUTION_MODE_KEY, DEFAULT_GOAL_EXECUTION_MODE.name()));
+        } catch (IllegalArgumentException ex) {
+            return DEFAULT_GOAL_EXECUTION_MODE;
+        }
+    }
+
+    public static void setGoalExecutionMode(ExecutionMode mode) {
+        VISION_PARAMETERS.putString(GOAL_EXECUTION_MODE_KEY, mode.name());
+    }
+
+    /**
+     * Gets the number of frames that can wait for each stage of the pipeline.
+     * Like the execution mode, this is only read at startup.
+     *
+     * @return the queue depth, which is at least 1
+     */
+    public static int getGoalPipelineQueueDepth() {
+        return Math.max(1,
+                (int) VISION_PARAMETERS.getNumber(GOAL_PIPELINE_QUEUE_DEPTH_KEY, DEFAULT_GOAL_PIPELINE_QUEUE_DEPTH));
+    }
+
+    public static void setGoalPipelineQueueDepth(int depth) {
+        VISION_PARAMETERS.putNumber(GOAL_PIPELINE_QUEUE_DEPTH_KEY, depth);
+    }
+
+    /**
+     * Gets what the pipeline does with frames that arrive at a full stage.
+     * Like the execution mode, this is only read at startup.
+     *
+     * @return the drop policy
+     */
+    public static DropPolicy getGoalPipelineDropPolicy() {
+        try {
+            return DropPolicy.valueOf(VISION_PARAMETERS.getString(GOAL_PIPELINE_DROP_POLICY_KEY,
+                    DEFAULT_GOAL_PIPELINE_DROP_POLICY.name()));
+        } catch (IllegalArgumentException ex) {
+            return DEFAULT_GOAL_PIPELINE_DROP_POLICY;
+        }
+    }
+
+    public static void setGoalPipelineDropPolicy(DropPolicy policy) {
+        VISION_PARAMETERS.putString(GOAL_PIPELINE_DROP_POLICY_KEY, policy.name());
+    }
+
+    /**
+     * Gets the number of frames that are processed at the same time in
+     * parallel mode. Like the execution mode, this is only read at startup.
+     *
+     * @return the number of workers, which is at least 1
+     */
+    public static int getGoalParallelWorkers() {
+        return Math.max(1, (int) VISION_PARAMETERS.getNumber(GOAL_PARALLEL_WORKERS_KEY, DEFAULT_GOAL_PARALLEL_WORKERS));
+    }
+
+    public static void setGoalParallelWorkers(int workers) {
+        VISION_PARAMETERS.putNumber(GOAL_PARALLEL_WORKERS_KEY, workers);
+    }
+
+    public static int getGoalParallelEvaluationThreshold() {
+        return (int) VISION_PARAMETERS.getNumber(GOAL_PARALLEL_EVALUATION_THRESHOLD_KEY,
+                DEFAULT_GOAL_PARALLEL_EVALUATION_THRESHOLD);
+    }
+
+    public static void setGoalParallelEvaluationThreshold(int contours) {
+        VISION_PARAMETERS.putNumber(GOAL_PARALLEL_EVALUATION_THRESHOLD_KEY, contours);
+    }
+
+    /**
+     * Gets the time budget for processing a frame. Once it is used up, no
+     * more candidates are evaluated.
+     *
+     * @return the budget in milliseconds, or 0 if there is no limit
+     */
+    public static double getGoalFrameBudget() {
+        return VISION_PARAMETERS.getNumber(GOAL_FRAME_BUDGET_KEY, DEFAULT_GOAL_FRAME_BUDGET);
+    }
+
+    public static void setGoalFrameBudget(double milliseconds) {
+        VISION_PARAMETERS.putNumber(GOAL_FRAME_BUDGET_KEY, milliseconds);
+    }
+
+    public static int getGoalThresholdStripes() {
+        return (int) VISION_PARAMETERS.getNumber(GOAL_THRESHOLD_STRIPES_KEY, DEFAULT_GOAL_THRESHOLD_STRIPES);
+    }
+
+    public static void setGoalThresholdStripes(int stripes) {
+        VISION_PARAMETERS.putNumber(GOAL_THRESHOLD_STRIPES_KEY, stripes);
+    }
+
+    public static int getGoalPyramidLevel() {
+        return (int) VISION_PARAMETERS.getNumber(GOAL_PYRAMID_LEVEL_KEY, DEFAULT_GOAL_PYRAMID_LEVEL);
+    }
+
+    public static void setGoalPyramidLevel(int level) {
+        VISION_PARAMETERS.putNumber(GOAL_PYRAMID_LEVEL_KEY, level);
+    }
+
+    public static boolean getGoalTracking() {
+        return VISION_PARAMETERS.getBoolean(GOAL_TRACKING_KEY, DEFAULT_GOAL_TRACKING);
+    }
+
+    public static void setGoalTracking(boolean tracking) {
+        VISION_PARAMETERS.putBoolean(GOAL_TRACKING_KEY, tracking);
+    }
+
+    public static int getGoalTrackingMaxMisses() {
+        return (int) VISION_PARAMETERS.getNumber(GOAL_TRACKING_MAX_MISSES_KEY, DEFAULT_GOAL_TRACKING_MAX_MISSES);
+    }
+
+    public static void setGoalTrackingMaxMisses(int misses) {
+        VISION_PARAMETERS.putNumber(GOAL_TRACKING_MAX_MISSES_KEY, misses);
+    }
+
+    public static int getGoalTrackingRefreshInterval() {
+        return (int) VISION_PARAMETERS.getNumber(GOAL_TRACKING_REFRESH_INTERVAL_KEY,
+                DEFAULT_GOAL_TRACKING_REFRESH_INTERVAL);
+    }
+
+    public static void setGoalTrackingRefreshInterval(int frames) {
+        VISION_PARAMETERS.putNumber(GOAL_TRACKING_REFRESH_INTERVAL_KEY, frames);
+    }
+
     public static double getFOVAngle() {
         return VISION_PARAMETERS.getNumber(FOV_ANGLE_KEY, DEFAULT_FOV_ANGLE);
     }
@@ -256,6 +511,35 @@ public class VisionParameters {
         VISION_PARAMETERS.putNumber(AIMING_EXPOSURE_KEY, exposure);
     }
 
+    /**
+     * Gets whether the camera latency is measured while running instead of
+     * using {@link HighGoalProcessor#ESTIMATED_CAMERA_LATENCY}.
+     *
+     * @return true if the latency is estimated
+     */
+    public static boolean getLatencyEstimation() {
+        return VISION_PARAMETERS.getBoolean(LATENCY_ESTIMATION_KEY, DEFAULT_LATENCY_ESTIMATION);
+    }
+
+    public static void setLatencyEstimation(boolean enabled) {
+        VISION_PARAMETERS.putBoolean(LATENCY_ESTIMATION_KEY, enabled);
+    }
+
+    /**
+     * Gets how far into the future the predicted angle remaining to the goal
+     * is extrapolated. This should be about the delay between when a gyro
+     * sample is taken and when the robot acts on it.
+     *
+     * @return the time in seconds
+     */
+    public static double getGoalLookahead() {
+        return VISION_PARAMETERS.getNumber(GOAL_LOOKAHEAD_KEY, DEFAULT_GOAL_LOOKAHEAD);
+    }
+
+    public static void setGoalLookahead(double lookahead) {
+        VISION_PARAMETERS.putNumber(GOAL_LOOKAHEAD_KEY, lookahead);
+    }
+
     public static double getAimingExposure() {
         return VISION_PARAMETERS.getNumber(AIMING_EXPOSURE_KEY, DEFAULT_AIMING_EXPOSURE);
     }
@@ -54,4 +54,15 @@ public abstract class VisionProcessor {
      */
     public abstract void process(Mat image);
 
+    /**
+     * Called from the processing thread with a frame from the camera. By
+     * default this just calls {@link #process(Mat)}, processors that need to
+     * know when the image was taken should override it.
+     *
+     * @param frame the frame retrieved from the camera
+     */
+    public void process(Frame frame) {
+        process(frame.getImage());
+    }
+
 }
@@ -6,6 +6,8 @@
  */
 package org.usfirst.frc.team2084.CMonster2016.vision;
 
+import java.util.concurrent.TimeUnit;
+
 import edu.wpi.first.wpilibj.networktables.NetworkTable;
 import edu.wpi.first.wpilibj.tables.ITable;
 
@@ -23,15 +25,29 @@ public class VisionResults {
     public static final String ARM_ANGLE_KEY = "shooter_angle";
     public static final String GOAL_ANGLE_KEY = "goal_angle";
     public static final String GOAL_DISTANCE_KEY = "goal_distance";
+    public static final String GOAL_TRUNCATED_KEY = "goal_truncated";
+    public static final String GOAL_THRESHOLD_ENGINE_KEY = "goal_threshold_engine";
+    public static final String GOAL_ANGLE_REMAINING_KEY = "goal_angle_remaining";
+    public static final String GOAL_ANGLE_PREDICTED_KEY = "goal_angle_predicted";
+    public static final String CAMERA_LATENCY_KEY = "camera_latency";
+    public static final String CAMERA_LATENCY_CONFIDENCE_KEY = "camera_latency_confidence";
     public static final String UPDATE_KEY = "update";
     public static final String BOULDER_BLOCKING_CAMERA_KEY = "boulder_blocking";
 
+    /**
+     * Time in milliseconds after the last update that the results are
+     * considered stale.
+     */
     public static final long STALE_TIMEOUT = 500;
     public static final double DEFAULT_ARM_ANGLE = Math.toRadians(30);
 
     private static int updateCount = 0;
     private static boolean listenerRegistered = false;
-    private static long lastUpdateTime;
+    /**
+     * {@link Clock} time of the last update. This starts far enough in the
+     * past that the results are stale until the first update.
+     */
+    private static volatile long lastUpdateTime = Long.MIN_VALUE / 2;
 
     public static void update() {
         VISION_RESULTS.putNumber(UPDATE_KEY, ++updateCount);
@@ -40,12 +56,12 @@ public class VisionResults {
     public static boolean isStale() {
         if (!listenerRegistered) {
             VISION_RESULTS.addTableListener(UPDATE_KEY, (ITable source, String key, Object value, boolean isNew) -> {
-                lastUpdateTime = System.currentTimeMillis();
+                lastUpdateTime = Clock.nanoTime();
             }, false);
             listenerRegistered = true;
         }
 
-        return System.currentTimeMillis() - lastUpdateTime > STALE_TIMEOUT;
+        return Clock.nanoTime() - lastUpdateTime > TimeUnit.MILLISECONDS.toNanos(STALE_TIMEOUT);
     }
 
     public static double getCurrentHeading() {
@@ -88,6 +104,81 @@ public class VisionResults {
         VISION_RESULTS.putNumber(GOAL_DISTANCE_KEY, distance);
     }
 
+    /**
+     * Gets whether the last processed frame ran out of time before all the
+     * candidates were evaluated. This is updated for every frame, even ones
+     * without a goal.
+     *
+     * @return true if the frame was truncated
+     */
+    public static boolean isGoalTruncated() {
+        return VISION_RESULTS.getBoolean(GOAL_TRUNCATED_KEY, false);
+    }
+
+    public static void setGoalTruncated(boolean truncated) {
+        VISION_RESULTS.putBoolean(GOAL_TRUNCATED_KEY, truncated);
+    }
+
+    /**
+     * Gets the threshold engine that processed the last frame. This shows when
+     * the lookup table is selected but the native code is being used instead.
+     *
+     * @return the name of the engine
+     */
+    public static String getGoalThresholdEngine() {
+        return VISION_RESULTS.getString(GOAL_THRESHOLD_ENGINE_KEY, "");
+    }
+
+    public static void setGoalThresholdEngine(ThresholdEngine engine) {
+        VISION_RESULTS.putString(GOAL_THRESHOLD_ENGINE_KEY, engine.name());
+    }
+
+    /**
+     * Gets the angle the robot has to turn to face the goal, which is updated
+     * with every gyro sample instead of every frame. It is not updated once
+     * the results are {@link #isStale() stale}.
+     *
+     * @return the angle in radians
+     */
+    public static double getGoalAngleRemaining() {
+        return VISION_RESULTS.getNumber(GOAL_ANGLE_REMAINING_KEY, 0);
+    }
+
+    public static void setGoalAngleRemaining(double angle) {
+        VISION_RESULTS.putNumber(GOAL_ANGLE_REMAINING_KEY, angle);
+    }
+
+    /**
+     * Gets the angle the robot will have to turn to face the goal
+     * {@link VisionParameters#getGoalLookahead()} after the latest gyro
+     * sample, if it keeps turning at the same rate.
+     *
+     * @return the angle in radians
+     */
+    public static double getGoalAnglePredicted() {
+        return VISION_RESULTS.getNumber(GOAL_ANGLE_PREDICTED_KEY, 0);
+    }
+
+    public static void setGoalAnglePredicted(double angle) {
+        VISION_RESULTS.putNumber(GOAL_ANGLE_PREDICTED_KEY, angle);
+    }
+
+    public static double getCameraLatency() {
+        return VISION_RESULTS.getNumber(CAMERA_LATENCY_KEY, HighGoalProcessor.ESTIMATED_CAMERA_LATENCY);
+    }
+
+    public static void setCameraLatency(double latency) {
+        VISION_RESULTS.putNumber(CAMERA_LATENCY_KEY, latency);
+    }
+
+    public static double getCameraLatencyConfidence() {
+        return VISION_RESULTS.getNumber(CAMERA_LATENCY_CONFIDENCE_KEY, 0);
+    }
+
+    public static void setCameraLatencyConfidence(double confidence) {
+        VISION_RESULTS.putNumber(CAMERA_LATENCY_CONFIDENCE_KEY, confidence);
+    }
+
     public static boolean isBoulderBlockingCamera() {
         return VISION_RESULTS.getBoolean(BOULDER_BLOCKING_CAMERA_KEY, false);
     }
@@ -8,7 +8,6 @@ package org.usfirst.frc.team2084.CMonster2016.vision;
 
 import java.util.ArrayList;
 
-import org.opencv.core.Mat;
 import org.usfirst.frc.team2084.CMonster2016.vision.capture.CameraCapture;
 
 /**
@@ -24,7 +23,6 @@ public class VisionRunner {
     protected final VisionProcessor processor;
     protected final CameraCapture camera;
     private final Thread processorThread = new Thread(new ProcessorThread());
-    private final Mat cameraImage = new Mat();
     private boolean running = false;
 
     /**
@@ -36,9 +34,16 @@ public class VisionRunner {
         public void run() {
             while (true) {
                 if (running) {
-                    camera.capture(cameraImage);
-                    processor.process(cameraImage);
-                    imageHandlers.forEach((handler) -> handler.imageProcessed(cameraImage));
+                    // Use the camera's frame directly instead of copying it.
+                    // Handlers that keep it retain it, so it only goes back
+                    // to the pool when everybody is done with it.
+                    Frame frame = camera.captureFrame(0);
+                    try {
+                        processor.process(frame);
+                        imageHandlers.forEach((handler) -> handler.frameProcessed(frame));
+                    } finally {
+                        frame.release();
+                    }
                 } else {
                     synchronized (processorThread) {
                         try {
@@ -59,6 +64,14 @@ public class VisionRunner {
         this.camera = camera;
     }
 
+    public void addImageHandler(ImageHandler handler) {
+        imageHandlers.add(handler);
+    }
+
+    public void removeImageHandler(ImageHandler handler) {
+        imageHandlers.remove(handler);
+    }
+
     public void start() {
         camera.start();
         running = true;
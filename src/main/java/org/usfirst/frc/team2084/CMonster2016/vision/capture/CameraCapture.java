@@ -11,12 +11,17 @@ import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.videoio.VideoCapture;
 import org.opencv.videoio.Videoio;
+import org.usfirst.frc.team2084.CMonster2016.vision.Clock;
+import org.usfirst.frc.team2084.CMonster2016.vision.Frame;
+import org.usfirst.frc.team2084.CMonster2016.vision.FramePool;
+import org.usfirst.frc.team2084.CMonster2016.vision.TripleBuffer;
 
 /**
  * Captures images from a camera asynchronously. This allows applications to
  * work at any frame rate without worrying about what the camera supports. The
  * image returned from capture() is always the latest one and ones in between
- * are skipped.
+ * are skipped. Images are passed from the capture thread through a
+ * {@link TripleBuffer}, so they are never copied or locked.
  * 
  * @author Ben Wolsieffer
  */
@@ -30,8 +35,6 @@ public class CameraCapture {
      */
     private class CaptureThread implements Runnable {
 
-        private final Mat retrievedImage = new Mat();
-
         @Override
         public void run() {
             while (true) {
@@ -41,28 +44,22 @@ public class CameraCapture {
                         boolean retrievedNewImage = false;
 
                         synchronized (capture) {
-                            // Grab the image outside of the image
-                            // synchronization.
-
-                            // Copy grabbed image
-                            if (!capture.read(retrievedImage)) {
+                            // Read directly into the back buffer, nobody else
+                            // can see it until it is published.
+                            Frame frame = buffer.getBackBuffer();
+                            if (!capture.read(frame.getImage())) {
                                 connected = false;
                             } else {
-                                // If it succeeded, set the newImage flag.
+                                frame.setTimestamp(Clock.nanoTime());
+                                frame.setSequence(++sequence);
+                                frame.setExposure(exposure, autoExposure);
                                 retrievedNewImage = true;
                             }
-
                         }
                         if (retrievedNewImage) {
-                            synchronized (image) {
-                                retrievedImage.copyTo(image);
-                            }
-                            newImage = true;
-                            // Notify the capture() method in case it was
-                            // waiting.
-                            synchronized (imageNotifier) {
-                                imageNotifier.notify();
-                            }
+                            // Swap the new image in for the consumer. This also
+                            // wakes up capture() if it is waiting.
+                            buffer.publish();
                         }
                     } else {
                         synchronized (capture) {
@@ -128,15 +125,36 @@ public class CameraCapture {
     private volatile boolean connected = false;
 
     /**
-     * The latest captured image.
+     * Number of the last frame that was grabbed. Only used by the capture
+     * thread.
+     */
+    private long sequence = 0;
+
+    /**
+     * The last exposure settings, which are stored in each frame.
+     */
+    private volatile double exposure = -1;
+    private volatile boolean autoExposure = true;
+
+    /**
+     * Number of frames allocated when the camera is created. The triple buffer
+     * always holds three and the rest are for frames that are being processed
+     * or streamed.
      */
-    private final Mat image = new Mat();
+    private static final int INITIAL_POOL_SIZE = 6;
 
     /**
-     * Flag that signals that a new image has been captured and not yet
-     * retrieved.
+     * Pool that the captured frames come from. The frames get sized by the
+     * first image read into them and keep their memory after that.
      */
-    private volatile boolean newImage = false;
+    private final FramePool framePool = new FramePool(INITIAL_POOL_SIZE);
+
+    /**
+     * Buffer that exchanges images between the capture thread and the
+     * consumer. Images are never copied between the two, the threads just swap
+     * which {@link Frame} they own.
+     */
+    private final TripleBuffer<Frame> buffer = new TripleBuffer<>(framePool::acquire);
 
     /**
      * {@link VideoCapture} object that does the actual capturing from the
@@ -149,12 +167,6 @@ public class CameraCapture {
      */
     private final Thread captureThread = new Thread(new CaptureThread(), "Camera Capture Thread");
 
-    /**
-     * Object that tells the waiting {@link #capture(Mat)} that a new image
-     * arrived.
-     */
-    private final Object imageNotifier = new Object();
-
     private V4LControl control;
 
     // Properties
@@ -213,7 +225,7 @@ public class CameraCapture {
         if (running) {
             running = false;
             // Release the camera.
-            synchronized (image) {
+            synchronized (capture) {
                 capture.release();
             }
         }
@@ -245,39 +257,74 @@ public class CameraCapture {
      * Gets the latest image captured from the camera.
      * 
      * @param image a {@link Mat} to copy the captured image into
+     * @param timeout the maximum time to wait for an image in milliseconds, or
+     *        0 to wait forever
+     * @return true if an image was captured before the timeout
      */
     public boolean capture(Mat image, long timeout) {
+        Mat latestImage = capture(timeout);
+        if (latestImage != null) {
+            latestImage.copyTo(image);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the latest image captured from the camera without copying it. The
+     * returned {@link Mat} belongs to the caller until the next time it
+     * captures an image, so it can be modified freely. Only one thread may
+     * capture images from a {@link CameraCapture}.
+     * 
+     * @param timeout the maximum time to wait for an image in milliseconds, or
+     *        0 to wait forever
+     * @return the captured image, or null if the timeout expired
+     */
+    public Mat capture(long timeout) {
         if (running) {
-            long startTime = System.currentTimeMillis();
-
-            // Wait for an image from the camera
-            while (!newImage) {
-                // The capture thread calls imageNotifier.notify() when it grabs
-                // and image.
-                synchronized (imageNotifier) {
-                    try {
-                        imageNotifier.wait(timeout);
-                    } catch (InterruptedException e) {
-                    }
-                    if (System.currentTimeMillis() - startTime >= timeout && timeout > 0) {
-                        return false;
-                    }
-                }
-            }
+            Frame frame = buffer.acquire(timeout);
+            return frame != null ? frame.getImage() : null;
+        } else {
+            // Throw an exception if the capture is not running.
+            throw new IllegalStateException("Camera must be running to capture an image.");
+        }
+    }
 
-            // Copy the new image to the parameter. This is synchronized to
-            // avoid possibly returning a half grabbed image.
-            synchronized (this.image) {
-                newImage = false;
-                this.image.copyTo(image);
+    /**
+     * Gets the latest frame captured from the camera without copying it. The
+     * caller owns the returned frame and must {@link Frame#release() release}
+     * it when it is done, which returns it to the camera's pool. Only one
+     * thread may capture images from a {@link CameraCapture}.
+     * 
+     * @param timeout the maximum time to wait for a frame in milliseconds, or
+     *        0 to wait forever
+     * @return the captured frame, or null if the timeout expired
+     */
+    public Frame captureFrame(long timeout) {
+        if (running) {
+            Frame frame = buffer.acquire(timeout);
+            if (frame != null) {
+                // Give the buffer a new frame so the caller can keep this one
+                buffer.exchangeFrontBuffer(framePool.acquire());
             }
-            return true;
+            return frame;
         } else {
             // Throw an exception if the capture is not running.
             throw new IllegalStateException("Camera must be running to capture an image.");
         }
     }
 
+    /**
+     * Gets the pool that captured frames come from. This is mainly useful for
+     * checking that frames are being recycled.
+     * 
+     * @return the frame pool
+     */
+    public FramePool getFramePool() {
+        return framePool;
+    }
+
     /**
      * Get the resolution of the camera or video stream.
      * 
@@ -326,12 +373,14 @@ public class CameraCapture {
     }
 
     public void setAutoExposure(boolean enabled) {
+        autoExposure = enabled;
         if (control != null) {
             control.enableAutoExposure(enabled);
         }
     }
 
     public void setExposure(double exposure) {
+        this.exposure = exposure;
         if (control != null) {
             control.setExposure((int) exposure);
         }
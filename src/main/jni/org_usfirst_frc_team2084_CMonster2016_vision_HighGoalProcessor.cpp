@@ -1,30 +1,80 @@
 #include "org_usfirst_frc_team2084_CMonster2016_vision_HighGoalProcessor.h"
+#include <algorithm>
+#include <mutex>
+#include <vector>
 #include <iostream>
 #include <opencv2/cudafilters.hpp>
 #include <opencv2/cudaimgproc.hpp>
 
 using namespace cv;
 
-UMat hsvImage;
-UMat blurImage;
+// Scratch images are per thread so that several frames can be processed at
+// the same time.
+struct ThreadBuffers {
+	UMat hsvImage;
+	UMat blurImage;
 
-cuda::GpuMat gpuImage;
-cuda::GpuMat gpuHsvImage;
-cuda::GpuMat gpuBlurImage;
-cuda::GpuMat gpuGrayImage;
+	cuda::GpuMat gpuImage;
+	cuda::GpuMat gpuHsvImage;
+	cuda::GpuMat gpuBlurImage;
+	cuda::GpuMat gpuGrayImage;
 
-Ptr<cuda::Filter> blurFilter;
+	Ptr<cuda::Filter> blurFilter;
+	int oldBlurSize = 0;
 
-int oldBlurSize;
+	Mat stripeHsvImage;
+	Mat stripeBlurImage;
 
-bool gpu = cuda::getCudaEnabledDeviceCount() > 0;
+	Mat contoursImage;
+	std::vector<std::vector<Point> > contours;
+	std::vector<std::vector<Point> > hulls;
 
-jint JNI_OnLoad(JavaVM *vm, void *reserved) {
-	if (gpu) {
-		blurFilter = cuda::createGaussianFilter(CV_8UC3, CV_8UC3, Size(5, 5),
-				0);
+	void release() {
+		hsvImage.release();
+		blurImage.release();
+		gpuImage.release();
+		gpuHsvImage.release();
+		gpuBlurImage.release();
+		gpuGrayImage.release();
+		blurFilter.release();
+		stripeHsvImage.release();
+		stripeBlurImage.release();
+		contoursImage.release();
+		std::vector<std::vector<Point> >().swap(contours);
+		std::vector<std::vector<Point> >().swap(hulls);
+	}
+};
+
+// Every thread's buffers are registered here, so they can all be released
+// when the library is unloaded, not just the ones of the thread that unloads
+// it.
+std::mutex buffersMutex;
+std::vector<ThreadBuffers*> allBuffers;
+
+// Registers a thread's buffers the first time it uses them and frees them
+// when the thread exits.
+struct ThreadBuffersHolder {
+	ThreadBuffers* buffers;
+
+	ThreadBuffersHolder() : buffers(new ThreadBuffers()) {
+		std::lock_guard<std::mutex> lock(buffersMutex);
+		allBuffers.push_back(buffers);
+	}
+
+	~ThreadBuffersHolder() {
+		{
+			std::lock_guard<std::mutex> lock(buffersMutex);
+			allBuffers.erase(std::remove(allBuffers.begin(), allBuffers.end(), buffers), allBuffers.end());
+		}
+		delete buffers;
 	}
+};
 
+thread_local ThreadBuffersHolder threadBuffers;
+
+bool gpu = cuda::getCudaEnabledDeviceCount() > 0;
+
+jint JNI_OnLoad(JavaVM *vm, void *reserved) {
 	return JNI_VERSION_1_2;
 }
 
@@ -32,6 +82,8 @@ JNIEXPORT void JNICALL Java_org_usfirst_frc_team2084_CMonster2016_vision_HighGoa
 		jlong inputImageAddr, jlong outputImageAddr, jlong grayImageAddr,
 		jint blurSize, jdouble hMin, jdouble sMin, jdouble vMin, jdouble hMax, jdouble sMax, jdouble vMax) {
 
+	ThreadBuffers& b = *threadBuffers.buffers;
+
 	UMat image = (*(Mat*) inputImageAddr).getUMat(ACCESS_READ);
 	Mat& thresholdImage = *(Mat*) outputImageAddr;
 	Mat& grayImage = *(Mat*) grayImageAddr;
@@ -39,31 +91,122 @@ JNIEXPORT void JNICALL Java_org_usfirst_frc_team2084_CMonster2016_vision_HighGoa
 	int kernelSize = 2 * blurSize + 1;
 
 	if (gpu) {
-		gpuImage.upload(image);
-		cuda::cvtColor(gpuImage, gpuHsvImage, CV_BGR2HSV);
-		cuda::cvtColor(gpuImage, gpuGrayImage, CV_BGR2GRAY);
-		if(oldBlurSize != blurSize) {
-			blurFilter = cuda::createGaussianFilter(CV_8UC3, CV_8UC3, Size(kernelSize, kernelSize), 0);
+		b.gpuImage.upload(image);
+		cuda::cvtColor(b.gpuImage, b.gpuHsvImage, CV_BGR2HSV);
+		cuda::cvtColor(b.gpuImage, b.gpuGrayImage, CV_BGR2GRAY);
+		if(b.blurFilter.empty() || b.oldBlurSize != blurSize) {
+			b.blurFilter = cuda::createGaussianFilter(CV_8UC3, CV_8UC3, Size(kernelSize, kernelSize), 0);
 		}
-		blurFilter->apply(gpuHsvImage, gpuBlurImage);
-		gpuBlurImage.download(blurImage);
-		gpuGrayImage.download(grayImage);
+		b.blurFilter->apply(b.gpuHsvImage, b.gpuBlurImage);
+		b.gpuBlurImage.download(b.blurImage);
+		b.gpuGrayImage.download(grayImage);
 	} else {
-		cvtColor(image, hsvImage, CV_BGR2HSV);
+		cvtColor(image, b.hsvImage, CV_BGR2HSV);
 		cvtColor(image, grayImage, CV_BGR2GRAY);
-		GaussianBlur(hsvImage, blurImage, Size(kernelSize, kernelSize), 0);
+		GaussianBlur(b.hsvImage, b.blurImage, Size(kernelSize, kernelSize), 0);
+	}
+
+	b.oldBlurSize = blurSize;
+
+	inRange(b.blurImage, Scalar(hMin, sMin, vMin), Scalar(hMax, sMax, vMax), thresholdImage);
+}
+
+JNIEXPORT void JNICALL Java_org_usfirst_frc_team2084_CMonster2016_vision_HighGoalProcessor_processStripeNative(JNIEnv * env, jclass clazz,
+		jlong inputImageAddr, jlong outputImageAddr, jlong grayImageAddr,
+		jint blurSize, jint rowStart, jint rowEnd,
+		jdouble hMin, jdouble sMin, jdouble vMin, jdouble hMax, jdouble sMax, jdouble vMax) {
+
+	ThreadBuffers& b = *threadBuffers.buffers;
+
+	Mat& image = *(Mat*) inputImageAddr;
+	Mat& thresholdImage = *(Mat*) outputImageAddr;
+	Mat& grayImage = *(Mat*) grayImageAddr;
+
+	int kernelSize = 2 * blurSize + 1;
+
+	// The blur needs blurSize rows on either side of the stripe. At the edges
+	// of the image there is nothing to add, so the blur extrapolates the same
+	// way it does for the whole image.
+	int haloStart = std::max(0, rowStart - blurSize);
+	int haloEnd = std::min(image.rows, rowEnd + blurSize);
+
+	cvtColor(image.rowRange(haloStart, haloEnd), b.stripeHsvImage, CV_BGR2HSV);
+	GaussianBlur(b.stripeHsvImage, b.stripeBlurImage, Size(kernelSize, kernelSize), 0);
+
+	// These are views of the shared images, so the results are written in
+	// place.
+	Mat thresholdStripe = thresholdImage.rowRange(rowStart, rowEnd);
+	Mat grayStripe = grayImage.rowRange(rowStart, rowEnd);
+
+	inRange(b.stripeBlurImage.rowRange(rowStart - haloStart, rowEnd - haloStart), Scalar(hMin, sMin, vMin),
+			Scalar(hMax, sMax, vMax), thresholdStripe);
+	cvtColor(image.rowRange(rowStart, rowEnd), grayStripe, CV_BGR2GRAY);
+}
+
+JNIEXPORT jint JNICALL Java_org_usfirst_frc_team2084_CMonster2016_vision_HighGoalProcessor_findHullsNative(JNIEnv * env, jclass clazz,
+		jlong thresholdImageAddr, jint offsetX, jint offsetY, jint scale, jdouble minArea, jobject buffer) {
+
+	ThreadBuffers& b = *threadBuffers.buffers;
+	std::vector<std::vector<Point> >& contours = b.contours;
+	std::vector<std::vector<Point> >& hulls = b.hulls;
+
+	Mat& thresholdImage = *(Mat*) thresholdImageAddr;
+
+	// findContours() modifies its input
+	thresholdImage.copyTo(b.contoursImage);
+	findContours(b.contoursImage, contours, RETR_EXTERNAL, CHAIN_APPROX_SIMPLE);
+
+	// The hull vectors are kept between frames so their memory is reused
+	if (hulls.size() < contours.size()) {
+		hulls.resize(contours.size());
+	}
+	size_t hullCount = 0;
+	size_t pointCount = 0;
+	double scaledMinArea = minArea / (scale * scale);
+	for (size_t i = 0; i < contours.size(); i++) {
+		std::vector<Point>& hull = hulls[hullCount];
+		convexHull(contours[i], hull);
+		if (contourArea(hull) > scaledMinArea) {
+			pointCount += hull.size();
+			hullCount++;
+		}
 	}
 
-	oldBlurSize = blurSize;
+	// Header, offsets and then the points
+	jlong required = 3 + hullCount + 2 * pointCount;
+	jint* data = (jint*) env->GetDirectBufferAddress(buffer);
+	if (data == NULL || required > env->GetDirectBufferCapacity(buffer) / (jlong) sizeof(jint)) {
+		return (jint) required;
+	}
 
-	inRange(blurImage, Scalar(hMin, sMin, vMin), Scalar(hMax, sMax, vMax), thresholdImage);
+	data[0] = (jint) contours.size();
+	data[1] = (jint) hullCount;
+	jint index = (jint) (3 + hullCount);
+	int half = scale / 2;
+	for (size_t i = 0; i < hullCount; i++) {
+		data[2 + i] = index;
+		for (const Point& point : hulls[i]) {
+			// Move each point to the middle of the block of full size
+			// pixels it came from
+			data[index++] = (point.x + offsetX) * scale + half;
+			data[index++] = (point.y + offsetY) * scale + half;
+		}
+	}
+	data[2 + hullCount] = index;
+
+	return (jint) required;
+}
+
+JNIEXPORT jboolean JNICALL Java_org_usfirst_frc_team2084_CMonster2016_vision_HighGoalProcessor_isGpuEnabled(JNIEnv * env, jclass clazz) {
+	return gpu;
 }
 
 void JNI_OnUnload(JavaVM *vm, void *reserved) {
-	if (gpu) {
-		gpuImage.release();
-		gpuHsvImage.release();
-		gpuBlurImage.release();
-		gpuGrayImage.release();
+	// The threads that own the buffers may still be running, so their memory
+	// is released but the buffers themselves are left for the threads to
+	// delete when they exit.
+	std::lock_guard<std::mutex> lock(buffersMutex);
+	for (ThreadBuffers* buffers : allBuffers) {
+		buffers->release();
 	}
 }
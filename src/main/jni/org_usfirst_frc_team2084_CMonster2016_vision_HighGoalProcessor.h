@@ -19,6 +19,30 @@ extern "C" {
 JNIEXPORT void JNICALL Java_org_usfirst_frc_team2084_CMonster2016_vision_HighGoalProcessor_processNative
   (JNIEnv *, jclass, jlong, jlong, jlong, jint, jdouble, jdouble, jdouble, jdouble, jdouble, jdouble);
 
+/*
+ * Class:     org_usfirst_frc_team2084_CMonster2016_vision_HighGoalProcessor
+ * Method:    processStripeNative
+ * Signature: (JJJIIIDDDDDD)V
+ */
+JNIEXPORT void JNICALL Java_org_usfirst_frc_team2084_CMonster2016_vision_HighGoalProcessor_processStripeNative
+  (JNIEnv *, jclass, jlong, jlong, jlong, jint, jint, jint, jdouble, jdouble, jdouble, jdouble, jdouble, jdouble);
+
+/*
+ * Class:     org_usfirst_frc_team2084_CMonster2016_vision_HighGoalProcessor
+ * Method:    findHullsNative
+ * Signature: (JIIIDLjava/nio/ByteBuffer;)I
+ */
+JNIEXPORT jint JNICALL Java_org_usfirst_frc_team2084_CMonster2016_vision_HighGoalProcessor_findHullsNative
+  (JNIEnv *, jclass, jlong, jint, jint, jint, jdouble, jobject);
+
+/*
+ * Class:     org_usfirst_frc_team2084_CMonster2016_vision_HighGoalProcessor
+ * Method:    isGpuEnabled
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_usfirst_frc_team2084_CMonster2016_vision_HighGoalProcessor_isGpuEnabled
+  (JNIEnv *, jclass);
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,111 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link ConcurrentHistoryBuffer} functionality. The lookups should
+ * match {@link HistoryBufferTest}.
+ *
+ * @author Ben Wolsieffer
+ */
+public class ConcurrentHistoryBufferTest {
+
+    private final ConcurrentHistoryBuffer buffer = new ConcurrentHistoryBuffer(5);
+
+    private static final double[][] VALUES =
+            { { 1, 0 }, { 1.5, 1 }, { 2.05, 2 }, { 2.4, 3 }, { 2.999, 4 }, { 3.6, 5 }, { 4.0, 6 } };
+
+    public ConcurrentHistoryBufferTest() {
+        for (double[] val : VALUES) {
+            buffer.newValue(val[0], val[1]);
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, new ConcurrentHistoryBuffer(5).getValue(1), 0);
+    }
+
+    @Test
+    public void testLowerOutOfBounds() {
+        assertEquals(6, buffer.getValue(6), 0.001);
+    }
+
+    @Test
+    public void testUpperOutOfBounds() {
+        assertEquals(2, buffer.getValue(0), 0.001);
+    }
+
+    @Test
+    public void testExactValue() {
+        assertEquals(3, buffer.getValue(2.4), 0.001);
+    }
+
+    @Test
+    public void testInterpolatedValue() {
+        assertThat(buffer.getValue(3.3), both(greaterThan(4.0)).and(lessThan(5.0)));
+    }
+
+    @Test
+    public void testUpperInterpolatedValue() {
+        assertThat(buffer.getValue(3.9), both(greaterThan(5.0)).and(lessThan(6.0)));
+    }
+
+    /**
+     * Every value written is twice its time, so a reader that saw the time of
+     * one sample with the value of another would get something else. Readers
+     * look a little behind the writer, but if the writer gets far enough ahead
+     * they get the oldest value instead, which is an even number bigger than
+     * twice the time they asked for.
+     */
+    @Test
+    public void testConcurrentReads() throws InterruptedException {
+        ConcurrentHistoryBuffer concurrentBuffer = new ConcurrentHistoryBuffer(50);
+        AtomicLong written = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> error = new AtomicReference<>();
+
+        Thread[] readers = new Thread[3];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                while (running.get()) {
+                    long newest = written.get();
+                    if (newest < 10) {
+                        continue;
+                    }
+                    double time = newest - 10 * Math.random();
+                    double value = concurrentBuffer.getValue(time);
+                    boolean interpolated = Math.abs(value - 2 * time) < 1e-6;
+                    boolean oldest = value > 2 * time && value % 2 == 0;
+                    if (!interpolated && !oldest) {
+                        error.compareAndSet(null, "time: " + time + ", value: " + value);
+                    }
+                }
+            });
+            readers[i].start();
+        }
+
+        for (int i = 1; i <= 200000; i++) {
+            concurrentBuffer.newValue(i, 2 * i);
+            written.set(i);
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(error.get(), error.get());
+    }
+}
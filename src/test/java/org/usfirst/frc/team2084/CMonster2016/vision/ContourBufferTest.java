@@ -0,0 +1,84 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Test of the pure Java hull and nearest point search in
+ * {@link ContourBuffer}.
+ *
+ * @author Ben Wolsieffer
+ */
+public class ContourBufferTest {
+
+    private static int[] hull(int... points) {
+        int count = points.length / 2;
+        int[] hull = new int[count * 4];
+        int hullCount = ContourBuffer.convexHull(points, count, new long[count], hull);
+        return Arrays.copyOf(hull, hullCount * 2);
+    }
+
+    /**
+     * Calculates twice the signed area of a polygon, which is positive if it
+     * is counterclockwise with the y axis pointing up.
+     */
+    private static long signedArea(int[] polygon) {
+        long area = 0;
+        int count = polygon.length / 2;
+        for (int i = 0; i < count; i++) {
+            int j = (i + 1) % count;
+            area += (long) polygon[i * 2] * polygon[j * 2 + 1] - (long) polygon[j * 2] * polygon[i * 2 + 1];
+        }
+        return area;
+    }
+
+    @Test
+    public void testSquareWithInteriorPoints() {
+        // Square with points in the middle and along the edges
+        int[] hull = hull(10, 10, 15, 12, 20, 10, 20, 15, 20, 20, 12, 18, 10, 20, 10, 15);
+        assertEquals(8, hull.length);
+        assertEquals(200, signedArea(hull));
+        for (int i = 0; i < hull.length; i++) {
+            assertTrue(hull[i] == 10 || hull[i] == 20);
+        }
+    }
+
+    @Test
+    public void testDuplicates() {
+        int[] hull = hull(5, 5, 5, 5, 0, 0, 0, 0, 5, 0, 5, 0);
+        assertEquals(6, hull.length);
+        assertTrue(signedArea(hull) > 0);
+    }
+
+    @Test
+    public void testDegenerate() {
+        assertArrayEquals(new int[] { 3, 4 }, hull(3, 4, 3, 4));
+        assertArrayEquals(new int[] { 0, 0, 4, 4 }, hull(4, 4, 0, 0));
+        // All on a line
+        assertArrayEquals(new int[] { 0, 0, 6, 3 }, hull(2, 1, 6, 3, 0, 0, 4, 2));
+    }
+
+    @Test
+    public void testNegativeCoordinates() {
+        int[] hull = hull(-5, -5, 5, -5, 5, 5, -5, 5, 0, 0);
+        assertEquals(8, hull.length);
+        assertEquals(200, signedArea(hull));
+    }
+
+    @Test
+    public void testNearest() {
+        int[] points = { 0, 0, 10, 0, 10, 10, 0, 10 };
+        assertEquals(0, ContourBuffer.nearest(points, 4, -1, -1));
+        assertEquals(2, ContourBuffer.nearest(points, 4, 9, 8));
+        assertEquals(3, ContourBuffer.nearest(points, 4, 2, 7));
+    }
+}
@@ -0,0 +1,91 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+
+/**
+ * Test of the time budget in {@link GoalFrame#findTargets()}. This needs the
+ * OpenCV native libraries, and is skipped if they can't be loaded.
+ *
+ * @author Ben Wolsieffer
+ */
+public class GoalFrameTest {
+
+    private GoalFrame frame;
+    private TargetEvaluator evaluator;
+
+    @Before
+    public void setUp() {
+        try {
+            OpenCVLoader.loadOpenCV();
+            new Mat().release();
+        } catch (LinkageError e) {
+            Assume.assumeNoException(e);
+        }
+        frame = new GoalFrame();
+        Mat.zeros(HighGoalProcessor.IMAGE_SIZE, CvType.CV_8UC1).copyTo(frame.getGrayImage());
+        evaluator = new TargetEvaluator();
+        evaluator.setPrefilterParameters(0, 0, Integer.MAX_VALUE, 0, Double.POSITIVE_INFINITY, 0);
+    }
+
+    /**
+     * Adds three rectangles, with areas of 800, 4000 and 2000 pixels.
+     */
+    private void addCandidates() {
+        List<MatOfPoint> contours = frame.getContours();
+        contours.clear();
+        contours.add(rectangle(10, 10, 40, 20));
+        contours.add(rectangle(100, 100, 100, 40));
+        contours.add(rectangle(300, 300, 50, 40));
+    }
+
+    private static MatOfPoint rectangle(int x, int y, int width, int height) {
+        return new MatOfPoint(new Point(x, y), new Point(x + width, y), new Point(x + width, y + height),
+                new Point(x, y + height));
+    }
+
+    @Test
+    public void testBudgetRunsOut() {
+        addCandidates();
+        // Evaluating a candidate takes longer than 1 ns, so only the largest
+        // one is evaluated
+        frame.findTargets(evaluator, 1, Integer.MAX_VALUE);
+        assertTrue(frame.isTruncated());
+        assertEquals(1, frame.getTargets().size());
+        assertEquals(4000, frame.getTargets().get(0).getArea(), 0);
+        assertEquals(1, evaluator.getPrefilterPassCount());
+    }
+
+    @Test
+    public void testEnoughTime() {
+        addCandidates();
+        frame.findTargets(evaluator, 1, Integer.MAX_VALUE);
+        assertTrue(frame.isTruncated());
+
+        // A later frame with enough time isn't truncated
+        addCandidates();
+        frame.findTargets(evaluator, Long.MAX_VALUE, Integer.MAX_VALUE);
+        assertFalse(frame.isTruncated());
+        assertEquals(3, frame.getTargets().size());
+
+        addCandidates();
+        frame.findTargets(evaluator, 0, Integer.MAX_VALUE);
+        assertFalse(frame.isTruncated());
+        assertEquals(3, frame.getTargets().size());
+    }
+}
@@ -0,0 +1,98 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link GoalHeadingEstimator} functionality, using a robot that turns
+ * at a constant rate.
+ *
+ * @author Ben Wolsieffer
+ */
+public class GoalHeadingEstimatorTest {
+
+    private static final double GYRO_PERIOD = 1.0 / HighGoalProcessor.GYRO_UPDATE_RATE;
+    private static final double TURN_RATE = 1.5;
+
+    private final GoalHeadingEstimator estimator = new GoalHeadingEstimator(0.5);
+
+    /**
+     * Feeds samples of the robot turning at {@link #TURN_RATE} from the start
+     * time up to the end time.
+     */
+    private void turn(double startTime, double endTime) {
+        for (double time = startTime; time <= endTime + 1e-9; time += GYRO_PERIOD) {
+            estimator.newSample(time, TURN_RATE * time);
+        }
+    }
+
+    @Test
+    public void testNoGoal() {
+        turn(0, 0.1);
+        assertFalse(estimator.isValid());
+        assertTrue(Double.isNaN(estimator.getAngleRemaining()));
+        assertTrue(Double.isNaN(estimator.getAngleRemaining(0.15)));
+    }
+
+    @Test
+    public void testAngleRemaining() {
+        turn(0, 0.2);
+        estimator.setGoal(0.5, 0.1);
+        turn(0.21, 0.3);
+        assertTrue(estimator.isValid());
+        assertEquals(0.5 - TURN_RATE * 0.3, estimator.getAngleRemaining(), 1e-6);
+    }
+
+    @Test
+    public void testExtrapolation() {
+        estimator.setGoal(0.5, 0);
+        turn(0, 0.3);
+        assertEquals(TURN_RATE, estimator.getYawRate(), 1e-6);
+        assertEquals(0.5 - TURN_RATE * 0.35, estimator.getAngleRemaining(0.35), 1e-6);
+        // Past times aren't extrapolated and far future times are clamped
+        assertEquals(estimator.getAngleRemaining(), estimator.getAngleRemaining(0.2), 0);
+        assertEquals(0.5 - TURN_RATE * (0.3 + GoalHeadingEstimator.MAX_EXTRAPOLATION),
+                estimator.getAngleRemaining(1), 1e-6);
+    }
+
+    @Test
+    public void testWrap() {
+        estimator.setGoal(Math.PI - 0.1, 0);
+        estimator.newSample(0, -Math.PI + 0.1);
+        estimator.newSample(GYRO_PERIOD, -Math.PI + 0.05);
+        assertEquals(-0.15, estimator.getAngleRemaining(), 1e-9);
+        // Crossing from -pi to pi is a small turn
+        estimator.newSample(2 * GYRO_PERIOD, Math.PI - 0.05);
+        assertEquals(-6.25, estimator.getYawRate(), 1e-6);
+        assertEquals(-0.05, estimator.getAngleRemaining(), 1e-9);
+    }
+
+    @Test
+    public void testTimeout() {
+        estimator.setGoal(0.5, 0);
+        turn(0, 0.45);
+        assertTrue(estimator.isValid());
+        turn(0.51, 0.6);
+        assertFalse(estimator.isValid());
+        estimator.setGoal(0.5, 0.55);
+        assertTrue(estimator.isValid());
+    }
+
+    @Test
+    public void testGyroGap() {
+        estimator.setGoal(0.5, 0);
+        turn(0, 0.1);
+        estimator.newSample(0.5, TURN_RATE * 0.1);
+        assertEquals(0, estimator.getYawRate(), 0);
+        // Old samples are ignored
+        estimator.newSample(0.4, 0);
+        assertEquals(0.5 - TURN_RATE * 0.1, estimator.getAngleRemaining(), 1e-9);
+    }
+}
@@ -0,0 +1,124 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Checks how close running the high goal algorithm on a smaller image is to
+ * the full size image on the real field images. This needs the OpenCV native
+ * libraries and NetworkTables, and is skipped if they can't be loaded.
+ * <p>
+ * The tolerances are a little above what was measured. At half scale, 17% of
+ * the goals were missed, and the distance and angle were off by an average of
+ * 1.4% and 0.28 degrees. At quarter scale, 23% were missed, and they were off
+ * by 3.3% and 0.74 degrees. Most of the missed goals were far away and close to
+ * the minimum blob area. The averages are checked instead of the worst case,
+ * because on a few images a different blob is chosen.
+ *
+ * @author Ben Wolsieffer
+ */
+public class GoalPyramidTest {
+
+    private static final File IMAGE_DIRECTORY = new File("images/real_field");
+
+    private boolean parametersLoaded = false;
+
+    @Before
+    public void loadOpenCV() {
+        try {
+            OpenCVLoader.loadOpenCV();
+            new Mat().release();
+            VisionParameters.setGoalPyramidLevel(0);
+            parametersLoaded = true;
+        } catch (LinkageError e) {
+            Assume.assumeNoException(e);
+        }
+    }
+
+    @After
+    public void resetPyramidLevel() {
+        if (parametersLoaded) {
+            VisionParameters.setGoalPyramidLevel(VisionParameters.DEFAULT_GOAL_PYRAMID_LEVEL);
+        }
+    }
+
+    @Test
+    public void testHalfScale() {
+        testPyramidLevel(1, 0.02, Math.toRadians(0.4), 0.2);
+    }
+
+    @Test
+    public void testQuarterScale() {
+        testPyramidLevel(2, 0.04, Math.toRadians(1), 0.25);
+    }
+
+    /**
+     * Compares the targets found at a pyramid level with the full size ones.
+     *
+     * @param level the pyramid level
+     * @param distanceTolerance the maximum average difference in distance, as
+     *        a fraction of the full size distance
+     * @param angleTolerance the maximum average difference in the angle to the
+     *        goal, in radians
+     * @param missedTolerance the maximum fraction of images where the full
+     *        size image has a target but the smaller one doesn't
+     */
+    private void testPyramidLevel(int level, double distanceTolerance, double angleTolerance,
+            double missedTolerance) {
+        File[] files = IMAGE_DIRECTORY.listFiles((dir, name) -> name.endsWith(".jpg"));
+        Arrays.sort(files);
+
+        GoalFrame frame = new GoalFrame();
+        Mat image = new Mat();
+        int targets = 0;
+        int missed = 0;
+        double distanceError = 0;
+        double angleError = 0;
+        for (File file : files) {
+            Imgproc.resize(Imgcodecs.imread(file.getAbsolutePath()), image, HighGoalProcessor.IMAGE_SIZE);
+
+            VisionParameters.setGoalPyramidLevel(0);
+            frame.process(image);
+            Target fullTarget = frame.getBestTarget();
+            if (fullTarget == null) {
+                continue;
+            }
+            targets++;
+            double fullDistance = fullTarget.getDistance();
+            double fullAngle = fullTarget.getGoalXAngle();
+
+            VisionParameters.setGoalPyramidLevel(level);
+            frame.process(image);
+            Target target = frame.getBestTarget();
+            if (target == null) {
+                missed++;
+                continue;
+            }
+
+            distanceError += Math.abs(target.getDistance() - fullDistance) / fullDistance;
+            angleError += Math.abs(target.getGoalXAngle() - fullAngle);
+        }
+
+        assertTrue("No targets found", targets > 0);
+        assertTrue(missed + " of " + targets + " targets missed", missed <= targets * missedTolerance);
+        int found = targets - missed;
+        assertEquals("Average distance difference", 0, distanceError / found, distanceTolerance);
+        assertEquals("Average angle difference", 0, angleError / found, angleTolerance);
+    }
+}
@@ -0,0 +1,66 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+import static org.usfirst.frc.team2084.CMonster2016.vision.HighGoalProcessor.*;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link GyroRecorder}, feeding it known yaw steps and checking the
+ * channels it writes.
+ *
+ * @author Ben Wolsieffer
+ */
+public class GyroRecorderTest {
+
+    private static final double GYRO_PERIOD = 1.0 / GYRO_UPDATE_RATE;
+
+    private final TimeSeriesBuffer buffer = new TimeSeriesBuffer(16, GYRO_CHANNELS);
+    private final GyroRecorder recorder = new GyroRecorder(buffer);
+
+    @Test
+    public void testYawSteps() {
+        recorder.record(0, 0, 0.1, 0.2);
+        assertEquals(0, buffer.getValue(0, YAW_RATE_CHANNEL), 0);
+        assertEquals(0.1, buffer.getValue(0, PITCH_CHANNEL), 0);
+        assertEquals(0.2, buffer.getValue(0, ROLL_CHANNEL), 0);
+
+        // 0.5 degrees per update at 100 Hz is 50 degrees per second
+        double step = Math.toRadians(0.5);
+        recorder.record(GYRO_PERIOD, step, 0, 0);
+        recorder.record(2 * GYRO_PERIOD, 2 * step, 0, 0);
+        assertEquals(2 * step, buffer.getValue(2 * GYRO_PERIOD, YAW_CHANNEL), 1e-12);
+        assertEquals(Math.toRadians(50), buffer.getValue(2 * GYRO_PERIOD, YAW_RATE_CHANNEL), 1e-9);
+
+        // Turning back at the same rate, with a missed sample
+        recorder.record(4 * GYRO_PERIOD, 0, 0, 0);
+        assertEquals(-Math.toRadians(50), buffer.getValue(4 * GYRO_PERIOD, YAW_RATE_CHANNEL), 1e-9);
+    }
+
+    @Test
+    public void testWrap() {
+        recorder.record(0, Math.PI - 0.01, 0, 0);
+        recorder.record(GYRO_PERIOD, -Math.PI + 0.01, 0, 0);
+        assertEquals(2, buffer.getValue(GYRO_PERIOD, YAW_RATE_CHANNEL), 1e-9);
+    }
+
+    @Test
+    public void testGapAndOldSamples() {
+        recorder.record(0, 0, 0, 0);
+        recorder.record(GYRO_PERIOD, 0.01, 0, 0);
+        recorder.record(1, 0.5, 0, 0);
+        assertEquals(0, buffer.getValue(1, YAW_RATE_CHANNEL), 0);
+
+        // Old samples are ignored
+        recorder.record(0.5, 0, 0, 0);
+        assertEquals(0.5, buffer.getValue(1, YAW_CHANNEL), 0);
+        recorder.record(1 + GYRO_PERIOD, 0.51, 0, 0);
+        assertEquals(1, buffer.getValue(1 + GYRO_PERIOD, YAW_RATE_CHANNEL), 1e-9);
+    }
+}
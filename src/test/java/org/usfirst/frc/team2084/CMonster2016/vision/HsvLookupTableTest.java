@@ -0,0 +1,63 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link HsvLookupTable} functionality. The expected values come from
+ * OpenCV's {@code COLOR_BGR2HSV} and {@code COLOR_BGR2GRAY}.
+ *
+ * @author Ben Wolsieffer
+ */
+public class HsvLookupTableTest {
+
+    @Test
+    public void testPrimaryColors() {
+        assertEquals(0, HsvLookupTable.hue(0, 0, 255));
+        assertEquals(60, HsvLookupTable.hue(0, 255, 0));
+        assertEquals(120, HsvLookupTable.hue(255, 0, 0));
+        assertEquals(255, HsvLookupTable.saturation(255, 0, 0));
+    }
+
+    @Test
+    public void testMixedColor() {
+        // BGR (50, 200, 100) -> HSV (50, 191, 200)
+        assertEquals(50, HsvLookupTable.hue(50, 200, 100));
+        assertEquals(191, HsvLookupTable.saturation(50, 200, 100));
+    }
+
+    @Test
+    public void testGrayHasNoSaturation() {
+        assertEquals(0, HsvLookupTable.hue(128, 128, 128));
+        assertEquals(0, HsvLookupTable.saturation(128, 128, 128));
+        assertEquals(0, HsvLookupTable.saturation(0, 0, 0));
+    }
+
+    @Test
+    public void testGray() {
+        assertEquals(0, HsvLookupTable.gray(0, 0, 0));
+        assertEquals(255, HsvLookupTable.gray(255, 255, 255));
+        assertEquals(76, HsvLookupTable.gray(0, 0, 255));
+        assertEquals(150, HsvLookupTable.gray(0, 255, 0));
+        assertEquals(29, HsvLookupTable.gray(255, 0, 0));
+    }
+
+    @Test
+    public void testContains() {
+        // Green, like the retroreflective tape
+        HsvLookupTable table = new HsvLookupTable(40, 100, 100, 70, 255, 255);
+        assertTrue(table.matches(40, 100, 100, 70, 255, 255));
+        assertTrue(table.contains(0, 255, 0));
+        assertTrue(table.contains(50, 200, 100));
+        assertFalse(table.contains(0, 0, 255));
+        assertFalse(table.contains(0, 90, 0));
+        assertFalse(table.contains(200, 200, 200));
+    }
+}
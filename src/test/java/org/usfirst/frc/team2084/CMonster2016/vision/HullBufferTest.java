@@ -0,0 +1,139 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Test of {@link HullBuffer}. Most of the tests pack the buffer by hand the
+ * same way the native code does. The last one runs the native code, and is
+ * skipped if it can't be loaded.
+ *
+ * @author Ben Wolsieffer
+ */
+public class HullBufferTest {
+
+    private static final int[] RECTANGLE = { 10, 20, 50, 20, 50, 40, 10, 40 };
+    private static final int[] TRIANGLE = { 100, 100, 200, 100, 150, 180 };
+
+    /**
+     * Packs hulls into the buffer in the layout described in
+     * {@link HullBuffer}.
+     */
+    private static void pack(HullBuffer buffer, int blobCount, int[]... hulls) {
+        IntBuffer ints = buffer.getBuffer().asIntBuffer();
+        ints.put(blobCount).put(hulls.length);
+        int offset = 3 + hulls.length;
+        for (int[] hull : hulls) {
+            ints.put(offset);
+            offset += hull.length;
+        }
+        ints.put(offset);
+        for (int[] hull : hulls) {
+            ints.put(hull);
+        }
+        buffer.read();
+    }
+
+    private static int[] getPoints(HullBuffer buffer, int hull) {
+        int[] points = new int[buffer.getPointCount(hull) * 2];
+        assertEquals(points.length, buffer.getPoints(hull, points));
+        return points;
+    }
+
+    @Test
+    public void testMultipleHulls() {
+        HullBuffer buffer = new HullBuffer();
+        pack(buffer, 5, RECTANGLE, TRIANGLE);
+
+        assertEquals(5, buffer.getBlobCount());
+        assertEquals(2, buffer.getHullCount());
+        assertEquals(4, buffer.getPointCount(0));
+        assertEquals(3, buffer.getPointCount(1));
+        assertArrayEquals(RECTANGLE, getPoints(buffer, 0));
+        assertArrayEquals(TRIANGLE, getPoints(buffer, 1));
+        // Reading a hull doesn't move the buffer
+        assertArrayEquals(RECTANGLE, getPoints(buffer, 0));
+    }
+
+    @Test
+    public void testEmpty() {
+        HullBuffer buffer = new HullBuffer();
+        pack(buffer, 2, RECTANGLE);
+        pack(buffer, 4);
+
+        assertEquals(4, buffer.getBlobCount());
+        assertEquals(0, buffer.getHullCount());
+        List<MatOfPoint> contours = new ArrayList<>();
+        buffer.getHulls(contours);
+        assertTrue(contours.isEmpty());
+    }
+
+    @Test
+    public void testNative() {
+        Mat image;
+        try {
+            OpenCVLoader.loadOpenCV();
+            image = Mat.zeros(HighGoalProcessor.IMAGE_SIZE, CvType.CV_8UC1);
+            HighGoalProcessor.isGpuEnabled();
+        } catch (LinkageError e) {
+            Assume.assumeNoException(e);
+            return;
+        }
+        Scalar white = Scalar.all(255);
+        Imgproc.rectangle(image, new Point(10, 20), new Point(50, 40), white, -1);
+        Imgproc.rectangle(image, new Point(100, 100), new Point(150, 200), white, -1);
+        // Too small
+        Imgproc.rectangle(image, new Point(300, 300), new Point(305, 305), white, -1);
+
+        HullBuffer buffer = new HullBuffer();
+        assertEquals(2, buffer.find(image, 0, 0, 1, 100));
+        assertEquals(3, buffer.getBlobCount());
+
+        List<MatOfPoint> contours = new ArrayList<>();
+        buffer.getHulls(contours);
+        assertEquals(2, contours.size());
+        List<String> rects = new ArrayList<>();
+        for (MatOfPoint contour : contours) {
+            assertEquals(4, contour.total());
+            rects.add(Imgproc.boundingRect(contour).toString());
+        }
+        rects.sort(null);
+        assertEquals(Arrays.asList("{10, 20, 41x21}", "{100, 100, 51x101}"), rects);
+
+        // Offset and scaled, each point moves to the middle of its block
+        assertEquals(2, buffer.find(image, 5, 0, 2, 400));
+        rects.clear();
+        for (int hull = 0; hull < 2; hull++) {
+            int[] points = getPoints(buffer, hull);
+            int minX = Integer.MAX_VALUE, maxX = 0, minY = Integer.MAX_VALUE, maxY = 0;
+            for (int i = 0; i < points.length; i += 2) {
+                minX = Math.min(minX, points[i]);
+                maxX = Math.max(maxX, points[i]);
+                minY = Math.min(minY, points[i + 1]);
+                maxY = Math.max(maxY, points[i + 1]);
+            }
+            rects.add(minX + "," + minY + "," + maxX + "," + maxY);
+        }
+        rects.sort(null);
+        assertEquals(Arrays.asList("211,201,311,401", "31,41,111,81"), rects);
+    }
+}
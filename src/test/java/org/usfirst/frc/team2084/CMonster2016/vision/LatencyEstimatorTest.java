@@ -0,0 +1,114 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link LatencyEstimator} functionality, using a robot that turns
+ * back and forth in front of the goal.
+ *
+ * @author Ben Wolsieffer
+ */
+public class LatencyEstimatorTest {
+
+    private static final double FRAME_PERIOD = 1.0 / 30;
+    private static final double GOAL_HEADING = 0.3;
+
+    private static final DoubleUnaryOperator TURNING = (time) -> 0.4 * Math.sin(2 * Math.PI * 0.8 * time)
+            + 0.1 * Math.sin(2 * Math.PI * 2.3 * time);
+
+    /**
+     * Records frames where the goal is seen at the angle it was at the latency
+     * before the frame was grabbed.
+     */
+    private static void observe(LatencyEstimator estimator, DoubleUnaryOperator heading, double latency,
+            double noise, int firstFrame, int frames) {
+        Random random = new Random(2084);
+        for (int i = firstFrame; i < firstFrame + frames; i++) {
+            double grabTime = 10 + i * FRAME_PERIOD;
+            double angle = GOAL_HEADING - heading.applyAsDouble(grabTime - latency) + noise * random.nextGaussian();
+            estimator.addObservation(grabTime, angle);
+        }
+    }
+
+    @Test
+    public void testConverges() {
+        LatencyEstimator estimator = new LatencyEstimator(TURNING, 0.15, 0);
+        observe(estimator, TURNING, 0.083, 0.001, 0, LatencyEstimator.WINDOW);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(estimator.update());
+        }
+        assertEquals(0.083, estimator.getLatency(), 0.003);
+        assertTrue(estimator.getConfidence() > LatencyEstimator.MIN_CONFIDENCE);
+    }
+
+    @Test
+    public void testNotTurning() {
+        LatencyEstimator estimator = new LatencyEstimator((time) -> 1, 0.15, 0);
+        observe(estimator, (time) -> 1, 0.083, 0.001, 0, LatencyEstimator.WINDOW);
+        assertFalse(estimator.update());
+        assertEquals(0.15, estimator.getLatency(), 0);
+        assertEquals(0, estimator.getConfidence(), 0);
+    }
+
+    @Test
+    public void testTooFewFrames() {
+        LatencyEstimator estimator = new LatencyEstimator(TURNING, 0.15, 0);
+        estimator.addObservation(10, 0);
+        estimator.addObservation(10 + FRAME_PERIOD, 0.01);
+        assertFalse(estimator.update());
+        assertEquals(0.15, estimator.getLatency(), 0);
+    }
+
+    @Test
+    public void testTargetSwitch() {
+        LatencyEstimator estimator = new LatencyEstimator(TURNING, 0.15, 0);
+        // A different target appears halfway through the window
+        int half = LatencyEstimator.WINDOW / 2;
+        observe(estimator, TURNING, 0.083, 0, 0, half);
+        observe(estimator, (time) -> TURNING.applyAsDouble(time) + 0.5, 0.083, 0, half, half);
+        for (int i = 0; i < 50; i++) {
+            estimator.update();
+        }
+        assertEquals(0.083, estimator.getLatency(), 0.003);
+    }
+
+    @Test
+    public void testHeadingWrap() {
+        // The same turning, but facing the other way, so the heading crosses
+        // from pi to -pi
+        LatencyEstimator estimator = new LatencyEstimator(
+                (time) -> Math.IEEEremainder(Math.PI + TURNING.applyAsDouble(time), 2 * Math.PI), 0.15, 0);
+        observe(estimator, TURNING, 0.083, 0.001, 0, LatencyEstimator.WINDOW);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(estimator.update());
+        }
+        assertEquals(0.083, estimator.getLatency(), 0.003);
+    }
+
+    @Test
+    public void testOldFramesIgnored() {
+        // The heading history only goes back to 15 s, so the heading looks
+        // constant before that
+        LatencyEstimator estimator =
+                new LatencyEstimator((time) -> TURNING.applyAsDouble(Math.max(time, 15)), 0.15, 0);
+        int half = LatencyEstimator.WINDOW / 2;
+        observe(estimator, TURNING, 0.083, 0.001, 0, half);
+        // The target is lost for 10 s
+        observe(estimator, TURNING, 0.083, 0.001, 300, half);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(estimator.update());
+        }
+        assertEquals(0.083, estimator.getLatency(), 0.003);
+    }
+}
@@ -0,0 +1,106 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+
+/**
+ * Test that {@link LookupTableThreshold} builds its tables in the background
+ * and gives the same results as the native code. The comparison with the
+ * native code is skipped if it can't be loaded.
+ *
+ * @author Ben Wolsieffer
+ */
+public class LookupTableThresholdTest {
+
+    private static HsvLookupTable waitForTable(int hMin, int sMin, int vMin, int hMax, int sMax, int vMax)
+            throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        HsvLookupTable table;
+        while (((table = LookupTableThreshold.getTable(hMin, sMin, vMin, hMax, sMax, vMax)) == null
+                || !table.matches(hMin, sMin, vMin, hMax, sMax, vMax)) && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        return table;
+    }
+
+    @Test
+    public void testRangeChange() throws InterruptedException {
+        HsvLookupTable oldTable = waitForTable(10, 20, 30, 40, 50, 60);
+        assertTrue(oldTable.matches(10, 20, 30, 40, 50, 60));
+
+        // The old table is used until the new one is ready
+        HsvLookupTable table = LookupTableThreshold.getTable(11, 20, 30, 40, 50, 60);
+        assertTrue(table == oldTable || table.matches(11, 20, 30, 40, 50, 60));
+
+        HsvLookupTable newTable = waitForTable(11, 20, 30, 40, 50, 60);
+        assertTrue(newTable.matches(11, 20, 30, 40, 50, 60));
+        assertSame(newTable, LookupTableThreshold.getTable(11, 20, 30, 40, 50, 60));
+    }
+
+    /**
+     * Gets the pixels of an image, which may be a submat.
+     */
+    private static byte[] pixels(Mat image) {
+        byte[] data = new byte[(int) image.total() * image.channels()];
+        image.get(0, 0, data);
+        return data;
+    }
+
+    @Test
+    public void testMatchesNative() throws InterruptedException {
+        Mat image;
+        try {
+            OpenCVLoader.loadOpenCV();
+            image = new Mat(HighGoalProcessor.IMAGE_SIZE, CvType.CV_8UC3);
+            HighGoalProcessor.isGpuEnabled();
+        } catch (LinkageError e) {
+            Assume.assumeNoException(e);
+            return;
+        }
+        Core.randu(image, 0, 256);
+        double[] min = { 0, 0, 99 };
+        double[] max = { 99, 255, 255 };
+        waitForTable(0, 0, 99, 99, 255, 255);
+
+        LookupTableThreshold lookupTable = new LookupTableThreshold();
+        Mat thresholdImage = new Mat(image.size(), CvType.CV_8UC1, Scalar.all(0));
+        Mat grayImage = new Mat(image.size(), CvType.CV_8UC1, Scalar.all(0));
+        Mat nativeThresholdImage = new Mat(image.size(), CvType.CV_8UC1, Scalar.all(0));
+        Mat nativeGrayImage = new Mat(image.size(), CvType.CV_8UC1, Scalar.all(0));
+
+        assertFalse(lookupTable.threshold(image, thresholdImage, grayImage, 6, min, max));
+
+        // The buffers shrink and grow the same way as in tracking mode
+        Rect[] regions = { null, new Rect(100, 50, 200, 100), new Rect(300, 200, 40, 30),
+                new Rect(0, 0, 640, 240), null };
+        for (Rect region : regions) {
+            Mat searchImage = region == null ? image : image.submat(region);
+            Mat threshold = region == null ? thresholdImage : thresholdImage.submat(region);
+            Mat gray = region == null ? grayImage : grayImage.submat(region);
+            Mat nativeThreshold = region == null ? nativeThresholdImage : nativeThresholdImage.submat(region);
+            Mat nativeGray = region == null ? nativeGrayImage : nativeGrayImage.submat(region);
+
+            assertTrue(lookupTable.threshold(searchImage, threshold, gray, 0, min, max));
+            StripedThreshold.threshold(searchImage, nativeThreshold, nativeGray, 0, min, max, 1);
+
+            assertArrayEquals(pixels(nativeThreshold), pixels(threshold));
+            assertArrayEquals(pixels(nativeGray), pixels(gray));
+        }
+        // Nothing was written outside the regions
+        assertArrayEquals(pixels(nativeThresholdImage), pixels(thresholdImage));
+        assertArrayEquals(pixels(nativeGrayImage), pixels(grayImage));
+    }
+}
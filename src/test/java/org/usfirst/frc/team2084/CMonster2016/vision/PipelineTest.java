@@ -0,0 +1,99 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.usfirst.frc.team2084.CMonster2016.vision.Pipeline.DropPolicy;
+
+/**
+ * Test of {@link Pipeline} functionality.
+ *
+ * @author Ben Wolsieffer
+ */
+public class PipelineTest {
+
+    private final List<int[]> recycled = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testStagesRunInOrder() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(10);
+        Pipeline<int[]> pipeline = new Pipeline<>((item) -> {
+            recycled.add(item);
+            done.countDown();
+        });
+        pipeline.addStage("Add", 2, DropPolicy.BLOCK, (item) -> item[0] += 1)
+                .addStage("Multiply", 2, DropPolicy.BLOCK, (item) -> item[0] *= 10);
+        pipeline.start();
+
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(new int[] { i });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            assertEquals((i + 1) * 10, recycled.get(i)[0]);
+        }
+        assertEquals(0, pipeline.getDroppedCount());
+    }
+
+    @Test
+    public void testDropNewest() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Pipeline<int[]> pipeline = new Pipeline<>(recycled::add);
+        pipeline.addStage("Slow", 1, DropPolicy.DROP_NEWEST, (item) -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+            }
+        });
+        pipeline.start();
+
+        // The first item is taken by the stage, the second waits in the queue
+        // and the third is dropped.
+        pipeline.submit(new int[] { 0 });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        pipeline.submit(new int[] { 1 });
+        pipeline.submit(new int[] { 2 });
+
+        assertEquals(1, pipeline.getDroppedCount(0));
+        assertEquals(2, recycled.get(0)[0]);
+        release.countDown();
+    }
+
+    @Test
+    public void testDropOldest() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Pipeline<int[]> pipeline = new Pipeline<>(recycled::add);
+        pipeline.addStage("Slow", 1, DropPolicy.DROP_OLDEST, (item) -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+            }
+        });
+        pipeline.start();
+
+        pipeline.submit(new int[] { 0 });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        pipeline.submit(new int[] { 1 });
+        pipeline.submit(new int[] { 2 });
+
+        assertEquals(1, pipeline.getDroppedCount(0));
+        assertEquals(1, recycled.get(0)[0]);
+        release.countDown();
+    }
+}
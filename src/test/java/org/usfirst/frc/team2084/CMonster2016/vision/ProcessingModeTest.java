@@ -0,0 +1,54 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link ProcessingMode} and how it is carried by a {@link Frame}.
+ *
+ * @author Ben Wolsieffer
+ */
+public class ProcessingModeTest {
+
+    @Test
+    public void testShared() {
+        ProcessingMode mode = ProcessingMode.get(ExecutionMode.PIPELINE, SearchMode.REGION, 1);
+        assertSame(mode, ProcessingMode.get(ExecutionMode.PIPELINE, SearchMode.REGION, 1));
+        assertEquals(ExecutionMode.PIPELINE, mode.getExecutionMode());
+        assertEquals(SearchMode.REGION, mode.getSearchMode());
+        assertEquals(1, mode.getPyramidLevel());
+        assertSame(ProcessingMode.DEFAULT, ProcessingMode.get(ExecutionMode.SERIAL, SearchMode.FULL, 0));
+    }
+
+    @Test
+    public void testOutOfRangeLevel() {
+        int level = GoalFrame.MAX_PYRAMID_LEVEL + 1;
+        ProcessingMode mode = ProcessingMode.get(ExecutionMode.PARALLEL, SearchMode.FULL, level);
+        assertEquals(level, mode.getPyramidLevel());
+        assertEquals(mode, ProcessingMode.get(ExecutionMode.PARALLEL, SearchMode.FULL, level));
+        assertNotEquals(mode, ProcessingMode.get(ExecutionMode.PARALLEL, SearchMode.FULL, 0));
+    }
+
+    @Test
+    public void testFrameMode() {
+        Frame frame = new Frame(null, null);
+        assertSame(ProcessingMode.DEFAULT, frame.getMode());
+
+        ProcessingMode mode = ProcessingMode.get(ExecutionMode.PARALLEL, SearchMode.REGION, 2);
+        frame.setMode(mode);
+        Frame copy = new Frame(null, null);
+        copy.copyInfo(frame);
+        assertSame(mode, copy.getMode());
+
+        // A frame from the pool doesn't keep the mode of its last use
+        frame.reset();
+        assertSame(ProcessingMode.DEFAULT, frame.getMode());
+    }
+}
@@ -0,0 +1,95 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.opencv.core.Rect;
+
+/**
+ * Test of {@link RegionTracker} functionality.
+ *
+ * @author Ben Wolsieffer
+ */
+public class RegionTrackerTest {
+
+    private static final Rect TARGET = new Rect(300, 200, 60, 40);
+
+    private final RegionTracker tracker = new RegionTracker(640, 480, 600);
+
+    @Test
+    public void testFullImageUntilFound() {
+        assertNull(tracker.getRegion(0));
+        tracker.update(null, null, 0);
+        assertNull(tracker.getRegion(0));
+    }
+
+    @Test
+    public void testRegionAroundTarget() {
+        tracker.update(null, TARGET, 0);
+        Rect region = tracker.getRegion(0);
+        assertEquals(new Rect(270, 170, 120, 100), region);
+    }
+
+    @Test
+    public void testRegionFollowsTurn() {
+        tracker.update(null, TARGET, 0);
+        // Turning right moves the target left
+        Rect region = tracker.getRegion(0.1);
+        assertEquals(210, region.x);
+        assertEquals(120, region.width);
+    }
+
+    @Test
+    public void testRegionFollowsTurnAcrossPi() {
+        tracker.update(null, TARGET, Math.PI - 0.05);
+        // Turning right by 0.1 wraps the heading around to -pi
+        Rect region = tracker.getRegion(-Math.PI + 0.05);
+        assertEquals(210, region.x);
+        assertEquals(120, region.width);
+
+        // And back the other way
+        tracker.update(null, TARGET, -Math.PI + 0.05);
+        region = tracker.getRegion(Math.PI - 0.05);
+        assertEquals(330, region.x);
+        assertEquals(120, region.width);
+    }
+
+    @Test
+    public void testRegionClippedToImage() {
+        tracker.update(null, new Rect(0, 0, 60, 40), 0);
+        assertEquals(new Rect(0, 0, 90, 70), tracker.getRegion(0));
+        // Turned so far that the target left the image
+        assertNull(tracker.getRegion(1));
+    }
+
+    @Test
+    public void testFallBackAfterMisses() {
+        tracker.setMaxMisses(2);
+        tracker.update(null, TARGET, 0);
+        Rect region = tracker.getRegion(0);
+        tracker.update(region, null, 0);
+        assertNotNull(tracker.getRegion(0));
+        tracker.update(region, null, 0);
+        assertNull(tracker.getRegion(0));
+    }
+
+    @Test
+    public void testPeriodicRefresh() {
+        tracker.setRefreshInterval(3);
+        tracker.update(null, TARGET, 0);
+        for (int i = 0; i < 3; i++) {
+            Rect region = tracker.getRegion(0);
+            assertNotNull(region);
+            tracker.update(region, TARGET, 0);
+        }
+        assertNull(tracker.getRegion(0));
+        tracker.update(null, TARGET, 0);
+        assertNotNull(tracker.getRegion(0));
+    }
+}
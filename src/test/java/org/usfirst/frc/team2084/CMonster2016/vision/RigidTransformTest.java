@@ -0,0 +1,85 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link RigidTransform}, using the primitive {@link CoordinateMath}
+ * functions as a reference.
+ *
+ * @author Ben Wolsieffer
+ */
+public class RigidTransformTest {
+
+    private static final double[][] POINTS = { { 0, 0, 0 }, { 1, 2, 3 }, { -4.5, 0.25, 10 } };
+
+    private static RigidTransform chain() {
+        return new RigidTransform().translate(1, -2, 0.5).rotateX(0.3).rotateY(-1.1).translate(0, 3, -4)
+                .rotateZ(2.2);
+    }
+
+    private static double[] chainReference(double[] point) {
+        double[] p = point.clone();
+        CoordinateMath.translate(p, 1, -2, 0.5);
+        CoordinateMath.rotateX(p, 0.3);
+        CoordinateMath.rotateY(p, -1.1);
+        CoordinateMath.translate(p, 0, 3, -4);
+        CoordinateMath.rotateZ(p, 2.2);
+        return p;
+    }
+
+    @Test
+    public void testChain() {
+        RigidTransform transform = chain();
+        for (double[] point : POINTS) {
+            double[] p = point.clone();
+            transform.transform(p);
+            assertArrayEquals(chainReference(point), p, 1e-12);
+        }
+    }
+
+    @Test
+    public void testThen() {
+        RigidTransform first = new RigidTransform().translate(1, -2, 0.5).rotateX(0.3).rotateY(-1.1);
+        RigidTransform second = new RigidTransform().translate(0, 3, -4).rotateZ(2.2);
+        first.then(second);
+        for (double[] point : POINTS) {
+            double[] p = point.clone();
+            first.transform(p);
+            assertArrayEquals(chainReference(point), p, 1e-12);
+        }
+    }
+
+    @Test
+    public void testInvert() {
+        RigidTransform inverse = chain().invert();
+        for (double[] point : POINTS) {
+            double[] p = chainReference(point);
+            inverse.transform(p);
+            assertArrayEquals(point, p, 1e-12);
+        }
+    }
+
+    @Test
+    public void testBatch() {
+        double[] points = new double[POINTS.length * 3 + 1];
+        for (int i = 0; i < POINTS.length; i++) {
+            System.arraycopy(POINTS[i], 0, points, i * 3 + 1, 3);
+        }
+        chain().transform(points, 1, POINTS.length);
+        assertEquals(0, points[0], 0);
+        for (int i = 0; i < POINTS.length; i++) {
+            double[] expected = chainReference(POINTS[i]);
+            for (int j = 0; j < 3; j++) {
+                assertEquals(expected[j], points[i * 3 + 1 + j], 1e-12);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link RunLengthLabeler} on small hand drawn masks.
+ *
+ * @author Ben Wolsieffer
+ */
+public class RunLengthLabelerTest {
+
+    private final RunLengthLabeler labeler = new RunLengthLabeler();
+
+    /**
+     * Converts rows of text into a mask, where '#' is white.
+     */
+    private static byte[] mask(String... rows) {
+        int width = rows[0].length();
+        byte[] mask = new byte[width * rows.length];
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < width; x++) {
+                mask[y * width + x] = rows[y].charAt(x) == '#' ? (byte) 255 : 0;
+            }
+        }
+        return mask;
+    }
+
+    private int label(String... rows) {
+        return labeler.label(mask(rows), rows[0].length(), rows.length);
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, label("....", "....", "...."));
+    }
+
+    @Test
+    public void testSeparateBlobs() {
+        assertEquals(2, label(
+                "##....",
+                "##..##",
+                "....##"));
+        assertEquals(4, labeler.getArea(0));
+        assertEquals(4, labeler.getArea(1));
+        assertEquals(4, labeler.getMinX(1));
+        assertEquals(1, labeler.getMinY(1));
+        assertEquals(5, labeler.getMaxX(1));
+        assertEquals(2, labeler.getMaxY(1));
+    }
+
+    @Test
+    public void testDiagonal() {
+        assertEquals(1, label(
+                "#...",
+                ".#..",
+                "..#."));
+        assertEquals(3, labeler.getArea(0));
+    }
+
+    @Test
+    public void testUShape() {
+        // The two arms are separate until the bottom row joins them
+        assertEquals(1, label(
+                "#...#",
+                "#...#",
+                "#####"));
+        assertEquals(9, labeler.getArea(0));
+        assertEquals(0, labeler.getMinX(0));
+        assertEquals(4, labeler.getMaxX(0));
+        assertEquals(0, labeler.getMinY(0));
+        assertEquals(2, labeler.getMaxY(0));
+    }
+
+    @Test
+    public void testMoments() {
+        label(
+                ".....",
+                ".###.",
+                ".###.",
+                ".....");
+        double[] moments = new double[6];
+        labeler.getMoments(0, moments);
+        // x is 1-3, y is 1-2
+        assertArrayEquals(new double[] { 6, 12, 9, 28, 18, 15 }, moments, 1e-9);
+        assertEquals(2, labeler.getCenterX(0), 1e-9);
+        assertEquals(1.5, labeler.getCenterY(0), 1e-9);
+    }
+
+    @Test
+    public void testHull() {
+        label(
+                "..#..",
+                ".###.",
+                "#####",
+                ".###.");
+        int count = labeler.findHull(0);
+        int[] hull = Arrays.copyOf(labeler.getHull(), count * 2);
+        // The points at (1, 1) and (3, 1) are on the edges
+        assertEquals(5, count);
+        for (int i = 0; i < count; i++) {
+            int x = hull[i * 2];
+            int y = hull[i * 2 + 1];
+            assertTrue(Arrays.toString(hull), (x == 2 && y == 0) || (x == 0 && y == 2) || (x == 4 && y == 2)
+                    || (y == 3 && (x == 1 || x == 3)));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.usfirst.frc.team2084.CMonster2016.vision.TargetEvaluator.Prefilter;
+
+/**
+ * Test of the pure Java geometry in {@link TargetEvaluator}, and of the
+ * {@link Prefilter}s. The prefilter tests need the OpenCV native libraries,
+ * and are skipped if they can't be loaded.
+ *
+ * @author Ben Wolsieffer
+ */
+public class TargetEvaluatorTest {
+
+    private static double area(double[] rect) {
+        double ax = rect[2] - rect[0], ay = rect[3] - rect[1];
+        double bx = rect[6] - rect[0], by = rect[7] - rect[1];
+        return Math.sqrt(ax * ax + ay * ay) * Math.sqrt(bx * bx + by * by);
+    }
+
+    @Test
+    public void testMinAreaRectAxisAligned() {
+        float[] points = { 10, 10, 50, 10, 50, 30, 10, 30 };
+        double[] rect = new double[8];
+        TargetEvaluator.minAreaRect(points, 4, rect);
+        assertEquals(800, area(rect), 0.001);
+        for (int i = 0; i < 8; i += 2) {
+            assertTrue(rect[i] == 10 || rect[i] == 50);
+            assertTrue(rect[i + 1] == 10 || rect[i + 1] == 30);
+        }
+    }
+
+    @Test
+    public void testMinAreaRectRotated() {
+        // A diamond, the smallest rectangle is the diamond itself
+        float[] points = { 0, 10, 10, 0, 20, 10, 10, 20, 5, 15 };
+        double[] rect = new double[8];
+        TargetEvaluator.minAreaRect(points, 5, rect);
+        assertEquals(200, area(rect), 0.001);
+    }
+
+    private static TargetEvaluator.Validator validator(String name, int tests, int rejections, long nanos) {
+        TargetEvaluator.Validator validator = new TargetEvaluator.Validator(name, (e) -> true);
+        for (int i = 0; i < tests; i++) {
+            validator.record(i >= rejections, nanos);
+        }
+        return validator;
+    }
+
+    @Test
+    public void testSortByRank() {
+        TargetEvaluator.Validator slowSelective = validator("slow selective", 100, 50, 100);
+        TargetEvaluator.Validator fastSelective = validator("fast selective", 100, 50, 10);
+        TargetEvaluator.Validator fastUseless = validator("fast useless", 100, 0, 10);
+        TargetEvaluator.Validator slowRare = validator("slow rare", 100, 1, 200);
+
+        TargetEvaluator.Validator[] validators = { slowRare, fastUseless, slowSelective, fastSelective };
+        TargetEvaluator.sortByRank(validators);
+        assertArrayEquals(new Object[] { fastSelective, slowSelective, fastUseless, slowRare }, validators);
+
+        assertEquals(0.5, slowSelective.getRejectionRate(), 1e-9);
+        assertEquals(100, slowSelective.getAverageNanos(), 1e-9);
+    }
+
+    @Test
+    public void testSortByRankKeepsTies() {
+        TargetEvaluator.Validator a = validator("a", 0, 0, 0);
+        TargetEvaluator.Validator b = validator("b", 0, 0, 0);
+        TargetEvaluator.Validator c = validator("c", 0, 0, 0);
+        TargetEvaluator.Validator[] validators = { a, b, c };
+        TargetEvaluator.sortByRank(validators);
+        assertArrayEquals(new Object[] { a, b, c }, validators);
+    }
+
+    /**
+     * A 100x40 rectangle that passes all the prefilters.
+     */
+    private static final int[] RECTANGLE = { 100, 100, 200, 100, 200, 140, 100, 140 };
+    private static final int[] SMALL_SQUARE = { 100, 100, 110, 100, 110, 110, 100, 110 };
+    private static final int[] TRIANGLE = { 100, 100, 200, 100, 150, 180 };
+    private static final int[] TALL_RECTANGLE = { 100, 100, 120, 100, 120, 300, 100, 300 };
+    /**
+     * Fills just under half of its bounding box.
+     */
+    private static final int[] DIAMOND = { 150, 100, 250, 150, 150, 200, 50, 150 };
+
+    private static void loadOpenCV() {
+        try {
+            OpenCVLoader.loadOpenCV();
+            new Mat().release();
+        } catch (LinkageError e) {
+            Assume.assumeNoException(e);
+        }
+    }
+
+    private static Target evaluate(TargetEvaluator evaluator, int[] points) {
+        MatOfPoint contour = new MatOfPoint();
+        contour.create(points.length / 2, 1, CvType.CV_32SC2);
+        contour.put(0, 0, points);
+        return evaluator.evaluate(contour, Mat.zeros(HighGoalProcessor.IMAGE_SIZE, CvType.CV_8UC1));
+    }
+
+    private static void assertCounts(TargetEvaluator evaluator, long area, long vertexCount, long aspectRatio,
+            long fillRatio, long passes) {
+        assertEquals(area, evaluator.getRejectionCount(Prefilter.AREA));
+        assertEquals(vertexCount, evaluator.getRejectionCount(Prefilter.VERTEX_COUNT));
+        assertEquals(aspectRatio, evaluator.getRejectionCount(Prefilter.ASPECT_RATIO));
+        assertEquals(fillRatio, evaluator.getRejectionCount(Prefilter.FILL_RATIO));
+        assertEquals(passes, evaluator.getPrefilterPassCount());
+    }
+
+    @Test
+    public void testPrefilters() {
+        loadOpenCV();
+        TargetEvaluator evaluator = new TargetEvaluator();
+        evaluator.setPrefilterParameters(2000, 4, 8, 0.5, 4, 0.6);
+
+        assertNull(evaluate(evaluator, SMALL_SQUARE));
+        assertCounts(evaluator, 1, 0, 0, 0, 0);
+        assertNull(evaluate(evaluator, TRIANGLE));
+        assertCounts(evaluator, 1, 1, 0, 0, 0);
+        assertNull(evaluate(evaluator, TALL_RECTANGLE));
+        assertCounts(evaluator, 1, 1, 1, 0, 0);
+        assertNull(evaluate(evaluator, DIAMOND));
+        assertCounts(evaluator, 1, 1, 1, 1, 0);
+        assertNotNull(evaluate(evaluator, RECTANGLE));
+        assertCounts(evaluator, 1, 1, 1, 1, 1);
+    }
+
+    @Test
+    public void testDefaultPrefiltersOnlyCheckArea() {
+        loadOpenCV();
+        TargetEvaluator evaluator = new TargetEvaluator();
+        evaluator.setPrefilterParameters(VisionParameters.DEFAULT_GOAL_MIN_BLOB_AREA,
+                VisionParameters.DEFAULT_GOAL_MIN_VERTICES, VisionParameters.DEFAULT_GOAL_MAX_VERTICES,
+                VisionParameters.DEFAULT_GOAL_MIN_BOUNDING_ASPECT_RATIO,
+                VisionParameters.DEFAULT_GOAL_MAX_BOUNDING_ASPECT_RATIO, VisionParameters.DEFAULT_GOAL_MIN_FILL_RATIO);
+
+        assertNull(evaluate(evaluator, SMALL_SQUARE));
+        for (int[] points : new int[][] { TRIANGLE, TALL_RECTANGLE, DIAMOND, RECTANGLE }) {
+            assertNotNull(evaluate(evaluator, points));
+        }
+        assertCounts(evaluator, 1, 0, 0, 0, 4);
+    }
+
+    @Test
+    public void testCountsArePerEvaluator() {
+        loadOpenCV();
+        TargetEvaluator evaluator = new TargetEvaluator();
+        evaluator.setPrefilterParameters(2000, 4, 8, 0.5, 4, 0.6);
+        evaluate(evaluator, TRIANGLE);
+        evaluator.countAreaRejections(3);
+        assertCounts(evaluator, 3, 1, 0, 0, 0);
+
+        assertCounts(new TargetEvaluator(), 0, 0, 0, 0, 0);
+    }
+}
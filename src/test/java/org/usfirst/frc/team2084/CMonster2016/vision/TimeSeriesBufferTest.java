@@ -0,0 +1,92 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link TimeSeriesBuffer} functionality. The first channel is the
+ * same as in {@link HistoryBufferTest} and the second is the negative of it.
+ *
+ * @author Ben Wolsieffer
+ */
+public class TimeSeriesBufferTest {
+
+    private final TimeSeriesBuffer buffer = new TimeSeriesBuffer(5, 2);
+    private final double[] sample = new double[2];
+
+    private static final double[][] VALUES =
+            { { 1, 0 }, { 1.5, 1 }, { 2.05, 2 }, { 2.4, 3 }, { 2.999, 4 }, { 3.6, 5 }, { 4.0, 6 } };
+
+    public TimeSeriesBufferTest() {
+        for (double[] val : VALUES) {
+            buffer.newSample(val[0], new double[] { val[1], -val[1] });
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        TimeSeriesBuffer empty = new TimeSeriesBuffer(5, 2);
+        sample[0] = 1;
+        assertFalse(empty.getSample(1, sample));
+        assertArrayEquals(new double[] { 0, 0 }, sample, 0);
+        assertEquals(0, empty.getValue(1, 1), 0);
+    }
+
+    @Test
+    public void testLowerOutOfBounds() {
+        assertTrue(buffer.getSample(6, sample));
+        assertArrayEquals(new double[] { 6, -6 }, sample, 0.001);
+    }
+
+    @Test
+    public void testUpperOutOfBounds() {
+        buffer.getSample(0, sample);
+        assertArrayEquals(new double[] { 2, -2 }, sample, 0.001);
+    }
+
+    @Test
+    public void testExactValue() {
+        buffer.getSample(2.4, sample);
+        assertArrayEquals(new double[] { 3, -3 }, sample, 0.001);
+        buffer.getSample(4.0, sample);
+        assertArrayEquals(new double[] { 6, -6 }, sample, 0.001);
+    }
+
+    @Test
+    public void testInterpolatedValue() {
+        double expected = 4 + (3.3 - 2.999) / (3.6 - 2.999);
+        buffer.getSample(3.3, sample);
+        assertArrayEquals(new double[] { expected, -expected }, sample, 0.001);
+    }
+
+    @Test
+    public void testSingleChannel() {
+        for (double time = 0; time < 5; time += 0.05) {
+            buffer.getSample(time, sample);
+            assertEquals(sample[0], buffer.getValue(time, 0), 0);
+            assertEquals(sample[1], buffer.getValue(time, 1), 0);
+        }
+    }
+
+    @Test
+    public void testUnevenRate() {
+        TimeSeriesBuffer unevenBuffer = new TimeSeriesBuffer(50, 1);
+        double[] value = new double[1];
+        double time = 0;
+        for (int i = 0; i < 120; i++) {
+            time += i % 7 == 0 ? 0.03 : 0.005;
+            value[0] = 3 * time;
+            unevenBuffer.newSample(time, value);
+        }
+        for (double lookup = time - 0.2; lookup < time; lookup += 0.0013) {
+            assertEquals(3 * lookup, unevenBuffer.getValue(lookup, 0), 1e-9);
+        }
+    }
+}
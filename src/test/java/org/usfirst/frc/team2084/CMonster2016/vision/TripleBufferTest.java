@@ -0,0 +1,80 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link TripleBuffer} functionality.
+ *
+ * @author Ben Wolsieffer
+ */
+public class TripleBufferTest {
+
+    private final TripleBuffer<int[]> buffer = new TripleBuffer<>(() -> new int[1]);
+
+    private void publish(int value) {
+        buffer.getBackBuffer()[0] = value;
+        buffer.publish();
+    }
+
+    @Test
+    public void testEmpty() {
+        assertFalse(buffer.hasNew());
+        assertNull(buffer.acquire());
+    }
+
+    @Test
+    public void testLatestValue() {
+        publish(1);
+        publish(2);
+        assertTrue(buffer.hasNew());
+        assertEquals(2, buffer.acquire()[0]);
+        assertNull(buffer.acquire());
+    }
+
+    @Test
+    public void testBuffersNotShared() {
+        publish(1);
+        int[] front = buffer.acquire();
+        publish(2);
+        publish(3);
+        assertNotSame(front, buffer.getBackBuffer());
+        assertEquals(1, front[0]);
+        assertEquals(3, buffer.acquire()[0]);
+    }
+
+    @Test
+    public void testDroppedCount() {
+        publish(1);
+        publish(2);
+        buffer.acquire();
+        publish(3);
+        assertEquals(1, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void testTimeout() {
+        assertNull(buffer.acquire(10));
+    }
+
+    @Test
+    public void testWaitForValue() throws InterruptedException {
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+            }
+            publish(5);
+        });
+        producer.start();
+        assertEquals(5, buffer.acquire(0)[0]);
+        producer.join();
+    }
+}
@@ -0,0 +1,54 @@
+/* 
+ * Copyright (c) 2016 RobotsByTheC. All rights reserved.
+ *
+ * Open Source Software - may be modified and shared by FRC teams. The code must
+ * be accompanied by the BSD license file in the root directory of the project.
+ */
+package org.usfirst.frc.team2084.CMonster2016.vision;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link Utils}.
+ *
+ * @author Ben Wolsieffer
+ */
+public class UtilsTest {
+
+    @Test
+    public void testSelectTop() {
+        Integer[] items = { 5, 9, 1, 7, 3, 8, 2 };
+        Utils.selectTop(items, items.length, 3);
+        assertArrayEquals(new Object[] { 7, 8, 9 }, Arrays.copyOfRange(items, 4, 7));
+
+        Integer[] rest = Arrays.copyOf(items, 4);
+        Arrays.sort(rest);
+        assertArrayEquals(new Object[] { 1, 2, 3, 5 }, rest);
+    }
+
+    @Test
+    public void testSelectTopPartialArray() {
+        Integer[] items = { 4, 6, 2, 100 };
+        Utils.selectTop(items, 3, 1);
+        assertEquals(6, (int) items[2]);
+        assertEquals(100, (int) items[3]);
+    }
+
+    @Test
+    public void testSelectTopMoreThanCount() {
+        Integer[] items = { 3, 1, 2 };
+        Utils.selectTop(items, items.length, 10);
+        assertArrayEquals(new Object[] { 1, 2, 3 }, items);
+    }
+
+    @Test
+    public void testRatioToScore() {
+        assertEquals(100, Utils.ratioToScore(1), 1e-9);
+        assertEquals(50, Utils.ratioToScore(1.5), 1e-9);
+        assertEquals(0, Utils.ratioToScore(3), 1e-9);
+    }
+}